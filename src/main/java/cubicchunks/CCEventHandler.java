@@ -24,6 +24,9 @@
 package cubicchunks;
 
 import cubicchunks.client.WorldClientContext;
+import cubicchunks.network.PacketCubeEncoding;
+import cubicchunks.network.PacketDispatcher;
+import cubicchunks.network.WorldEncoder;
 import cubicchunks.server.WorldServerContext;
 import cubicchunks.util.WorldAccess;
 import cubicchunks.util.WorldClientAccess;
@@ -53,6 +56,8 @@ public class CCEventHandler {
 		}
 		if(world instanceof WorldClient && cc.isTallWorld(world)) {
 			modifyWorld((WorldClient)world);
+			// the server sends raw cubes until it knows we can read something better
+			PacketDispatcher.sendToServer(new PacketCubeEncoding(WorldEncoder.LatestEncoding));
 		}
 	}
 
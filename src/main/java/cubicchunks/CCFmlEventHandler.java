@@ -40,6 +40,13 @@ public class CCFmlEventHandler {
 		this.ccSystem = ccSystem;
 	}
 
+	@SubscribeEvent
+	public void onServerTick(TickEvent.ServerTickEvent evt) {
+		if (evt.phase == TickEvent.Phase.START) {
+			ccSystem.onServerTick();
+		}
+	}
+
 	@SubscribeEvent
 	public void onWorldServerTick(TickEvent.WorldTickEvent evt) {
 		World world = evt.world;
@@ -27,6 +27,7 @@ import cubicchunks.client.ClientCubeCache;
 import cubicchunks.client.WorldClientContext;
 import cubicchunks.generator.GeneratorPipeline;
 import cubicchunks.generator.GeneratorStage;
+import cubicchunks.server.CubeEgressBudget;
 import cubicchunks.server.CubePlayerManager;
 import cubicchunks.server.ServerCubeCache;
 import cubicchunks.server.WorldServerContext;
@@ -63,9 +64,12 @@ import static cubicchunks.generator.terrain.GlobalGeneratorConfig.SEA_LEVEL;
 public class CubicChunkSystem {
 
 	private ClassInheritanceMultiMap m_emptyEntitySet;
+	// shared by the player managers of all worlds of the running server
+	private CubeEgressBudget m_egressBudget;
 
 	public CubicChunkSystem() {
 		m_emptyEntitySet = new ClassInheritanceMultiMap(Entity.class);
+		m_egressBudget = new CubeEgressBudget();
 	}
 	public ChunkProviderServer getServerChunkCacheAndInitWorld(WorldServer worldServer) {
 		if (isTallWorld(worldServer)) {
@@ -115,7 +119,7 @@ public class CubicChunkSystem {
 
 	public PlayerManager getPlayerManager(WorldServer worldServer) {
 		if (isTallWorld(worldServer)) {
-			return new CubePlayerManager(worldServer);
+			return new CubePlayerManager(worldServer, m_egressBudget);
 		}
 		return null;
 	}
@@ -145,6 +149,10 @@ public class CubicChunkSystem {
 		}
 	}
 
+	public void onServerTick() {
+		m_egressBudget.tick();
+	}
+
 	public void onWorldServerTick(WorldServer worldServer) {
 		if (isTallWorld(worldServer)) {
 			WorldServerContext context = WorldServerContext.get(worldServer);
@@ -296,6 +304,12 @@ public class CubicChunkSystem {
 	}
 
 	public Boolean updateLightingAt(World world, EnumSkyBlock type, BlockPos pos) {
+		// On the server block light goes through the cube aware light engine, it's updated on the light thread in a
+		// later tick. Clients keep checkLightFor(), so a placed torch lights up right away.
+		if (type == EnumSkyBlock.BLOCK && !world.isRemote && isTallWorld(world)) {
+			WorldContext.get(world).getLightingManager().queueBlockLightUpdate(pos);
+			return true;
+		}
 		/* TEMP: for now, the vanilla lighting implementation is much faster than mine
 		 * let's just use that for now
 		if (isTallWorld(world)) {
@@ -459,6 +473,7 @@ public class CubicChunkSystem {
 
 	public void onServerStop() {
 		WorldServerContext.clear();
+		m_egressBudget.reset();
 	}
 
 	//@ClientOnly
@@ -27,6 +27,7 @@ import cubicchunks.asm.RenderMethods;
 import cubicchunks.asm.WorldMethods;
 import cubicchunks.network.PacketDispatcher;
 import cubicchunks.proxy.CommonProxy;
+import cubicchunks.server.CommandLightingStats;
 import net.minecraft.world.WorldType;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.FMLCommonHandler;
@@ -36,6 +37,8 @@ import net.minecraftforge.fml.common.Mod.Instance;
 import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import org.apache.logging.log4j.Logger;
 
 @Mod(modid = CubicChunks.MODID, name = "CubicChunks", version = "@@VERSION@@}")
@@ -92,4 +95,14 @@ public class CubicChunks {
 		ConnectionState.directionMaps.put(PacketCubeChange.class, ConnectionState.PLAY);
 		*/
 	}
+
+	@EventHandler
+	public void serverStarting(FMLServerStartingEvent event) {
+		event.registerServerCommand(new CommandLightingStats());
+	}
+
+	@EventHandler
+	public void serverStopped(FMLServerStoppedEvent event) {
+		this.ccSystem.onServerStop();
+	}
 }
@@ -28,4 +28,12 @@ import cubicchunks.world.cube.Cube;
 public interface ITerrainGenerator {
 
 	public abstract double[][][] generate(final Cube cube);
+
+	/**
+	 * Generates the density field of the given cube into a flat buffer, without allocating.
+	 * <p>
+	 * The buffer must hold at least {@link cubicchunks.util.TerrainGeneratorUtils#CUBE_VOLUME} values and is indexed
+	 * with {@link cubicchunks.util.TerrainGeneratorUtils#getDensityIndex(int, int, int)}. Positive values are solid.
+	 */
+	public abstract void generate(final Cube cube, final double[] densityOut);
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import net.minecraft.world.biome.BiomeGenBase;
+
+/**
+ * Generator data that depends only on the x/z position of a column, so it can be computed once and then shared by
+ * every cube in the column. It's stored in the column and never saved, so it goes away when the column is unloaded.
+ */
+public class ColumnGeneratorData {
+	
+	// biome for each x/z block of the column, indexed by zRel << 4 | xRel
+	private BiomeGenBase[] blockBiomes;
+	
+	// depth noise used by the surface processor, indexed by zRel * 16 + xRel
+	private double[] surfaceNoise;
+	
+	// smoothed biome height and volatility at each terrain noise section, indexed by x * Z_SECTIONS + z
+	private double[] terrainBiomeHeight;
+	private double[] terrainBiomeVolatility;
+	
+	// biome at the column center, used to pick feature generators
+	private BiomeGenBase featureBiome;
+	
+	public BiomeGenBase[] getBlockBiomes() {
+		return this.blockBiomes;
+	}
+	
+	public void setBlockBiomes(BiomeGenBase[] val) {
+		this.blockBiomes = val;
+	}
+	
+	public double[] getSurfaceNoise() {
+		return this.surfaceNoise;
+	}
+	
+	public void setSurfaceNoise(double[] val) {
+		this.surfaceNoise = val;
+	}
+	
+	public boolean hasTerrainBiomeFactors() {
+		return this.terrainBiomeHeight != null;
+	}
+	
+	public double[] getTerrainBiomeHeight() {
+		return this.terrainBiomeHeight;
+	}
+	
+	public double[] getTerrainBiomeVolatility() {
+		return this.terrainBiomeVolatility;
+	}
+	
+	public void setTerrainBiomeFactors(double[] height, double[] volatility) {
+		this.terrainBiomeHeight = height;
+		this.terrainBiomeVolatility = volatility;
+	}
+	
+	public BiomeGenBase getFeatureBiome() {
+		return this.featureBiome;
+	}
+	
+	public void setFeatureBiome(BiomeGenBase val) {
+		this.featureBiome = val;
+	}
+}
@@ -23,9 +23,13 @@
  */
 package cubicchunks.generator;
 
+import com.google.common.base.Throwables;
 import cubicchunks.generator.features.BiomeFeatures;
+import cubicchunks.generator.features.CubeNeighborhood;
 import cubicchunks.generator.features.FeatureGenerator;
+import cubicchunks.util.AddressTools;
 import cubicchunks.util.Coords;
+import cubicchunks.util.Progress;
 import cubicchunks.util.processor.CubeProcessor;
 import cubicchunks.world.ICubeCache;
 import cubicchunks.world.WorldContext;
@@ -33,47 +37,275 @@ import cubicchunks.world.cube.Cube;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Populates cubes on several threads.
+ * <p>
+ * The cubes of a batch are grouped by column, and the columns are colored by their position modulo the size of a
+ * CubeNeighborhood. Columns of the same color are so far apart that their neighborhoods can't overlap, so they are
+ * populated at the same time, one color after another. Block changes are recorded by the neighborhoods and applied to
+ * the world on the server thread afterwards, always in the same order.
+ */
 public class FeatureProcessor extends CubeProcessor {
 
-	private Map<BiomeGenBase, BiomeFeatures> biomeFeaturesMap;
+	private static final int NumThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	private static final Comparator<Cube> CubeYComparator = new Comparator<Cube>() {
+		@Override
+		public int compare(Cube a, Cube b) {
+			return Integer.compare(a.getY(), b.getY());
+		}
+	};
+
+	private final World world;
+	// null if there is only one thread to populate on
+	private final ExecutorService executor;
+	// feature generators keep state while generating, so each thread needs its own
+	private final BlockingQueue<Worker> workers;
 
 	public FeatureProcessor(String name, World world, ICubeCache provider, int batchSize) {
 		super(name, provider, batchSize);
 
-		this.biomeFeaturesMap = new HashMap<>();
+		this.world = world;
+		this.executor = NumThreads > 1 ? createExecutor() : null;
+		this.workers = new ArrayBlockingQueue<>(NumThreads);
+		for (int i = 0; i < NumThreads; i++) {
+			this.workers.add(new Worker());
+		}
+	}
+
+	@Override
+	public void processBatch(Progress progress) {
+
+		// group the cubes that can be populated by column, and the columns by color
+		List<Map<Long, ColumnTask>> colors = new ArrayList<>(CubeNeighborhood.SizeXZ * CubeNeighborhood.SizeXZ);
+		for (int i = 0; i < CubeNeighborhood.SizeXZ * CubeNeighborhood.SizeXZ; i++) {
+			colors.add(new TreeMap<Long, ColumnTask>());
+		}
+		for (long address : this.incomingAddresses) {
+			int cubeX = AddressTools.getX(address);
+			int cubeY = AddressTools.getY(address);
+			int cubeZ = AddressTools.getZ(address);
+			Cube cube = this.cache.getCube(cubeX, cubeY, cubeZ);
+			if (cube == null) {
+				// this cube probably got unloaded before it could be processed
+				// just drop it from the queue
+				if (this.stats != null) {
+					this.stats.dropped();
+				}
+				continue;
+			}
 
-		// for now use global for all biomes
-		for (BiomeGenBase biome : BiomeGenBase.getBiomeGenArray()) {
-			if(biome == null){
+			// add cubes that can't be populated yet back onto the queue
+			if (!canGenerate(cube)) {
+				this.deferredAddresses.add(address);
+				if (this.stats != null) {
+					this.stats.deferred();
+					this.stats.deferredBecause("neighbors not ready");
+				}
+				if (progress != null) {
+					progress.incrementProgress();
+				}
 				continue;
 			}
-			this.biomeFeaturesMap.put(biome, new BiomeFeatures(world, biome));
+
+			Map<Long, ColumnTask> tasks = colors.get(getColor(cubeX, cubeZ));
+			long columnAddress = AddressTools.getAddress(cubeX, cubeZ);
+			ColumnTask task = tasks.get(columnAddress);
+			if (task == null) {
+				task = new ColumnTask(cubeX, cubeZ, getBiome(cube));
+				tasks.put(columnAddress, task);
+			}
+			task.cubes.add(cube);
+			this.processedAddresses.add(address);
+		}
+
+		for (Map<Long, ColumnTask> tasks : colors) {
+			if (!tasks.isEmpty()) {
+				run(tasks.values());
+			}
+		}
+
+		for (Map<Long, ColumnTask> tasks : colors) {
+			for (ColumnTask task : tasks.values()) {
+				task.changes.apply(this.world, this.cache);
+				if (progress != null) {
+					for (int i = 0; i < task.cubes.size(); i++) {
+						progress.incrementProgress();
+					}
+				}
+			}
 		}
 	}
 
 	@Override
 	public boolean calculate(Cube cube) {
-		WorldContext worldContext = WorldContext.get(cube.getWorld());
-		if (!worldContext.cubeAndNeighborsExist(cube, true, GeneratorStage.FEATURES)) {
+		if (!canGenerate(cube)) {
+			deferredBecause("neighbors not ready");
 			return false;
 		}
 
-		BiomeGenBase biome = worldContext.getWorld().getBiomeGenForCoords(Coords.getCubeCenter(cube));
-    
-		//For surface generators we should actually use special RNG with seed 
-		//that depends only in world seed and cube X/Z
-		//but using this for surface generation doesn't cause any noticable issues
-		Random rand = new Random(cube.cubeRandomSeed());
-		
-		BiomeFeatures features = this.biomeFeaturesMap.get(biome);
-		for (FeatureGenerator gen : features.getBiomeFeatureGenerators()) {
-			gen.generate(rand, cube, biome);
+		ColumnTask task = new ColumnTask(cube.getX(), cube.getZ(), getBiome(cube));
+		task.cubes.add(cube);
+		run(Collections.singletonList(task));
+		task.changes.apply(this.world, this.cache);
+		return true;
+	}
+
+	@Override
+	public void shutdown() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
 		}
+	}
 
-		return true;
+	/**
+	 * A cube is only populated once all cubes of its CubeNeighborhood are there and at least at the FEATURES stage.
+	 * Otherwise features reaching into a missing cube would be cut off, depending on the order cubes were loaded in.
+	 */
+	private boolean canGenerate(Cube cube) {
+		return WorldContext.get(cube.getWorld()).cubesExist(
+			cube.getX() + CubeNeighborhood.MinCubeOffsetXZ, cube.getY() + CubeNeighborhood.MinCubeOffsetY,
+			cube.getZ() + CubeNeighborhood.MinCubeOffsetXZ, cube.getX() + CubeNeighborhood.MaxCubeOffsetXZ,
+			cube.getY() + CubeNeighborhood.MaxCubeOffsetY, cube.getZ() + CubeNeighborhood.MaxCubeOffsetXZ,
+			true, GeneratorStage.FEATURES);
+	}
+
+	private BiomeGenBase getBiome(Cube cube) {
+		// the biome only depends on the column, look it up once for all its cubes
+		ColumnGeneratorData data = cube.getColumn().getGeneratorData();
+		BiomeGenBase biome = data.getFeatureBiome();
+		if (biome == null) {
+			biome = this.world.getBiomeGenForCoords(Coords.getCubeCenter(cube));
+			data.setFeatureBiome(biome);
+		}
+		return biome;
+	}
+
+	private static int getColor(int cubeX, int cubeZ) {
+		int size = CubeNeighborhood.SizeXZ;
+		int colorX = (cubeX % size + size) % size;
+		int colorZ = (cubeZ % size + size) % size;
+		return colorX * size + colorZ;
+	}
+
+	private void run(Collection<ColumnTask> tasks) {
+		try {
+			if (this.executor == null) {
+				for (ColumnTask task : tasks) {
+					task.call();
+				}
+				return;
+			}
+			for (Future<Void> future : this.executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw Throwables.propagate(ex);
+		} catch (ExecutionException ex) {
+			throw Throwables.propagate(ex.getCause());
+		}
+	}
+
+	private static ExecutorService createExecutor() {
+		return Executors.newFixedThreadPool(NumThreads, new ThreadFactory() {
+
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Population Thread #" + this.threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private class Worker {
+
+		private final CubeNeighborhood blocks;
+		private final Map<BiomeGenBase, BiomeFeatures> biomeFeaturesMap;
+
+		private Worker() {
+			this.blocks = new CubeNeighborhood(world, cache);
+			this.biomeFeaturesMap = new HashMap<>();
+
+			// for now use global for all biomes
+			for (BiomeGenBase biome : BiomeGenBase.getBiomeGenArray()) {
+				if (biome == null) {
+					continue;
+				}
+				this.biomeFeaturesMap.put(biome, new BiomeFeatures(this.blocks, biome));
+			}
+		}
+
+		private void populate(Cube cube, BiomeGenBase biome, CubeNeighborhood.Changes changes) {
+			this.blocks.setCenter(cube, changes);
+
+			//For surface generators we should actually use special RNG with seed 
+			//that depends only in world seed and cube X/Z
+			//but using this for surface generation doesn't cause any noticable issues
+			Random rand = new Random(cube.cubeRandomSeed());
+
+			BiomeFeatures features = this.biomeFeaturesMap.get(biome);
+			for (FeatureGenerator gen : features.getBiomeFeatureGenerators()) {
+				gen.generate(rand, cube, biome);
+			}
+			this.blocks.clear();
+		}
+	}
+
+	/**
+	 * Populates the cubes of one column from the bottom up. No other task can touch the blocks around the column while
+	 * it runs.
+	 */
+	private class ColumnTask implements Callable<Void> {
+
+		private final BiomeGenBase biome;
+		private final List<Cube> cubes;
+		private final CubeNeighborhood.Changes changes;
+
+		private ColumnTask(int cubeX, int cubeZ, BiomeGenBase biome) {
+			this.biome = biome;
+			this.cubes = new ArrayList<>();
+			this.changes = new CubeNeighborhood.Changes(cubeX, cubeZ);
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			Collections.sort(this.cubes, CubeYComparator);
+			Worker worker = workers.take();
+			try {
+				for (Cube cube : this.cubes) {
+					long timeStart = stats != null ? System.nanoTime() : 0;
+					worker.populate(cube, this.biome, this.changes);
+					if (stats != null) {
+						stats.processed(System.nanoTime() - timeStart);
+					}
+				}
+			} finally {
+				workers.add(worker);
+			}
+			return null;
+		}
 	}
 }
@@ -51,6 +51,8 @@ public class GeneratorPipeline {
 	
 	private ICubeCache cubes;
 	private List<StageProcessor> processors;
+	// null unless stats are turned on
+	private GeneratorPipelineStats stats;
 	
 	public GeneratorPipeline(ICubeCache cubes) {
 		this.cubes = cubes;
@@ -78,10 +80,30 @@ public class GeneratorPipeline {
 		}
 	}
 	
+	/**
+	 * Starts tracing cubes through the pipeline. Call after all stages were added.
+	 */
+	public void enableStats(String name) {
+		this.stats = new GeneratorPipelineStats(name);
+		for (int stage = 0; stage < this.processors.size(); stage++) {
+			this.stats.addStage(GeneratorStage.values()[stage], this.processors.get(stage).processor);
+		}
+	}
+	
+	/**
+	 * Returns null if stats aren't turned on.
+	 */
+	public GeneratorPipelineStats getStats() {
+		return this.stats;
+	}
+	
 	public void generate(Cube cube) {
 		GeneratorStage stage = cube.getGeneratorStage();
 		if (!stage.isLastStage()) {
 			this.processors.get(stage.ordinal()).processor.add(cube.getAddress());
+			if (this.stats != null) {
+				this.stats.enqueued(stage, cube.getAddress(), System.nanoTime());
+			}
 		}
 	}
 	
@@ -151,10 +173,24 @@ public class GeneratorPipeline {
 				CubicChunks.LOGGER.debug(processor.processor.getProcessingReport());
 			}
 		}
+		if (this.stats != null) {
+			this.stats.tick(this.cubes);
+		}
 		
 		return numProcessed;
 	}
 	
+	/**
+	 * Shuts down the processors of all stages. Call when the world is unloaded.
+	 */
+	public void shutdown() {
+		for (StageProcessor stageProcessor : this.processors) {
+			if (stageProcessor != null) {
+				stageProcessor.processor.shutdown();
+			}
+		}
+	}
+	
 	public void generateAll() {
 		for (int stage = 0; stage < this.processors.size(); stage++) {
 			
@@ -179,6 +215,7 @@ public class GeneratorPipeline {
 		
 		// move the processed entries into the next stage of the pipeline
 		int nextStage = stage + 1;
+		long now = this.stats != null ? System.nanoTime() : 0;
 		for (long address : processor.getProcessedAddresses()) {
 			
 			// set the generator stage flag on the cube
@@ -191,6 +228,9 @@ public class GeneratorPipeline {
 			if (nextStage < this.processors.size()) {
 				this.processors.get(nextStage).processor.add(address);
 			}
+			if (this.stats != null) {
+				this.stats.advanced(GeneratorStage.values()[stage], GeneratorStage.values()[nextStage], address, now);
+			}
 		}
 	}
 }
@@ -0,0 +1,252 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import cubicchunks.CubicChunks;
+import cubicchunks.perf.LatencyHistogram;
+import cubicchunks.util.AddressTools;
+import cubicchunks.util.processor.ProcessorStats;
+import cubicchunks.util.processor.QueueProcessor;
+import cubicchunks.world.ICubeCache;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Traces cubes through the generator pipeline: queue depths, processed, deferred and dropped counts, why cubes were
+ * deferred, how long each cube took to process and how long cubes waited in each stage and until they went live.
+ * <p>
+ * Stats are turned on with -Dcubicchunks.generatorStats=true. A report is then appended to generator-stats.txt every
+ * 60 seconds, which can be changed with -Dcubicchunks.generatorStats.file and -Dcubicchunks.generatorStats.interval
+ * (in seconds, 0 to never write the file). When stats are off the pipeline doesn't keep any of this.
+ * <p>
+ * Apart from the processor counters, which workers may update, this must only be used on the server thread.
+ */
+public class GeneratorPipelineStats {
+
+	public static final boolean Enabled = Boolean.getBoolean("cubicchunks.generatorStats");
+	private static final String DumpFile = System.getProperty("cubicchunks.generatorStats.file", "generator-stats.txt");
+	private static final long DumpIntervalMs = Long.getLong("cubicchunks.generatorStats.interval", 60) * 1000;
+	// how often to forget cubes that got unloaded before they went live, whether or not reports are written
+	private static final long PruneIntervalMs = 10 * 1000;
+
+	private static class StageStats {
+
+		public final GeneratorStage stage;
+		public final QueueProcessor<?> processor;
+		public final ProcessorStats processorStats;
+		// when each queued cube entered this stage
+		public final Map<Long, Long> enqueueTimes;
+		public final LatencyHistogram timeInStage;
+
+		public StageStats(GeneratorStage stage, QueueProcessor<?> processor) {
+			this.stage = stage;
+			this.processor = processor;
+			this.processorStats = new ProcessorStats();
+			this.enqueueTimes = Maps.newHashMap();
+			this.timeInStage = new LatencyHistogram();
+		}
+	}
+
+	private final String name;
+	private final List<StageStats> stages;
+	// when each cube in the pipeline was first queued
+	private final Map<Long, Long> pipelineEnqueueTimes;
+	private final LatencyHistogram timeToLive;
+	private long timeLastDump;
+	private long timeLastPrune;
+	private boolean canDump;
+
+	public GeneratorPipelineStats(String name) {
+		this.name = name;
+		this.stages = Lists.newArrayList();
+		this.pipelineEnqueueTimes = Maps.newHashMap();
+		this.timeToLive = new LatencyHistogram();
+		this.timeLastDump = System.currentTimeMillis();
+		this.timeLastPrune = this.timeLastDump;
+		this.canDump = DumpIntervalMs > 0;
+	}
+
+	public void addStage(GeneratorStage stage, QueueProcessor<?> processor) {
+		while (this.stages.size() <= stage.ordinal()) {
+			this.stages.add(null);
+		}
+		StageStats stageStats = new StageStats(stage, processor);
+		processor.setStats(stageStats.processorStats);
+		this.stages.set(stage.ordinal(), stageStats);
+	}
+
+	public void enqueued(GeneratorStage stage, long address, long now) {
+		Map<Long, Long> enqueueTimes = this.stages.get(stage.ordinal()).enqueueTimes;
+		if (!enqueueTimes.containsKey(address)) {
+			enqueueTimes.put(address, now);
+		}
+		if (!this.pipelineEnqueueTimes.containsKey(address)) {
+			this.pipelineEnqueueTimes.put(address, now);
+		}
+	}
+
+	public void advanced(GeneratorStage stage, GeneratorStage nextStage, long address, long now) {
+		Long timeEnqueued = this.stages.get(stage.ordinal()).enqueueTimes.remove(address);
+		if (timeEnqueued != null) {
+			this.stages.get(stage.ordinal()).timeInStage.record(now - timeEnqueued);
+		}
+
+		if (!nextStage.isLastStage()) {
+			enqueued(nextStage, address, now);
+			return;
+		}
+
+		Long timeFirstEnqueued = this.pipelineEnqueueTimes.remove(address);
+		if (timeFirstEnqueued != null) {
+			this.timeToLive.record(now - timeFirstEnqueued);
+		}
+	}
+
+	/**
+	 * Forgets unloaded cubes and writes the report to the dump file when it's time to.
+	 */
+	public void tick(ICubeCache cubes) {
+		long now = System.currentTimeMillis();
+		if (now - this.timeLastPrune >= PruneIntervalMs) {
+			this.timeLastPrune = now;
+
+			// forget cubes that got unloaded before they went live
+			prune(this.pipelineEnqueueTimes, cubes);
+			for (StageStats stageStats : this.stages) {
+				prune(stageStats.enqueueTimes, cubes);
+			}
+		}
+
+		if (!this.canDump || now - this.timeLastDump < DumpIntervalMs) {
+			return;
+		}
+		this.timeLastDump = now;
+
+		File file = new File(DumpFile);
+		try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+			out.println(snapshot());
+		} catch (IOException ex) {
+			CubicChunks.LOGGER.warn("Unable to write generator stats to {}, not trying again.", file.getAbsolutePath(), ex);
+			this.canDump = false;
+		}
+	}
+
+	public Snapshot snapshot() {
+		List<StageSnapshot> stageSnapshots = Lists.newArrayList();
+		for (StageStats stageStats : this.stages) {
+			stageSnapshots.add(new StageSnapshot(stageStats));
+		}
+		return new Snapshot(this.name, this.pipelineEnqueueTimes.size(), this.timeToLive.copy(), stageSnapshots);
+	}
+
+	private static void prune(Map<Long, Long> enqueueTimes, ICubeCache cubes) {
+		Iterator<Long> iter = enqueueTimes.keySet().iterator();
+		while (iter.hasNext()) {
+			long address = iter.next();
+			if (!cubes.cubeExists(AddressTools.getX(address), AddressTools.getY(address), AddressTools.getZ(address))) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * The state of the pipeline at one point in time. Counters are totals since stats were turned on.
+	 */
+	public static class Snapshot {
+
+		public final String name;
+		public final long time;
+		public final int numInPipeline;
+		public final LatencyHistogram timeToLive;
+		public final List<StageSnapshot> stages;
+
+		private Snapshot(String name, int numInPipeline, LatencyHistogram timeToLive, List<StageSnapshot> stages) {
+			this.name = name;
+			this.time = System.currentTimeMillis();
+			this.numInPipeline = numInPipeline;
+			this.timeToLive = timeToLive;
+			this.stages = Collections.unmodifiableList(stages);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder buf = new StringBuilder();
+			buf.append(String.format("Generator pipeline %s at %tF %<tT: %d cubes in the pipeline%n", this.name, new Date(this.time), this.numInPipeline));
+			buf.append(String.format("\tqueued to live: %s%n", this.timeToLive));
+			for (StageSnapshot stage : this.stages) {
+				buf.append(stage);
+			}
+			return buf.toString();
+		}
+	}
+
+	public static class StageSnapshot {
+
+		public final GeneratorStage stage;
+		public final String processorName;
+		public final int queueDepth;
+		public final long numProcessed;
+		public final long numDeferred;
+		public final long numDropped;
+		public final Map<String, Long> deferReasons;
+		public final LatencyHistogram latency;
+		public final LatencyHistogram timeInStage;
+
+		private StageSnapshot(StageStats stageStats) {
+			ProcessorStats processorStats = stageStats.processorStats;
+			this.stage = stageStats.stage;
+			this.processorName = stageStats.processor.getName();
+			this.queueDepth = stageStats.processor.getNumInQueue();
+			this.numProcessed = processorStats.getNumProcessed();
+			this.numDeferred = processorStats.getNumDeferred();
+			this.numDropped = processorStats.getNumDropped();
+			this.deferReasons = Collections.unmodifiableMap(processorStats.getDeferReasons());
+			this.latency = processorStats.getLatency().copy();
+			this.timeInStage = stageStats.timeInStage.copy();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder buf = new StringBuilder();
+			buf.append(String.format("\t%s (%s): %d queued, %d processed, %d deferred, %d dropped%n",
+				this.stage.name(), this.processorName, this.queueDepth, this.numProcessed, this.numDeferred, this.numDropped));
+			buf.append(String.format("\t\tper cube: %s%n", this.latency));
+			buf.append(String.format("\t\tin stage: %s%n", this.timeInStage));
+			for (Map.Entry<String, Long> entry : this.deferReasons.entrySet()) {
+				buf.append(String.format("\t\tdeferred, %s: %d%n", entry.getKey(), entry.getValue()));
+			}
+			return buf.toString();
+		}
+	}
+}
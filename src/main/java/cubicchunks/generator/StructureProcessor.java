@@ -61,6 +61,7 @@ public class StructureProcessor extends CubeProcessor {
 	public boolean calculate(Cube cube) {
 		
 		if(!this.canGenerate(cube)) {
+			deferredBecause("cube below not ready");
 			return false;
 		}
 		this.worldObj = cube.getWorld();
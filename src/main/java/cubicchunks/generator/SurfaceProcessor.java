@@ -27,6 +27,7 @@ import cubicchunks.generator.noise.NoiseGeneratorMultiFractal;
 import cubicchunks.util.Coords;
 import cubicchunks.util.processor.CubeProcessor;
 import cubicchunks.world.ICubeCache;
+import cubicchunks.world.OpacityIndexBuilder;
 import cubicchunks.world.biome.BiomeBlockReplacer;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.world.biome.BiomeGenBase;
@@ -39,17 +40,18 @@ public class SurfaceProcessor extends CubeProcessor {
 
 	private Random rand;
 	private NoiseGeneratorMultiFractal noiseGen;
-	private double[] noise;
-	private BiomeGenBase[] biomes;
 	private long seed;
+	// blocks of the cube being processed, reused for every cube
+	private final char[] blockBuffer;
+	private final OpacityIndexBuilder opacityBuilder;
 
 	public SurfaceProcessor(final ICubeCache cubeCache, final int batchSize, final long seed) {
 		super(PROCESSOR_NAME, cubeCache, batchSize);
 		this.rand = new Random(seed);
 		this.noiseGen = new NoiseGeneratorMultiFractal(this.rand, 4);
-		this.noise = new double[256];
-		this.biomes = null;
 		this.seed = seed;
+		this.blockBuffer = new char[16 * 16 * 16];
+		this.opacityBuilder = new OpacityIndexBuilder();
 	}
 
 	@Override
@@ -62,22 +64,30 @@ public class SurfaceProcessor extends CubeProcessor {
 		}
 
 		if (!this.canGenerate(cube)) {
+			deferredBecause("cube above not ready");
 			return false;
 		}
 
-		this.biomes = getCubeBiomeMap(cube);
-
-		this.noise = getCubeNoiseMap(cube);
+		// biomes and depth noise only depend on x/z, so all cubes in the column share them
+		ColumnGeneratorData data = cube.getColumn().getGeneratorData();
+		if (data.getBlockBiomes() == null) {
+			data.setBlockBiomes(getCubeBiomeMap(cube));
+		}
+		if (data.getSurfaceNoise() == null) {
+			data.setSurfaceNoise(getCubeNoiseMap(cube));
+		}
 
-		replaceBlocks(cube);
+		replaceBlocks(cube, data.getBlockBiomes(), data.getSurfaceNoise());
 		return true;
 	}
 
-	private void replaceBlocks(final Cube cube) {
+	private void replaceBlocks(final Cube cube, final BiomeGenBase[] biomes, final double[] noise) {
 		this.rand.setSeed(41 * this.seed + cube.cubeRandomSeed());
 
 		Cube cubeAbove = this.cache.getCube(cube.getX(), cube.getY() + 1, cube.getZ());
-		BiomeBlockReplacer blockReplacer = new BiomeBlockReplacer(this.rand, cube, cubeAbove);
+		// replace blocks in a copy and write them back all at once
+		System.arraycopy(cube.getStorage().getData(), 0, this.blockBuffer, 0, this.blockBuffer.length);
+		BiomeBlockReplacer blockReplacer = new BiomeBlockReplacer(this.rand, cube, cubeAbove, this.blockBuffer);
 
 		for (int xRel = 0; xRel < 16; xRel++) {
 			int xAbs = cube.getX() << 4 | xRel;
@@ -87,19 +97,20 @@ public class SurfaceProcessor extends CubeProcessor {
 				int xzCoord = zRel << 4 | xRel;
 
 				// TODO: Reimplement this
-				blockReplacer.replaceBlocks(this.biomes[xzCoord], xAbs, zAbs, this.noise[zRel * 16 + xRel]);
+				blockReplacer.replaceBlocks(biomes[xzCoord], xAbs, zAbs, noise[zRel * 16 + xRel]);
 			}
 		}
+		cube.setBlocksForGeneration(this.blockBuffer, this.opacityBuilder);
 	}
 
 	private double[] getCubeNoiseMap(final Cube cube) {
-		return this.noiseGen.getNoiseMap(this.noise, Coords.cubeToMinBlock(cube.getX()),
+		return this.noiseGen.getNoiseMap(null, Coords.cubeToMinBlock(cube.getX()),
 				Coords.cubeToMinBlock(cube.getZ()), 16, 16, 16, 16, 1);
 	}
 
 	private BiomeGenBase[] getCubeBiomeMap(final Cube cube) {
 		// generate biome info. This is a hackjob.
-		return cube.getWorld().provider.getWorldChunkManager().loadBlockGeneratorData(this.biomes, Coords.cubeToMinBlock(cube.getX()),
+		return cube.getWorld().provider.getWorldChunkManager().loadBlockGeneratorData(null, Coords.cubeToMinBlock(cube.getX()),
 				Coords.cubeToMinBlock(cube.getZ()), 16, 16);
 	}
 
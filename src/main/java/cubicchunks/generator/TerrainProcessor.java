@@ -24,11 +24,12 @@
 package cubicchunks.generator;
 
 import net.minecraft.block.Block;
-import net.minecraft.util.BlockPos;
 import cubicchunks.api.generators.ITerrainGenerator;
 import cubicchunks.util.Coords;
+import cubicchunks.util.TerrainGeneratorUtils;
 import cubicchunks.util.processor.CubeProcessor;
 import cubicchunks.world.ICubeCache;
+import cubicchunks.world.OpacityIndexBuilder;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.init.Blocks;
 
@@ -37,10 +38,18 @@ public final class TerrainProcessor extends CubeProcessor {
 
 	private final ITerrainGenerator terrainGenerator;
 
+	// reused for every cube, the processor only ever works on one cube at a time
+	private final double[] densityBuffer;
+	private final char[] blockBuffer;
+	private final OpacityIndexBuilder opacityBuilder;
+
 	public TerrainProcessor(final ICubeCache cache, final int batchSize, final ITerrainGenerator terrainGen) {
 		super(PROCESSOR_NAME, cache, batchSize);
 
 		this.terrainGenerator = terrainGen;
+		this.densityBuffer = TerrainGeneratorUtils.newDensityBuffer();
+		this.blockBuffer = new char[TerrainGeneratorUtils.CUBE_VOLUME];
+		this.opacityBuilder = new OpacityIndexBuilder();
 	}
 
 	@Override
@@ -48,31 +57,56 @@ public final class TerrainProcessor extends CubeProcessor {
 		//cube.getWorld().profiler.startSection("terrainProcessor");
 		
 		//cube.getWorld().profiler.startSection("generation");
-		double[][][] rawDensity = this.terrainGenerator.generate(cube);
+		this.terrainGenerator.generate(cube, this.densityBuffer);
 		//cube.getWorld().profiler.endSection();
 		
-		generateTerrain(cube, rawDensity);
+		if (isAllAir(cube, this.densityBuffer)) {
+			// new cubes are already empty, nothing to place
+			return true;
+		}
+		
+		generateTerrain(cube, this.densityBuffer);
 		
 		//cube.getWorld().profiler.endSection();
 
 		return true;
 	}
 
-	protected void generateTerrain(final Cube cube, final double[][][] densityField) {
+	protected void generateTerrain(final Cube cube, final double[] densityField) {
 		//cube.getWorld().profiler.startSection("placement");
 		//todo: find better way to do it
 		int seaLevel = cube.getWorld().provider.getAverageGroundLevel();
+		char stone = (char) Block.BLOCK_STATE_IDS.get(Blocks.stone.getDefaultState());
+		char water = (char) Block.BLOCK_STATE_IDS.get(Blocks.water.getDefaultState());
+		char air = (char) Block.BLOCK_STATE_IDS.get(Blocks.air.getDefaultState());
 		for (int xRel = 0; xRel < 16; xRel++) {
 			for (int zRel = 0; zRel < 16; zRel++) {
+				int index = TerrainGeneratorUtils.getDensityIndex(xRel, 0, zRel);
 				for (int yRel = 0; yRel < 16; yRel++) {
 					int yAbs = Coords.localToBlock(cube.getY(), yRel);
-					BlockPos pos = new BlockPos(xRel, yRel, zRel);
-					Block block = densityField[xRel][yRel][zRel] > 0 ? Blocks.stone
-							: yAbs < seaLevel ? Blocks.water : Blocks.air;
-					cube.setBlockForGeneration(pos, block.getDefaultState());
+					this.blockBuffer[Cube.getBlockIndex(xRel, yRel, zRel)] = densityField[index + yRel] > 0 ? stone
+							: yAbs < seaLevel ? water : air;
 				} // end yRel
 			} // end zRel
 		} // end xRel
+		cube.setBlocksForGeneration(this.blockBuffer, this.opacityBuilder);
 		//cube.getWorld().profiler.endSection();
 	}
+
+	private boolean isAllAir(final Cube cube, final double[] densityField) {
+		if (!cube.isEmpty()) {
+			return false;
+		}
+		int seaLevel = cube.getWorld().provider.getAverageGroundLevel();
+		if (Coords.cubeToMinBlock(cube.getY()) < seaLevel) {
+			// there may be water
+			return false;
+		}
+		for (int i = 0; i < TerrainGeneratorUtils.CUBE_VOLUME; i++) {
+			if (densityField[i] > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
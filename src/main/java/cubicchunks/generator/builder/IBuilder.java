@@ -32,4 +32,10 @@ public abstract interface IBuilder {
 	public void build() throws IllegalArgumentException;
 	
 	public double getValue(double x, double y, double z);
+	
+	/**
+	 * Fills a whole lattice at once. After this call out[x][y][z] holds exactly the same value as
+	 * getValue(xStart + x, yStart + y, zStart + z).
+	 */
+	public void getValues(double[][][] out, int xStart, int yStart, int zStart);
 }
\ No newline at end of file
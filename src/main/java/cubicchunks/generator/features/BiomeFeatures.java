@@ -42,11 +42,13 @@ import java.util.Collection;
 
 public class BiomeFeatures {
 	private final World world;
+	private final CubeNeighborhood blocks;
 
 	private final Collection<FeatureGenerator> generators;
 
-	public BiomeFeatures(World world, BiomeGenBase biome) {
-		this.world = world;
+	public BiomeFeatures(CubeNeighborhood blocks, BiomeGenBase biome) {
+		this.world = blocks.getWorld();
+		this.blocks = blocks;
 		this.generators = new ArrayList<>(20);
 		BiomeDecorator decorator = biome.theBiomeDecorator;
 		
@@ -55,31 +57,32 @@ public class BiomeFeatures {
 		
 		//clay generator
 		this.addMultiGen(SurfaceBlockReplacer.builder().
-						world(world).height(1).radius(2).block(Blocks.clay).
+						blocks(blocks).height(1).radius(2).block(Blocks.clay).
 						addAllowedAboveSurface(Blocks.water).
 						addReplacable(Blocks.sand).addReplacable(Blocks.dirt).build(), decorator.clayPerChunk);
 		
 		//sand and gravel beach generators
 //		this.addMultiGen(SurfaceBlockReplacer.builder().
-//						world(world).height(1).radius(7).block(SAND).
+//						blocks(blocks).height(1).radius(7).block(SAND).
 //						addAllowedAboveSurface(WATER).
 //						addReplacable(DIRT).addReplacable(GRASS).build(), decorator.sandBeachesPerChunk);
 //		this.addMultiGen(SurfaceBlockReplacer.builder().
-//						world(world).height(1).radius(6).block(GRAVEL).
+//						blocks(blocks).height(1).radius(6).block(GRAVEL).
 //						addAllowedAboveSurface(WATER).
 //						addReplacable(DIRT).addReplacable(GRASS).build(), decorator.gravelBeachesPerChunk);
 		this.addTreeGenerators(decorator);
-		addMultiGen(new TallGrassGenerator(world, BlockTallGrass.EnumType.GRASS), decorator.grassPerChunk);
+		addMultiGen(new TallGrassGenerator(blocks, BlockTallGrass.EnumType.GRASS), decorator.grassPerChunk);
 		this.addOreGenerators(config);
 	}
 
 	protected final void addTreeGenerators(BiomeDecorator decorator) {
 		//Other classes may override this methid to provide other tree generators
-		TreeGenerator smallTreeGen = new SimpleTreeGenerator(world, Blocks.log.getDefaultState(), Blocks.leaves.getDefaultState());
-		BigTreeGenerator bigTreeGen2 = new BigTreeGenerator(world, Blocks.log.getDefaultState(), Blocks.leaves.getDefaultState());
+		TreeGenerator smallTreeGen = new SimpleTreeGenerator(blocks, Blocks.log.getDefaultState(), Blocks.leaves.getDefaultState());
+		BigTreeGenerator bigTreeGen2 = new BigTreeGenerator(blocks, Blocks.log.getDefaultState(), Blocks.leaves.getDefaultState());
 		bigTreeGen2.setHeightRange(28, 32);
 		
 		VariantFeatureGenerator randomTreeGen = VariantFeatureGenerator.builder()
+						.blocks(blocks)
 						.nextVariant(smallTreeGen, 1.0)
 						.build();
 		
@@ -116,7 +119,7 @@ public class BiomeFeatures {
 	}
 
 	protected final void addMineral(IBlockState state, int vanillaMinHeight, int vanillaMaxHeight, int size, int countPerChunk){
-		addMultiGen(new MineralGenerator(world, 
+		addMultiGen(new MineralGenerator(blocks, 
 						state, 
 						getMinHeight(vanillaMinHeight),
 						getMaxHeight(vanillaMaxHeight), 
@@ -133,7 +136,7 @@ public class BiomeFeatures {
 	}
 	
 	protected final void addMultiGen(FeatureGenerator gen, int attempts) {
-		this.generators.add(new MultiFeatureGenerator(this.world, gen, attempts));
+		this.generators.add(new MultiFeatureGenerator(this.blocks, gen, attempts));
 	}
 
 	public Collection<FeatureGenerator> getBiomeFeatureGenerators() {
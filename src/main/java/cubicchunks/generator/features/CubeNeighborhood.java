@@ -0,0 +1,284 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.features;
+
+import cubicchunks.generator.GeneratorStage;
+import cubicchunks.lighting.LightingManager;
+import cubicchunks.util.Coords;
+import cubicchunks.util.MathHelper;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.WorldContext;
+import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+
+/**
+ * Block access for feature generators. All the blocks a cube's features can change are in the cubes around it, so
+ * those cubes are looked up once for each cube and blocks are read and written without going through the World.
+ * <p>
+ * Blocks outside of the neighborhood, or in cubes that aren't ready for population yet, read as air and can't be set.
+ * FeatureProcessor only populates a cube once all cubes of its neighborhood are at least at the FEATURES stage, so
+ * that only happens to features that reach out of the neighborhood.
+ * <p>
+ * Setting a block doesn't update light or notify anything, the change is recorded and applied to the world later on
+ * the server thread. This way features of cubes that are far enough apart can be generated at the same time.
+ */
+public class CubeNeighborhood {
+
+	// features are placed 8 blocks into the cube, so the big ones reach into the cubes with higher coordinates
+	public static final int MinCubeOffsetXZ = -1;
+	public static final int MaxCubeOffsetXZ = 2;
+	public static final int MinCubeOffsetY = -1;
+	// big trees can be about 40 blocks tall
+	public static final int MaxCubeOffsetY = 3;
+
+	public static final int SizeXZ = MaxCubeOffsetXZ - MinCubeOffsetXZ + 1;
+	public static final int SizeY = MaxCubeOffsetY - MinCubeOffsetY + 1;
+
+	private final World world;
+	private final ICubeCache cache;
+	private final Cube[] cubes;
+
+	private int minCubeX;
+	private int minCubeY;
+	private int minCubeZ;
+	private Changes changes;
+
+	public CubeNeighborhood(World world, ICubeCache cache) {
+		this.world = world;
+		this.cache = cache;
+		this.cubes = new Cube[SizeXZ * SizeY * SizeXZ];
+	}
+
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * Looks up the cubes around the given cube, and records all block changes to the given Changes from now on.
+	 * The cube cache is only read, so this is safe to call from any thread while the server thread waits.
+	 */
+	public void setCenter(Cube cube, Changes changes) {
+		this.minCubeX = cube.getX() + MinCubeOffsetXZ;
+		this.minCubeY = cube.getY() + MinCubeOffsetY;
+		this.minCubeZ = cube.getZ() + MinCubeOffsetXZ;
+		this.changes = changes;
+
+		int i = 0;
+		for (int cubeX = this.minCubeX; cubeX < this.minCubeX + SizeXZ; cubeX++) {
+			for (int cubeY = this.minCubeY; cubeY < this.minCubeY + SizeY; cubeY++) {
+				for (int cubeZ = this.minCubeZ; cubeZ < this.minCubeZ + SizeXZ; cubeZ++) {
+					Cube neighbor = this.cache.getCube(cubeX, cubeY, cubeZ);
+					if (neighbor != null && neighbor.getGeneratorStage().isLessThan(GeneratorStage.FEATURES)) {
+						neighbor = null;
+					}
+					this.cubes[i++] = neighbor;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the cubes, so they can be unloaded.
+	 */
+	public void clear() {
+		Arrays.fill(this.cubes, null);
+		this.changes = null;
+	}
+
+	public IBlockState getBlockState(BlockPos pos) {
+		return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	public IBlockState getBlockState(int blockX, int blockY, int blockZ) {
+		Cube cube = getCube(blockX, blockY, blockZ);
+		if (cube == null) {
+			return Blocks.air.getDefaultState();
+		}
+		return cube.getBlockState(Coords.blockToLocal(blockX), Coords.blockToLocal(blockY), Coords.blockToLocal(blockZ));
+	}
+
+	public boolean setBlockState(BlockPos pos, IBlockState state, int flags) {
+		return setBlockState(pos.getX(), pos.getY(), pos.getZ(), state, flags);
+	}
+
+	/**
+	 * Sets the block like World.setBlockState(). Flag 1 notifies the neighbors when the change is applied, the other
+	 * flags are ignored, all changed blocks are sent to the clients.
+	 *
+	 * @return true if the block was changed
+	 */
+	public boolean setBlockState(int blockX, int blockY, int blockZ, IBlockState state, int flags) {
+		Cube cube = getCube(blockX, blockY, blockZ);
+		if (cube == null) {
+			return false;
+		}
+
+		int localX = Coords.blockToLocal(blockX);
+		int localY = Coords.blockToLocal(blockY);
+		int localZ = Coords.blockToLocal(blockZ);
+		IBlockState oldState = cube.getBlockState(localX, localY, localZ);
+		if (oldState == state) {
+			return false;
+		}
+
+		// if the light can change, remember where the top block of the column was before anything was changed
+		Block oldBlock = oldState.getBlock();
+		Block newBlock = state.getBlock();
+		boolean checkLight = oldBlock.getLightOpacity() != newBlock.getLightOpacity()
+			|| oldBlock.getLightValue() != newBlock.getLightValue();
+		if (checkLight) {
+			this.changes.addSkylightColumn(cube.getColumn(), blockX, blockZ);
+		}
+
+		if (cube.setBlockForGeneration(localX, localY, localZ, state) == null) {
+			return false;
+		}
+		this.changes.add(blockX, blockY, blockZ, (flags & 1) != 0, checkLight);
+		return true;
+	}
+
+	private Cube getCube(int blockX, int blockY, int blockZ) {
+		int x = Coords.blockToCube(blockX) - this.minCubeX;
+		int y = Coords.blockToCube(blockY) - this.minCubeY;
+		int z = Coords.blockToCube(blockZ) - this.minCubeZ;
+		if (x < 0 || x >= SizeXZ || y < 0 || y >= SizeY || z < 0 || z >= SizeXZ) {
+			return null;
+		}
+		return this.cubes[(x * SizeY + y) * SizeXZ + z];
+	}
+
+	/**
+	 * Block changes made through a CubeNeighborhood that still have to be applied to the world. All changes have to
+	 * come from the neighborhoods of cubes in the same column.
+	 */
+	public static class Changes {
+
+		private static final byte NotifyNeighbors = 1;
+		private static final byte CheckLight = 2;
+
+		// number of block columns along x and z that the neighborhoods of a column can change
+		private static final int BlockColumnsXZ = SizeXZ * 16;
+
+		// x, y and z of each changed block
+		private int[] positions;
+		private byte[] flags;
+		private int size;
+
+		private final int minBlockX;
+		private final int minBlockZ;
+
+		// top non-transparent block of the changed block columns before they were changed, indexed by x * BlockColumnsXZ + z
+		private final Integer[] oldSkylightBlockY;
+		private final boolean[] hasOldSkylightBlockY;
+		private int[] skylightColumns;
+		private int numSkylightColumns;
+
+		public Changes(int cubeX, int cubeZ) {
+			this.positions = new int[64 * 3];
+			this.flags = new byte[64];
+			this.size = 0;
+
+			this.minBlockX = Coords.cubeToMinBlock(cubeX + MinCubeOffsetXZ);
+			this.minBlockZ = Coords.cubeToMinBlock(cubeZ + MinCubeOffsetXZ);
+			this.oldSkylightBlockY = new Integer[BlockColumnsXZ * BlockColumnsXZ];
+			this.hasOldSkylightBlockY = new boolean[BlockColumnsXZ * BlockColumnsXZ];
+			this.skylightColumns = new int[64];
+			this.numSkylightColumns = 0;
+		}
+
+		public boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		void add(int blockX, int blockY, int blockZ, boolean notifyNeighbors, boolean checkLight) {
+			if (this.size == this.flags.length) {
+				this.positions = Arrays.copyOf(this.positions, this.size * 2 * 3);
+				this.flags = Arrays.copyOf(this.flags, this.size * 2);
+			}
+			this.positions[this.size * 3] = blockX;
+			this.positions[this.size * 3 + 1] = blockY;
+			this.positions[this.size * 3 + 2] = blockZ;
+			this.flags[this.size] = (byte) ((notifyNeighbors ? NotifyNeighbors : 0) | (checkLight ? CheckLight : 0));
+			this.size++;
+		}
+
+		void addSkylightColumn(Column column, int blockX, int blockZ) {
+			int index = (blockX - this.minBlockX) * BlockColumnsXZ + blockZ - this.minBlockZ;
+			if (this.hasOldSkylightBlockY[index]) {
+				return;
+			}
+			this.hasOldSkylightBlockY[index] = true;
+			this.oldSkylightBlockY[index] = column.getSkylightBlockY(Coords.blockToLocal(blockX), Coords.blockToLocal(blockZ));
+
+			if (this.numSkylightColumns == this.skylightColumns.length) {
+				this.skylightColumns = Arrays.copyOf(this.skylightColumns, this.numSkylightColumns * 2);
+			}
+			this.skylightColumns[this.numSkylightColumns++] = index;
+		}
+
+		/**
+		 * Does everything World.setBlockState() would have done for the changed blocks. Must be called on the server
+		 * thread.
+		 */
+		public void apply(World world, ICubeCache cache) {
+			LightingManager lightManager = WorldContext.get(world).getLightingManager();
+			for (int i = 0; i < this.numSkylightColumns; i++) {
+				int index = this.skylightColumns[i];
+				int blockX = this.minBlockX + index / BlockColumnsXZ;
+				int blockZ = this.minBlockZ + index % BlockColumnsXZ;
+				int localX = Coords.blockToLocal(blockX);
+				int localZ = Coords.blockToLocal(blockZ);
+				Column column = cache.getColumn(Coords.blockToCube(blockX), Coords.blockToCube(blockZ));
+
+				Integer oldSkylightY = this.oldSkylightBlockY[index];
+				Integer newSkylightY = column.getSkylightBlockY(localX, localZ);
+				if (oldSkylightY == null ? newSkylightY == null : oldSkylightY.equals(newSkylightY)) {
+					continue;
+				}
+				int minY = MathHelper.minInteger(oldSkylightY, newSkylightY);
+				int maxY = MathHelper.maxInteger(oldSkylightY, newSkylightY);
+				lightManager.columnSkylightUpdate(LightingManager.UpdateType.IMMEDIATE_UPDATE_QUEUED_DIFFUSE, column,
+					localX, minY, maxY, localZ);
+			}
+
+			for (int i = 0; i < this.size; i++) {
+				BlockPos pos = new BlockPos(this.positions[i * 3], this.positions[i * 3 + 1], this.positions[i * 3 + 2]);
+				if ((this.flags[i] & CheckLight) != 0) {
+					world.checkLight(pos);
+				}
+				world.markBlockForUpdate(pos);
+				if ((this.flags[i] & NotifyNeighbors) != 0) {
+					world.notifyNeighborsOfStateChange(pos, world.getBlockState(pos).getBlock());
+				}
+			}
+		}
+	}
+}
@@ -32,23 +32,37 @@ import net.minecraft.world.biome.BiomeGenBase;
 
 public abstract class FeatureGenerator {
 	protected final World world;
+	protected final CubeNeighborhood blocks;
 
-	public FeatureGenerator(final World world) {
-		this.world = world;
+	public FeatureGenerator(final CubeNeighborhood blocks) {
+		this.world = blocks.getWorld();
+		this.blocks = blocks;
 	}
 
 	public abstract void generate(final Random rand, final Cube cube, final BiomeGenBase biome);
 	
 	protected boolean setBlockOnly(final BlockPos blockPos, final IBlockState blockState) {
-		return this.world.setBlockState(blockPos, blockState, 2);
+		return this.blocks.setBlockState(blockPos, blockState, 2);
+	}
+
+	protected boolean setBlockOnly(final int x, final int y, final int z, final IBlockState blockState) {
+		return this.blocks.setBlockState(x, y, z, blockState, 2);
 	}
 
 	protected boolean setBlockAndUpdateNeighbors(final BlockPos pos, final IBlockState state) {
-		return this.world.setBlockState(pos, state, 3);
+		return this.blocks.setBlockState(pos, state, 3);
+	}
+
+	protected boolean setBlockAndUpdateNeighbors(final int x, final int y, final int z, final IBlockState state) {
+		return this.blocks.setBlockState(x, y, z, state, 3);
 	}
 
 	protected IBlockState getBlockState(final BlockPos pos) {
-		return this.world.getBlockState(pos);
+		return this.blocks.getBlockState(pos);
+	}
+
+	protected IBlockState getBlockState(final int x, final int y, final int z) {
+		return this.blocks.getBlockState(x, y, z);
 	}
 
 	protected static int getMinCubeY(final int y) {
@@ -26,19 +26,20 @@ package cubicchunks.generator.features;
 import java.util.Random;
 
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
+import net.minecraft.util.MathHelper;
 import cubicchunks.generator.terrain.GlobalGeneratorConfig;
 import cubicchunks.util.Coords;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.world.biome.BiomeGenBase;
-import net.minecraft.world.gen.feature.WorldGenMinable;
 
 public class MineralGenerator extends FeatureGenerator {
 	private final double minY;
 	private final double maxY;
 
-	private final WorldGenMinable vanillaGen;
+	private final IBlockState state;
+	private final int size;
 	private final double probability;
 
 	/**
@@ -58,11 +59,11 @@ public class MineralGenerator extends FeatureGenerator {
 	 * @param size
 	 *            Maximum vein size
 	 */
-	public MineralGenerator(final World world, final IBlockState state, final double minY, final double maxY,
+	public MineralGenerator(final CubeNeighborhood blocks, final IBlockState state, final double minY, final double maxY,
 			final int size, final double probability) {
-		super(world);
-		// use vanilla generator. This class odesn't have height limits
-		this.vanillaGen = new WorldGenMinable(state, size);
+		super(blocks);
+		this.state = state;
+		this.size = size;
 		this.minY = minY;
 		this.maxY = maxY;
 		this.probability = probability;
@@ -80,7 +81,56 @@ public class MineralGenerator extends FeatureGenerator {
 		}
 		BlockPos currentPos = cubeCenter.add(rand.nextInt(16), rand.nextInt(16), rand.nextInt(16));
 		if (currentPos.getY() <= maxBlockY && currentPos.getY() >= minBlockY) {
-			this.vanillaGen.generate(this.world, rand, currentPos);
+			this.generateVein(rand, currentPos);
+		}
+	}
+
+	// same as vanilla WorldGenMinable, but it doesn't have height limits and replaces blocks in the neighborhood
+	private void generateVein(final Random rand, final BlockPos pos) {
+		float angle = rand.nextFloat() * (float) Math.PI;
+		double startX = pos.getX() + 8 + MathHelper.sin(angle) * this.size / 8.0F;
+		double endX = pos.getX() + 8 - MathHelper.sin(angle) * this.size / 8.0F;
+		double startZ = pos.getZ() + 8 + MathHelper.cos(angle) * this.size / 8.0F;
+		double endZ = pos.getZ() + 8 - MathHelper.cos(angle) * this.size / 8.0F;
+		double startY = pos.getY() + rand.nextInt(3) - 2;
+		double endY = pos.getY() + rand.nextInt(3) - 2;
+
+		for (int i = 0; i < this.size; ++i) {
+			float progress = (float) i / (float) this.size;
+			double centerX = startX + (endX - startX) * progress;
+			double centerY = startY + (endY - startY) * progress;
+			double centerZ = startZ + (endZ - startZ) * progress;
+			double scale = rand.nextDouble() * this.size / 16.0D;
+			double diameterXZ = (MathHelper.sin((float) Math.PI * progress) + 1.0F) * scale + 1.0D;
+			double diameterY = (MathHelper.sin((float) Math.PI * progress) + 1.0F) * scale + 1.0D;
+			int minX = MathHelper.floor_double(centerX - diameterXZ / 2.0D);
+			int minY = MathHelper.floor_double(centerY - diameterY / 2.0D);
+			int minZ = MathHelper.floor_double(centerZ - diameterXZ / 2.0D);
+			int maxX = MathHelper.floor_double(centerX + diameterXZ / 2.0D);
+			int maxY = MathHelper.floor_double(centerY + diameterY / 2.0D);
+			int maxZ = MathHelper.floor_double(centerZ + diameterXZ / 2.0D);
+
+			for (int x = minX; x <= maxX; ++x) {
+				double distX = (x + 0.5D - centerX) / (diameterXZ / 2.0D);
+				if (distX * distX >= 1.0D) {
+					continue;
+				}
+				for (int y = minY; y <= maxY; ++y) {
+					double distY = (y + 0.5D - centerY) / (diameterY / 2.0D);
+					if (distX * distX + distY * distY >= 1.0D) {
+						continue;
+					}
+					for (int z = minZ; z <= maxZ; ++z) {
+						double distZ = (z + 0.5D - centerZ) / (diameterXZ / 2.0D);
+						if (distX * distX + distY * distY + distZ * distZ >= 1.0D) {
+							continue;
+						}
+						if (this.getBlockState(x, y, z).getBlock() == Blocks.stone) {
+							this.setBlockOnly(x, y, z, this.state);
+						}
+					}
+				}
+			}
 		}
 	}
 }
@@ -25,15 +25,14 @@ package cubicchunks.generator.features;
 
 import cubicchunks.world.cube.Cube;
 import java.util.Random;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 public class MultiFeatureGenerator extends FeatureGenerator {
 	private final FeatureGenerator gen;
 	private final int attempts;
 
-	public MultiFeatureGenerator(World world, FeatureGenerator gen, int attempts) {
-		super(world);
+	public MultiFeatureGenerator(CubeNeighborhood blocks, FeatureGenerator gen, int attempts) {
+		super(blocks);
 		this.gen = gen;
 		this.attempts = attempts;
 	}
@@ -26,7 +26,6 @@ package cubicchunks.generator.features;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 import java.util.ArrayList;
@@ -41,7 +40,7 @@ public class SurfaceBlockReplacer extends SurfaceFeatureGenerator {
 	private final int height;
 
 	private SurfaceBlockReplacer(Builder builder){
-		super(builder.world);
+		super(builder.blocks);
 		this.block = builder.block;
 		this.replacable = new ArrayList<Block>(builder.replacable);
 		this.allowedAboveSurface = new ArrayList<Block>(builder.allowedAboveSurface);
@@ -58,10 +57,12 @@ public class SurfaceBlockReplacer extends SurfaceFeatureGenerator {
 					if(x*x + z*z > radiusSq){
 						continue;
 					}
-					BlockPos currentPos = pos.add(x, y, z);
-					Block currrentBlock = getBlockState(currentPos).getBlock();
+					int blockX = pos.getX() + x;
+					int blockY = pos.getY() + y;
+					int blockZ = pos.getZ() + z;
+					Block currrentBlock = getBlockState(blockX, blockY, blockZ).getBlock();
 					if(this.canReplace(currrentBlock)) {
-						this.setBlockOnly(currentPos, this.block);
+						this.setBlockOnly(blockX, blockY, blockZ, this.block);
 					}
 				}
 			}
@@ -69,12 +70,12 @@ public class SurfaceBlockReplacer extends SurfaceFeatureGenerator {
 	}
 
 	@Override
-	protected boolean isSurfaceAt(BlockPos pos) {
-		Block below = getBlockState(pos.down()).getBlock();
+	protected boolean isSurfaceAt(int x, int y, int z) {
+		Block below = getBlockState(x, y - 1, z).getBlock();
 		if (!below.isOpaqueCube()) {
 			return false;
 		}
-		Block blockAboveSurface = getBlockState(pos).getBlock();
+		Block blockAboveSurface = getBlockState(x, y, z).getBlock();
 		for (Block b : this.allowedAboveSurface) {
 			if (blockAboveSurface == b) {
 				return true;
@@ -102,7 +103,7 @@ public class SurfaceBlockReplacer extends SurfaceFeatureGenerator {
 		private final List<Block> allowedAboveSurface;
 		private int radius;
 		private int height;
-		private World world;
+		private CubeNeighborhood blocks;
 		
 		private Builder() {
 			this.replacable = new ArrayList<Block>(2);
@@ -139,8 +140,8 @@ public class SurfaceBlockReplacer extends SurfaceFeatureGenerator {
 			return this;
 		}
 		
-		public Builder world(World world){
-			this.world = world;
+		public Builder blocks(CubeNeighborhood blocks){
+			this.blocks = blocks;
 			return this;
 		}
 		
@@ -27,47 +27,46 @@ import cubicchunks.util.Coords;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 import java.util.Random;
 
 public abstract class SurfaceFeatureGenerator extends FeatureGenerator {
 
-	public SurfaceFeatureGenerator(World world) {
-		super(world);
+	public SurfaceFeatureGenerator(CubeNeighborhood blocks) {
+		super(blocks);
 	}
 
 	@Override
 	public void generate(Random rand, Cube cube, BiomeGenBase biome) {
-		BlockPos cubeCenter = Coords.getCubeCenter(cube);
+		int centerX = Coords.cubeToMinBlock(cube.getX()) + Coords.HALF_CUBE_MAX_X;
+		int centerY = Coords.cubeToMinBlock(cube.getY()) + Coords.HALF_CUBE_MAX_Y;
+		int centerZ = Coords.cubeToMinBlock(cube.getZ()) + Coords.HALF_CUBE_MAX_Z;
 
-		int x = cubeCenter.getX() + rand.nextInt(16);
-		int z = cubeCenter.getZ() + rand.nextInt(16);
+		int x = centerX + rand.nextInt(16);
+		int z = centerZ + rand.nextInt(16);
 
-		int y = cubeCenter.getY() + 16;
-		int minY = cubeCenter.getY();
-
-		BlockPos pos = new BlockPos(x, y, z);
+		int y = centerY + 16;
+		int minY = centerY;
 
 		boolean foundSurface = false;
-		while (pos.getY() >= minY) {
-			if (isSurfaceAt(pos)) {
+		while (y >= minY) {
+			if (isSurfaceAt(x, y, z)) {
 				foundSurface = true;
 				break;
 			}
-			pos = pos.down();
+			y--;
 		}
 		// next attempt. We didn't find place to generate it
 		if (foundSurface) {
-			this.generateAt(rand, pos, biome);
+			this.generateAt(rand, new BlockPos(x, y, z), biome);
 		}
 	}
 	
-	protected boolean isSurfaceAt(BlockPos pos) {
+	protected boolean isSurfaceAt(int x, int y, int z) {
 		//we don't really know if it's the top block.
 		//assume it's sirface if there is solid block with air above it
-		return getBlockState(pos.down()).getBlock().isOpaqueCube()&& getBlockState(pos).getBlock() == Blocks.air;
+		return getBlockState(x, y - 1, z).getBlock().isOpaqueCube()&& getBlockState(x, y, z).getBlock() == Blocks.air;
 	}
 
 	/**
@@ -25,35 +25,40 @@ package cubicchunks.generator.features;
 
 import java.util.Random;
 
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockTallGrass;
+import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 public class TallGrassGenerator extends SurfaceFeatureGenerator {
 	
 	private final IBlockState block;
 	
-	public TallGrassGenerator(final World world, final BlockTallGrass.EnumType tallGrassType) {
-		super(world);
+	public TallGrassGenerator(final CubeNeighborhood blocks, final BlockTallGrass.EnumType tallGrassType) {
+		super(blocks);
 		
 		this.block = Blocks.tallgrass.getDefaultState().withProperty(BlockTallGrass.TYPE, tallGrassType);
 	}
 	
 	@Override
 	public void generateAt(final Random rand, final BlockPos pos, final BiomeGenBase biome) {
-		BlockPos currentPos = pos;
-
 		for(int i = 0; i < 128; ++i) {
-			BlockPos randomPos = currentPos.add(rand.nextInt(8) - rand.nextInt(8),
-					rand.nextInt(4) - rand.nextInt(4),
-					rand.nextInt(8) - rand.nextInt(8));
+			int x = pos.getX() + rand.nextInt(8) - rand.nextInt(8);
+			int y = pos.getY() + rand.nextInt(4) - rand.nextInt(4);
+			int z = pos.getZ() + rand.nextInt(8) - rand.nextInt(8);
 			
-			if(world.isAirBlock(randomPos) && Blocks.tallgrass.canBlockStay(world, randomPos, block)) {
-				this.setBlockOnly(randomPos, block);
+			if(this.getBlockState(x, y, z).getBlock().getMaterial() == Material.air && this.canGrassStayAt(x, y, z)) {
+				this.setBlockOnly(x, y, z, block);
 			}	
 		}
 	}
+
+	// same as BlockTallGrass.canBlockStay(), but reads the block below from the neighborhood
+	private boolean canGrassStayAt(final int x, final int y, final int z) {
+		Block below = this.getBlockState(x, y - 1, z).getBlock();
+		return below == Blocks.grass || below == Blocks.dirt || below == Blocks.farmland;
+	}
 }
@@ -27,7 +27,6 @@ import cubicchunks.world.cube.Cube;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 public class VariantFeatureGenerator extends FeatureGenerator {
@@ -35,8 +34,8 @@ public class VariantFeatureGenerator extends FeatureGenerator {
 	private final FeatureGenerator[] generators;
 	private final double[] probabilities;
 
-	private VariantFeatureGenerator(World world, List<FeatureGenerator> generators, List<Double> probabilities) {
-		super(world);
+	private VariantFeatureGenerator(CubeNeighborhood blocks, List<FeatureGenerator> generators, List<Double> probabilities) {
+		super(blocks);
 		assert generators.size() == probabilities.size();
 		int size = generators.size();
 		this.generators = new FeatureGenerator[size];
@@ -66,15 +65,15 @@ public class VariantFeatureGenerator extends FeatureGenerator {
 		// use lists because order is important
 		private final List<FeatureGenerator> generators;
 		private final List<Double> probabilities;
-		private World world;
+		private CubeNeighborhood blocks;
 
 		private Builder() {
 			this.generators = new ArrayList<FeatureGenerator>(2);
 			this.probabilities = new ArrayList<Double>(2);
 		}
 
-		public Builder world(World world) {
-			this.world = world;
+		public Builder blocks(CubeNeighborhood blocks) {
+			this.blocks = blocks;
 			return this;
 		}
 
@@ -86,7 +85,7 @@ public class VariantFeatureGenerator extends FeatureGenerator {
 		}
 
 		public VariantFeatureGenerator build() {
-			return new VariantFeatureGenerator(this.world, this.generators, this.probabilities);
+			return new VariantFeatureGenerator(this.blocks, this.generators, this.probabilities);
 		}
 	}
 }
@@ -28,12 +28,12 @@
 
 package cubicchunks.generator.features.trees;
 
+import cubicchunks.generator.features.CubeNeighborhood;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.MathHelper;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 import java.util.Random;
@@ -60,9 +60,9 @@ public class BigTreeGenerator extends TreeGenerator {
 	private int heightmin;
 	private int heightmax;
 
-	public BigTreeGenerator(final World world, final IBlockState wood, final IBlockState leaf) {
-		super(world, wood, leaf);
-		this.rand = new Random(world.getSeed());
+	public BigTreeGenerator(final CubeNeighborhood blocks, final IBlockState wood, final IBlockState leaf) {
+		super(blocks, wood, leaf);
+		this.rand = new Random(this.world.getSeed());
 		this.rootRand = 0;
 		this.rootAlt = 0;
 		this.tapRootRand = 0;
@@ -179,11 +179,11 @@ public class BigTreeGenerator extends TreeGenerator {
 					l1++;
 				} else {
 					ai1[byte2] = ai[byte2] + l1;
-					Block i2 = this.getBlockState(new BlockPos(ai1[0], ai1[1], ai1[2])).getBlock();
+					Block i2 = this.getBlockState(ai1[0], ai1[1], ai1[2]).getBlock();
 					if (i2 != Blocks.air && i2 != Blocks.leaves) {
 						l1++;
 					} else {
-						this.setBlockOnly(new BlockPos(ai1[0], ai1[1], ai1[2]), this.leafBlock);
+						this.setBlockOnly(ai1[0], ai1[1], ai1[2], this.leafBlock);
 						// worldObj.setBlock(ai1[0], ai1[1], ai1[2], l);
 						l1++;
 					}
@@ -288,7 +288,7 @@ public class BigTreeGenerator extends TreeGenerator {
 			ai3[j] = MathHelper.floor_double(ai[j] + k + 0.5D);
 			ai3[byte1] = MathHelper.floor_double(ai[byte1] + k * d + 0.5D);
 			ai3[byte2] = MathHelper.floor_double(ai[byte2] + k * d1 + 0.5D);
-			this.setBlockOnly(new BlockPos(ai3[0], ai3[1], ai3[2]), this.woodBlock);
+			this.setBlockOnly(ai3[0], ai3[1], ai3[2], this.woodBlock);
 			// worldObj.setBlock(ai3[0], ai3[1], ai3[2], i);
 		}
 
@@ -493,7 +493,7 @@ public class BigTreeGenerator extends TreeGenerator {
 		Block canGrowOpen[] = { Blocks.air, Blocks.sapling, Blocks.flowing_water, Blocks.water, Blocks.flowing_lava,
 				Blocks.lava, Blocks.log, Blocks.log2, Blocks.leaves, Blocks.leaves2 };// more to be re-added
 		Block canGrowSolid[] = { Blocks.grass, Blocks.dirt, Blocks.sand, Blocks.gravel }; // more to be re-added
-		Block qq = this.getBlockState(new BlockPos(i, j, k)).getBlock();
+		Block qq = this.getBlockState(i, j, k).getBlock();
 		int medium = 0;
 		for (int m = 0; m < canGrowOpen.length; m++) {
 			if (qq == canGrowOpen[m]) {
@@ -536,7 +536,7 @@ public class BigTreeGenerator extends TreeGenerator {
 			// if(zz != 0 && zz != trunkBlock && zz != trunkMeta && zz != 2 &&
 			// zz != 3 && zz != 8 && zz != 9 && zz != 12 && zz != 13) break;
 			// else
-			this.setBlockOnly(new BlockPos(i, j - jj, k), this.woodBlock);
+			this.setBlockOnly(i, j - jj, k, this.woodBlock);
 		}
 	}
 
@@ -617,11 +617,11 @@ public class BigTreeGenerator extends TreeGenerator {
 			j2 = (int) y2;
 			k2 = (int) z2;
 			if (i2 != i || j2 != j || k2 != k) {
-				this.setBlockOnly(new BlockPos(i, j, k), this.woodBlock); // 1);
+				this.setBlockOnly(i, j, k, this.woodBlock); // 1);
 				cnt++;
 				if (cnt < 4) {
 					if (j2 != j - 1 || i2 != i || k2 != k)
-						this.setBlockOnly(new BlockPos(i, j - 1, k), this.woodBlock);
+						this.setBlockOnly(i, j - 1, k, this.woodBlock);
 				}
 				med = getMedium(i2, j2, k2);
 				if (med != 0) { // Grow normal.
@@ -904,7 +904,7 @@ public class BigTreeGenerator extends TreeGenerator {
 			ai3[i] = ai[i] + j;
 			ai3[byte1] = MathHelper.floor_double(ai[byte1] + j * d);
 			ai3[byte2] = MathHelper.floor_double(ai[byte2] + j * d1);
-			Block l = this.getBlockState(new BlockPos(ai3[0], ai3[1], ai3[2])).getBlock();
+			Block l = this.getBlockState(ai3[0], ai3[1], ai3[2]).getBlock();
 			if (l != Blocks.air && l != Blocks.leaves && l != Blocks.log) {
 				break;
 			}
@@ -922,7 +922,7 @@ public class BigTreeGenerator extends TreeGenerator {
 		 * int ai[] = { basePos[0], basePos[1], basePos[2] }; int ai1[] = {
 		 * basePos[0], (basePos[1] + heightLimit) - 1, basePos[2] };
 		 */
-		Block i = this.getBlockState(new BlockPos(basePos[0], basePos[1] - 1, basePos[2])).getBlock();
+		Block i = this.getBlockState(basePos[0], basePos[1] - 1, basePos[2]).getBlock();
 		// if(basePos[1] + heightLimit >= 80) return false;
 		
 		// Can grow tree on dirt, grass, or sand...
@@ -23,12 +23,12 @@
  */
 package cubicchunks.generator.features.trees;
 
+import cubicchunks.generator.features.CubeNeighborhood;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
 
 import java.util.Random;
 
@@ -37,9 +37,9 @@ public abstract class HugeTreeGenerator extends TreeGenerator {
 	private final int baseHeight;
 	private final int heightRange;
 
-	public HugeTreeGenerator(World world, int baseHeight, int heightRange, IBlockState woodBlock,
+	public HugeTreeGenerator(CubeNeighborhood blocks, int baseHeight, int heightRange, IBlockState woodBlock,
 			IBlockState leafBlock) {
-		super(world, woodBlock, leafBlock);
+		super(blocks, woodBlock, leafBlock);
 		this.baseHeight = baseHeight;
 		this.heightRange = heightRange;
 	}
@@ -53,30 +53,30 @@ public abstract class HugeTreeGenerator extends TreeGenerator {
 		return result;
 	}
 
-	private boolean canGenerateOnBlocksBelow(final World world, final BlockPos blockPos) {
+	private boolean canGenerateOnBlocksBelow(final BlockPos blockPos) {
 		BlockPos groundPos = blockPos.down();
-		Block groundBlock = world.getBlockState(groundPos).getBlock();
+		Block groundBlock = this.getBlockState(groundPos).getBlock();
 
 		if (groundBlock == Blocks.grass || groundBlock == Blocks.dirt) {
-			return this.tryToPlaceDirtUnderHugeTree(world, groundPos);
+			return this.tryToPlaceDirtUnderHugeTree(groundPos);
 		} else {
 			return false;
 		}
 	}
 
-	private boolean tryToPlaceDirtUnderHugeTree(final World world, final BlockPos blockPos) {
+	private boolean tryToPlaceDirtUnderHugeTree(final BlockPos blockPos) {
 		BlockPos groundPos = blockPos.down();
 
-		return this.tryToPlaceDirtUnderTree(world, groundPos) && this.tryToPlaceDirtUnderTree(world, groundPos.east())
-				&& this.tryToPlaceDirtUnderTree(world, groundPos.south())
-				&& this.tryToPlaceDirtUnderTree(world, groundPos.south().east());
+		return this.tryToPlaceDirtUnderTree(groundPos) && this.tryToPlaceDirtUnderTree(groundPos.east())
+				&& this.tryToPlaceDirtUnderTree(groundPos.south())
+				&& this.tryToPlaceDirtUnderTree(groundPos.south().east());
 	}
 
-	protected boolean canGenerate(final World world, final Random rand, final BlockPos blockPos, final int height) {
-		return this.isEnoughSpaceToGenerate(world, blockPos, height) && this.canGenerateOnBlocksBelow(world, blockPos);
+	protected boolean canGenerate(final Random rand, final BlockPos blockPos, final int height) {
+		return this.isEnoughSpaceToGenerate(blockPos, height) && this.canGenerateOnBlocksBelow(blockPos);
 	}
 
-	private boolean isEnoughSpaceToGenerate(World world, BlockPos blockPos, int height) {
+	private boolean isEnoughSpaceToGenerate(BlockPos blockPos, int height) {
 		final int baseY = blockPos.getY();
 
 		for (int yAbs = baseY; yAbs <= baseY + 1 + height; ++yAbs) {
@@ -90,7 +90,7 @@ public abstract class HugeTreeGenerator extends TreeGenerator {
 
 			for (int xAbs = blockPos.getX() - radius; xAbs <= blockPos.getX() + radius; ++xAbs) {
 				for (int zAbs = blockPos.getZ() - radius; zAbs <= blockPos.getZ() + radius; ++zAbs) {
-					Block block = world.getBlockState(new BlockPos(xAbs, yAbs, zAbs)).getBlock();
+					Block block = this.getBlockState(xAbs, yAbs, zAbs).getBlock();
 
 					if (!canReplaceBlockDefault(block)) {
 						return false;
@@ -112,11 +112,12 @@ public abstract class HugeTreeGenerator extends TreeGenerator {
 
 				if (xAbs * xAbs + zAbs * zAbs <= r2 || xDist * xDist + zDist * zDist <= r2
 						|| xAbs * xAbs + zDist * zDist <= r2 || xDist * xDist + zAbs * zAbs <= r2) {
-					BlockPos newPos = blockPos.add(xAbs, 0, zAbs);
-					Material material = this.world.getBlockState(newPos).getBlock().getMaterial();
+					int x = blockPos.getX() + xAbs;
+					int z = blockPos.getZ() + zAbs;
+					Material material = this.getBlockState(x, blockPos.getY(), z).getBlock().getMaterial();
 
 					if (material == Material.air || material == Material.leaves) {
-						this.setBlockOnly(newPos, this.leafBlock);
+						this.setBlockOnly(x, blockPos.getY(), z, this.leafBlock);
 					}
 				}
 			}
@@ -129,11 +130,12 @@ public abstract class HugeTreeGenerator extends TreeGenerator {
 		for (int xAbs = -radius; xAbs <= radius; ++xAbs) {
 			for (int zAbs = -radius; zAbs <= radius; ++zAbs) {
 				if (xAbs * xAbs + zAbs * zAbs <= r2) {
-					BlockPos newPos = blockPos.add(xAbs, 0, zAbs);
-					Material material = this.world.getBlockState(newPos).getBlock().getMaterial();
+					int x = blockPos.getX() + xAbs;
+					int z = blockPos.getZ() + zAbs;
+					Material material = this.getBlockState(x, blockPos.getY(), z).getBlock().getMaterial();
 
 					if (material == Material.air || material == Material.leaves) {
-						this.setBlockOnly(newPos, this.leafBlock);
+						this.setBlockOnly(x, blockPos.getY(), z, this.leafBlock);
 					}
 				}
 			}
@@ -23,12 +23,12 @@
  */
 package cubicchunks.generator.features.trees;
 
+import cubicchunks.generator.features.CubeNeighborhood;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.MathHelper;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
 import java.util.Random;
@@ -38,13 +38,13 @@ public class SimpleTreeGenerator extends TreeGenerator {
 	private static final int MIN_TRUNK_HEIGHT = 4;
 	private static final int MAX_TRUNK_HEIGHT = 6;// inclusive
 
-	public SimpleTreeGenerator(World world, IBlockState woodBlock, IBlockState leafBlock) {
-		super(world, woodBlock, leafBlock);
+	public SimpleTreeGenerator(CubeNeighborhood blocks, IBlockState woodBlock, IBlockState leafBlock) {
+		super(blocks, woodBlock, leafBlock);
 	}
 
 	@Override
 	public void generateAt(Random rand, BlockPos pos, BiomeGenBase biome) {
-		Block below = getBlockState(pos.down()).getBlock();
+		Block below = getBlockState(pos.getX(), pos.getY() - 1, pos.getZ()).getBlock();
 		if (below != Blocks.dirt && below != Blocks.grass) {
 			return;
 		}
@@ -62,47 +62,43 @@ public class SimpleTreeGenerator extends TreeGenerator {
 
 	private boolean canGenerateTree(BlockPos pos, int treeHeight, int leavesHeight, int treeRadius) {
 		// is there enough space for the tree?
-		BlockPos originalPos = pos;
 		int noLeavesHeight = treeHeight - leavesHeight;
 		for (int i = 0; i < noLeavesHeight; i++) {
-			if (!canReplaceBlockDefault(getBlockState(pos).getBlock())) {
+			if (!canReplaceBlockDefault(getBlockState(pos.getX(), pos.getY() + i, pos.getZ()).getBlock())) {
 				return false;
 			}
-			pos = pos.up();
 		}
 
+		int leavesY = pos.getY() + noLeavesHeight;
 		for (int x = -treeRadius; x <= treeRadius; x++) {
 			for (int y = 0; y < leavesHeight; y++) {
 				for (int z = -treeRadius; z <= treeRadius; z++) {
-					BlockPos currentPos = pos.add(x, y, z);
-					if (!canReplaceBlockDefault(getBlockState(currentPos).getBlock())) {
+					if (!canReplaceBlockDefault(getBlockState(pos.getX() + x, leavesY + y, pos.getZ() + z).getBlock())) {
 						return false;
 					}
 				}
 			}
 		}
-		return this.tryToPlaceDirtUnderTree(world, originalPos);
+		return this.tryToPlaceDirtUnderTree(pos);
 	}
 
 	private void generateTree(BlockPos pos, int trunkHeight, int treeHeight, int leavesHeight, int treeRadius) {
 		// generate trunk
-		BlockPos currentPos = pos;
 		for (int i = 0; i < trunkHeight; i++) {
-			this.setBlockOnly(currentPos, this.woodBlock);
-			currentPos = currentPos.up();
+			this.setBlockOnly(pos.getX(), pos.getY() + i, pos.getZ(), this.woodBlock);
 		}
 
 		// generate leaves
-		BlockPos startPos = pos.add(0, treeHeight - leavesHeight, 0);
+		int startY = pos.getY() + treeHeight - leavesHeight;
 		for (int yRel = 0; yRel < leavesHeight; yRel++) {
 			int y2 = yRel >> 1 << 1;
 			double radiusSubstract = 0.7 * treeRadius * y2 / (double) leavesHeight;
 			double radius = treeRadius - radiusSubstract;
-			this.generateLeavesCircleLayerAt(this.leafBlock, startPos.up(yRel), radius + 0.5);
+			this.generateLeavesCircleLayerAt(this.leafBlock, pos.getX(), startY + yRel, pos.getZ(), radius + 0.5);
 		}
 	}
 	
-	private void generateLeavesCircleLayerAt(IBlockState state, BlockPos pos, double radius) {
+	private void generateLeavesCircleLayerAt(IBlockState state, int centerX, int y, int centerZ, double radius) {
 		double radiusSquared = radius * radius;
 		int r = MathHelper.ceiling_double_int(radius);
 		for (int x = -r; x <= r; x++) {
@@ -110,12 +106,11 @@ public class SimpleTreeGenerator extends TreeGenerator {
 				if (x * x + z * z > radiusSquared) {
 					continue;
 				}
-				BlockPos currentPos = pos.add(x, 0, z);
 				// don't replace wood
-				if (getBlockState(currentPos).getBlock().isOpaqueCube()) {
+				if (getBlockState(centerX + x, y, centerZ + z).getBlock().isOpaqueCube()) {
 					continue;
 				}
-				this.setBlockOnly(currentPos, this.leafBlock);
+				this.setBlockOnly(centerX + x, y, centerZ + z, this.leafBlock);
 			}
 		}
 	}
@@ -129,12 +124,14 @@ public class SimpleTreeGenerator extends TreeGenerator {
 					if (x*x + y*y + z*z > radiusSquared) {
 						continue;
 					}
-					BlockPos currentPos = pos.add(x, y, z);
+					int blockX = pos.getX() + x;
+					int blockY = pos.getY() + y;
+					int blockZ = pos.getZ() + z;
 					// don't replace wood
-					if (!canReplaceWithLeaves(getBlockState(currentPos).getBlock())) {
+					if (!canReplaceWithLeaves(getBlockState(blockX, blockY, blockZ).getBlock())) {
 						continue;
 					}
-					this.setBlockOnly(currentPos, state);
+					this.setBlockOnly(blockX, blockY, blockZ, state);
 				}
 			}
 		}
@@ -23,13 +23,13 @@
  */
 package cubicchunks.generator.features.trees;
 
+import cubicchunks.generator.features.CubeNeighborhood;
 import cubicchunks.generator.features.SurfaceFeatureGenerator;
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.BlockPos;
-import net.minecraft.world.World;
 
 public abstract class TreeGenerator extends SurfaceFeatureGenerator {
 	
@@ -66,14 +66,14 @@ public abstract class TreeGenerator extends SurfaceFeatureGenerator {
 	protected final IBlockState woodBlock;
 	protected final IBlockState leafBlock;
 
-	public TreeGenerator(final World world, final IBlockState woodBlock, final IBlockState leafBlock) {
-		super(world);
+	public TreeGenerator(final CubeNeighborhood blocks, final IBlockState woodBlock, final IBlockState leafBlock) {
+		super(blocks);
 		this.woodBlock = woodBlock;
 		this.leafBlock = leafBlock;
 	}
 
-	protected boolean tryToPlaceDirtUnderTree(final World world, final BlockPos blockPos) {
-		if (world.getBlockState(blockPos).getBlock() != Blocks.dirt) {
+	protected boolean tryToPlaceDirtUnderTree(final BlockPos blockPos) {
+		if (this.getBlockState(blockPos).getBlock() != Blocks.dirt) {
 			return this.setBlockOnly(blockPos, Blocks.dirt.getDefaultState());
 		} else {
 			// it's already dirt, so just say it was placed successfully
@@ -0,0 +1,111 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.structures;
+
+/**
+ * Precomputed path of a single cave tunnel or ravine, and of the tunnels branching off it.
+ * <p>
+ * The path only depends on the seed of the node, not on the cube being generated, so it's computed once and then
+ * replayed for every cube it can reach. Only the steps that may carve are stored. The bounds cover all cube centers
+ * for which any step of this node or of its children can pass the range check, so other cubes can skip the node
+ * entirely.
+ */
+class CarverNode {
+	
+	// steps are stored as parallel arrays
+	final double[] x;
+	final double[] y;
+	final double[] z;
+	final double[] modSin;
+	final double[] yModSin;
+	final double[] triesLeft;
+	int size;
+	
+	final double fDist;
+	final boolean kAltered;
+	
+	// ravines only, y-dependent horizontal scale of the ravine, null for caves
+	final float[] yScale;
+	
+	// tunnels branching off the end of this one, null if there are none
+	CarverNode[] children;
+	
+	double minX = Double.POSITIVE_INFINITY;
+	double minY = Double.POSITIVE_INFINITY;
+	double minZ = Double.POSITIVE_INFINITY;
+	double maxX = Double.NEGATIVE_INFINITY;
+	double maxY = Double.NEGATIVE_INFINITY;
+	double maxZ = Double.NEGATIVE_INFINITY;
+	
+	CarverNode(float size_base, boolean kAltered, float[] yScale, int maxSteps) {
+		this.fDist = size_base + 2.0F + 16.0F;
+		this.kAltered = kAltered;
+		this.yScale = yScale;
+		this.x = new double[maxSteps];
+		this.y = new double[maxSteps];
+		this.z = new double[maxSteps];
+		this.modSin = new double[maxSteps];
+		this.yModSin = new double[maxSteps];
+		this.triesLeft = new double[maxSteps];
+		this.size = 0;
+	}
+	
+	void addStep(double x, double y, double z, double modSin, double yModSin, double triesLeft) {
+		this.x[this.size] = x;
+		this.y[this.size] = y;
+		this.z[this.size] = z;
+		this.modSin[this.size] = modSin;
+		this.yModSin[this.size] = yModSin;
+		this.triesLeft[this.size] = triesLeft;
+		this.size++;
+		
+		// a cube is in range of the step if its center is within 16 + 2 * radius blocks,
+		// with one extra block so rounding can't make the bounds too small
+		include(x - 17 - modSin * 2.0D, y - 17 - yModSin * 2.0D, z - 17 - modSin * 2.0D);
+		include(x + 17 + modSin * 2.0D, y + 17 + yModSin * 2.0D, z + 17 + modSin * 2.0D);
+	}
+	
+	void setChildren(CarverNode first, CarverNode second) {
+		this.children = new CarverNode[] { first, second };
+		for (CarverNode child : this.children) {
+			include(child.minX, child.minY, child.minZ);
+			include(child.maxX, child.maxY, child.maxZ);
+		}
+	}
+	
+	boolean canReach(double xCenter, double yCenter, double zCenter) {
+		return xCenter >= this.minX && xCenter <= this.maxX
+			&& yCenter >= this.minY && yCenter <= this.maxY
+			&& zCenter >= this.minZ && zCenter <= this.maxZ;
+	}
+	
+	private void include(double x, double y, double z) {
+		this.minX = Math.min(this.minX, x);
+		this.minY = Math.min(this.minY, y);
+		this.minZ = Math.min(this.minZ, z);
+		this.maxX = Math.max(this.maxX, x);
+		this.maxY = Math.max(this.maxY, y);
+		this.maxZ = Math.max(this.maxZ, z);
+	}
+}
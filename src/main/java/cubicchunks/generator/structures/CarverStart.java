@@ -0,0 +1,104 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.structures;
+
+/**
+ * Parameters of a cave or ravine starting in some origin cube, as drawn from the origin's random generator.
+ * <p>
+ * Computing the path of the node is much more expensive than drawing the parameters, so it's only done the first time
+ * a cube within reach of the start is generated.
+ */
+class CarverStart {
+	
+	// a node moves one block per step, in any direction
+	private static final double MaxStepLength = 1.0D;
+	
+	final long seed;
+	final double x;
+	final double y;
+	final double z;
+	final float size_base;
+	final float curve;
+	final float angle;
+	final int numTry;
+	final int tries;
+	final double yModSinMultiplier;
+	
+	private CarverNode node;
+	
+	CarverStart(long seed, double x, double y, double z, float size_base, float curve, float angle, int numTry,
+			int tries, double yModSinMultiplier) {
+		this.seed = seed;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.size_base = size_base;
+		this.curve = curve;
+		this.angle = angle;
+		this.numTry = numTry;
+		this.tries = tries;
+		this.yModSinMultiplier = yModSinMultiplier;
+		this.node = null;
+	}
+	
+	/**
+	 * Conservative check if the node or any of its branches can carve the cube with the given center. maxTries is the
+	 * max number of tries of a node that doesn't set them explicitly.
+	 */
+	boolean mayReach(CubicStructureGenerator generator, double xCenter, double yCenter, double zCenter, int maxTries) {
+		int steps;
+		if (this.tries > 0) {
+			steps = this.tries - Math.max(this.numTry, 0);
+		} else if (this.numTry == -1) {
+			steps = maxTries - maxTries / 2;
+		} else {
+			steps = maxTries - this.numTry;
+		}
+		double xDist = this.x - xCenter;
+		double yDist = this.y - yCenter;
+		double zDist = this.z - zCenter;
+		
+		// carving stops once distance - triesLeft is more than fDist, and branches are never wider than the node
+		double reach = steps * MaxStepLength + this.size_base + 2.0F + 16.0F + 2.0D;
+		if (generator.distanceSquared(xDist, yDist, zDist) > reach * reach) {
+			return false;
+		}
+		
+		// a step is only carved if it's within 16 + 2 * width blocks of the cube center on every axis
+		double width = 1.5D + Math.max(this.size_base, 1.0F);
+		double yWidth = width * Math.max(this.yModSinMultiplier, 1.0D);
+		double xReach = steps * MaxStepLength + 16.0D + width * 2.0D + 2.0D;
+		double yReach = steps * MaxStepLength + 16.0D + yWidth * 2.0D + 2.0D;
+		
+		return Math.abs(xDist) <= xReach && Math.abs(yDist) <= yReach && Math.abs(zDist) <= xReach;
+	}
+	
+	CarverNode getNode(CubicStructureGenerator generator) {
+		if (this.node == null) {
+			this.node = generator.generateNode(this.seed, this.x, this.y, this.z, this.size_base, this.curve,
+				this.angle, this.numTry, this.tries, this.yModSinMultiplier);
+		}
+		return this.node;
+	}
+}
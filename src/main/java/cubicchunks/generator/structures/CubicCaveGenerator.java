@@ -28,8 +28,8 @@ import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.MathHelper;
-import net.minecraft.world.World;
 
+import java.util.List;
 import java.util.Random;
 
 /*
@@ -39,7 +39,7 @@ import java.util.Random;
 public class CubicCaveGenerator extends CubicStructureGenerator {
 
 	@Override
-	protected void generate(World world, Cube cube, int x, int y, int z, int xOrigin, int yOrigin, int zOrigin) {
+	protected void generateStarts(List<CarverStart> starts, int x, int y, int z) {
 		if (this.rand.nextInt(16) != 0) {
 			return;
 		}
@@ -56,7 +56,7 @@ public class CubicCaveGenerator extends CubicStructureGenerator {
 			int numTries = 1;
 
 			if (this.rand.nextInt(4) == 0) {
-				this.generateLargeNode(cube, this.rand.nextLong(), xOrigin, yOrigin, zOrigin, x1, y1, z1);
+				starts.add(this.generateLargeNode(this.rand.nextLong(), x1, y1, z1));
 				numTries += this.rand.nextInt(4);
 			}
 
@@ -69,8 +69,7 @@ public class CubicCaveGenerator extends CubicStructureGenerator {
 					f2 *= this.rand.nextFloat() * this.rand.nextFloat() * 3.0F + 1.0F;
 				}
 
-				this.generateNode(cube, this.rand.nextLong(), xOrigin, yOrigin, zOrigin, x1, y1, z1, f2, curve,
-						angle, 0, 0, 1.0D);
+				starts.add(new CarverStart(this.rand.nextLong(), x1, y1, z1, f2, curve, angle, 0, 0, 1.0D));
 			}
 		}
 	}
@@ -78,22 +77,17 @@ public class CubicCaveGenerator extends CubicStructureGenerator {
 	/**
 	 * Generates a larger initial cave node than usual. Called 25% of the time.
 	 */
-	protected void generateLargeNode(Cube cube, long seed, int xOrigin, int yOrigin, int zOrigin, double x, double y,
-			double z) {
-		this.generateNode(cube, seed, xOrigin, yOrigin, zOrigin, x, y, z, 1.0F + this.rand.nextFloat() * 6.0F, 0.0F,
-				0.0F, -1, -1, 0.5D);
+	protected CarverStart generateLargeNode(long seed, double x, double y, double z) {
+		return new CarverStart(seed, x, y, z, 1.0F + this.rand.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
 	}
 
 	/**
 	 * Generates a node in the current cave system recursion tree.
 	 */
 	@Override
-	protected void generateNode(Cube cube, long seed, int xOrigin, int yOrigin, int zOrigin, double x, double y,
-			double z, float size_base, float curve, float angle, int numTry, int tries, double yModSinMultiplier) {
+	protected CarverNode generateNode(long seed, double x, double y, double z, float size_base, float curve,
+			float angle, int numTry, int tries, double yModSinMultiplier) {
 		Random rand = new Random(seed);
-		double xOCenter = xOrigin * 16D + 8D;
-		double yOCenter = yOrigin * 16D + 8D;
-		double zOCenter = zOrigin * 16D + 8D;
 		float f3 = 0.0F;
 		float f4 = 0.0F;
 
@@ -111,6 +105,8 @@ public class CubicCaveGenerator extends CubicStructureGenerator {
 
 		int r1 = rand.nextInt(tries / 2) + tries / 4;
 
+		CarverNode node = new CarverNode(size_base, kAltered, null, tries - numTry);
+
 		for (; numTry < tries; ++numTry) {
 			double modSin = 1.5D + MathHelper.sin(numTry * (float) Math.PI / tries) * size_base * 1.0F;
 			double yModSin = modSin * yModSinMultiplier;
@@ -138,105 +134,98 @@ public class CubicCaveGenerator extends CubicStructureGenerator {
 			f3 += (rand.nextFloat() - rand.nextFloat()) * rand.nextFloat() * 4.0F;
 
 			if (!kAltered && numTry == r1 && size_base > 1.0F) {
-				this.generateNode(cube, rand.nextLong(), xOrigin, yOrigin, zOrigin, x, y, z,
+				CarverNode first = this.generateNode(rand.nextLong(), x, y, z,
 						rand.nextFloat() * 0.5F + 0.5F, curve - ((float) Math.PI / 2F), angle / 3.0F, numTry, tries,
 						1.0D);
-				this.generateNode(cube, rand.nextLong(), xOrigin, yOrigin, zOrigin, x, y, z,
+				CarverNode second = this.generateNode(rand.nextLong(), x, y, z,
 						rand.nextFloat() * 0.5F + 0.5F, curve + ((float) Math.PI / 2F), angle / 3.0F, numTry, tries,
 						1.0D);
-				return;
+				node.setChildren(first, second);
+				return node;
 			}
 
 			if (kAltered || rand.nextInt(4) != 0) {
-				double xDist = x - xOCenter;
-				double yDist = y - yOCenter;
-				double zDist = z - zOCenter;
-				double triesLeft = tries - numTry;
-				double fDist = size_base + 2.0F + 16.0F;
-
-				// Use yDist?
-				if (xDist * xDist + yDist * yDist + zDist * zDist - triesLeft * triesLeft > fDist * fDist) {
-					return;
-				}
+				node.addStep(x, y, z, modSin, yModSin, tries - numTry);
+			}
+		}
+		return node;
+	}
 
-				// Check y coords?
-				if (x >= xOCenter - 16.0D - modSin * 2.0D && y >= yOCenter - 16.0D - yModSin * 2.0D
-						&& z >= zOCenter - 16.0D - modSin * 2.0D && x <= xOCenter + 16.0D + modSin * 2.0D
-						&& y <= yOCenter + 16.0D + yModSin * 2.0D && z <= zOCenter + 16.0D + modSin * 2.0D) {
-					int xDist1 = MathHelper.floor_double(x - modSin) - xOrigin * 16 - 1;
-					int xDist2 = MathHelper.floor_double(x + modSin) - xOrigin * 16 + 1;
-					int yDist1 = MathHelper.floor_double(y - yModSin) - yOrigin * 16 - 1;
-					int yDist2 = MathHelper.floor_double(y + yModSin) - yOrigin * 16 + 1;
-					int zDist1 = MathHelper.floor_double(z - modSin) - zOrigin * 16 - 1;
-					int zDist2 = MathHelper.floor_double(z + modSin) - zOrigin * 16 + 1;
-
-					// Probably this causes some glitches
-					if (xDist1 < 0) {
-						xDist1 = 0;
-					}
+	@Override
+	protected void carveStep(Cube cube, CarverNode node, int step, int xOrigin, int yOrigin, int zOrigin) {
+		double x = node.x[step];
+		double y = node.y[step];
+		double z = node.z[step];
+		double modSin = node.modSin[step];
+		double yModSin = node.yModSin[step];
+
+		int xDist1 = MathHelper.floor_double(x - modSin) - xOrigin * 16 - 1;
+		int xDist2 = MathHelper.floor_double(x + modSin) - xOrigin * 16 + 1;
+		int yDist1 = MathHelper.floor_double(y - yModSin) - yOrigin * 16 - 1;
+		int yDist2 = MathHelper.floor_double(y + yModSin) - yOrigin * 16 + 1;
+		int zDist1 = MathHelper.floor_double(z - modSin) - zOrigin * 16 - 1;
+		int zDist2 = MathHelper.floor_double(z + modSin) - zOrigin * 16 + 1;
+
+		// Probably this causes some glitches
+		if (xDist1 < 0) {
+			xDist1 = 0;
+		}
 
-					if (xDist2 > 16) {
-						xDist2 = 16;
-					}
+		if (xDist2 > 16) {
+			xDist2 = 16;
+		}
 
-					if (yDist1 < 0)// orig: 1
-					{
-						yDist1 = 0;// orig: 1
-					}
+		if (yDist1 < 0)// orig: 1
+		{
+			yDist1 = 0;// orig: 1
+		}
 
-					if (yDist2 > 16)// orig: 120
-					{
-						yDist2 = 16;// orig: 120
-					}
+		if (yDist2 > 16)// orig: 120
+		{
+			yDist2 = 16;// orig: 120
+		}
 
-					if (zDist1 < 0) {
-						zDist1 = 0;
-					}
+		if (zDist1 < 0) {
+			zDist1 = 0;
+		}
 
-					if (zDist2 > 16) {
-						zDist2 = 16;
-					}
+		if (zDist2 > 16) {
+			zDist2 = 16;
+		}
 
-					boolean hitLiquid = scanForLiquid(cube, xDist1, xDist2, yDist1, yDist2, zDist1, zDist2, Blocks.lava, Blocks.flowing_lava);
-					
-					if (!hitLiquid) {
-						for (int x1 = xDist1; x1 < xDist2; ++x1) {
-							double distX = calculateDistance(xOrigin, x1, x, modSin);
-
-							for (int z1 = zDist1; z1 < zDist2; ++z1) {
-								double distZ = calculateDistance(zOrigin, z1, z, modSin);
-								boolean grass = false;
-
-								// scan from top to bottom, so we can find grass and move it down to replace dirt
-								for (int y1 = yDist2 - 1; y1 >= yDist1; --y1) {
-									double distY = calculateDistance(yOrigin, y1, y, yModSin);
-
-									BlockPos pos = new BlockPos(x1, y1, z1);
-									Block block = cube.getBlockState(pos).getBlock();
-
-									if (block != Blocks.stone && block != Blocks.dirt && block != Blocks.grass) {
-										continue;
-									} else if (block == Blocks.grass) {
-										grass = true;
-									}
-
-									if (distY > -0.7D && distX * distX + distY * distY + distZ * distZ < 1.0D) {
-										// No lava generation, infinite depth. Lava will be generated differently (or
-										// not generated)
-										cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
-									}
-									
-									if (grass && block == Blocks.dirt) {
-										cube.setBlockForGeneration(pos, Blocks.grass.getDefaultState());
-										cube.setBlockForGeneration(pos.up(), Blocks.air.getDefaultState());
-									} 
-								}
-							}
+		boolean hitLiquid = scanForLiquid(cube, xDist1, xDist2, yDist1, yDist2, zDist1, zDist2, Blocks.lava, Blocks.flowing_lava);
+		
+		if (!hitLiquid) {
+			for (int x1 = xDist1; x1 < xDist2; ++x1) {
+				double distX = calculateDistance(xOrigin, x1, x, modSin);
+
+				for (int z1 = zDist1; z1 < zDist2; ++z1) {
+					double distZ = calculateDistance(zOrigin, z1, z, modSin);
+					boolean grass = false;
+
+					// scan from top to bottom, so we can find grass and move it down to replace dirt
+					for (int y1 = yDist2 - 1; y1 >= yDist1; --y1) {
+						double distY = calculateDistance(yOrigin, y1, y, yModSin);
+
+						BlockPos pos = new BlockPos(x1, y1, z1);
+						Block block = cube.getBlockState(pos).getBlock();
+
+						if (block != Blocks.stone && block != Blocks.dirt && block != Blocks.grass) {
+							continue;
+						} else if (block == Blocks.grass) {
+							grass = true;
 						}
-					}
 
-					if (kAltered) {
-						break;
+						if (distY > -0.7D && distX * distX + distY * distY + distZ * distZ < 1.0D) {
+							// No lava generation, infinite depth. Lava will be generated differently (or
+							// not generated)
+							cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
+						}
+						
+						if (grass && block == Blocks.dirt) {
+							cube.setBlockForGeneration(pos, Blocks.grass.getDefaultState());
+							cube.setBlockForGeneration(pos.up(), Blocks.air.getDefaultState());
+						} 
 					}
 				}
 			}
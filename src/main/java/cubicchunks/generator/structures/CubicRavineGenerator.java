@@ -28,18 +28,14 @@ import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.MathHelper;
-import net.minecraft.world.World;
 
+import java.util.List;
 import java.util.Random;
 
 public class CubicRavineGenerator extends CubicStructureGenerator {
 
-	// I'm not sure what it is
-	private float[]	array1	= new float[1024];
-
 	@Override
-	protected void generate(World world, Cube cube, int cubeX, int cubeY, int cubeZ, int xOrigin, int yOrigin,
-			int zOrigin) {
+	protected void generateStarts(List<CarverStart> starts, int cubeX, int cubeY, int cubeZ) {
 		if (rand.nextInt(16) != 0) {
 			return;
 		}
@@ -53,19 +49,15 @@ public class CubicRavineGenerator extends CubicStructureGenerator {
 				float curve = rand.nextFloat() * (float) Math.PI * 2.0F;
 				float angle = (rand.nextFloat() - 0.5F) * 2.0F / 8.0F;
 				float f = (rand.nextFloat() * 2.0F + rand.nextFloat()) * 2.0F;
-				this.generateNode(cube, rand.nextLong(), xOrigin, yOrigin, zOrigin, x, y, z, f, curve, angle, 0, 0,
-						3.0D);
+				starts.add(new CarverStart(rand.nextLong(), x, y, z, f, curve, angle, 0, 0, 3.0D));
 			}
 		}
 	}
 
 	@Override
-	protected void generateNode(Cube cube, long seed, int xOrigin, int yOrigin, int zOrigin, double x, double y,
-			double z, float size_base, float curve, float angle, int numTry, int tries, double yModSinMultiplier) {
+	protected CarverNode generateNode(long seed, double x, double y, double z, float size_base, float curve,
+			float angle, int numTry, int tries, double yModSinMultiplier) {
 		Random rand = new Random(seed);
-		double xOCenter = xOrigin * 16 + 8;
-		double yOCenter = yOrigin * 16 + 8;
-		double zOCenter = zOrigin * 16 + 8;
 		float f3 = 0.0F;
 		float f4 = 0.0F;
 
@@ -81,7 +73,10 @@ public class CubicRavineGenerator extends CubicStructureGenerator {
 			kAltered = true;
 		}
 
-		this.array1 = populateArray(rand);
+		// I'm not sure what it is
+		float[] array1 = populateArray(rand);
+
+		CarverNode node = new CarverNode(size_base, kAltered, array1, tries - numTry);
 
 		for (; numTry < tries; ++numTry) {
 			double modSin = 1.5D + MathHelper.sin(numTry * (float) Math.PI / tries) * size_base * 1.0F;
@@ -108,104 +103,105 @@ public class CubicRavineGenerator extends CubicStructureGenerator {
 			f3 += (rand.nextFloat() - rand.nextFloat()) * rand.nextFloat() * 4.0F;
 
 			if (kAltered || rand.nextInt(4) != 0) {
-				double xDist = x - xOCenter;
-				// double yDist = y - yOCenter;
-				double zDist = z - zOCenter;
-				double triesLeft = tries - numTry;
-				double fDist = size_base + 2.0F + 16.0F;
-	
-				if (xDist * xDist + zDist * zDist - triesLeft * triesLeft > fDist * fDist) {
-					return;
-				}
-	
-				if (x >= xOCenter - 16.0D - modSin * 2.0D && y >= yOCenter - 16.0D - yModSin * 2.0D
-						&& z >= zOCenter - 16.0D - modSin * 2.0D && x <= xOCenter + 16.0D + modSin * 2.0D
-						&& y <= yOCenter + 16.0D + yModSin * 2.0D && z <= zOCenter + 16.0D + modSin * 2.0D) {
-					int xDist1 = MathHelper.floor_double(x - modSin) - xOrigin * 16 - 1;
-					int xDist2 = MathHelper.floor_double(x + modSin) - xOrigin * 16 + 1;
-					int yDist1 = MathHelper.floor_double(y - yModSin) - yOrigin * 16 - 1;
-					int yDist2 = MathHelper.floor_double(y + yModSin) - yOrigin * 16 + 1;
-					int zDist1 = MathHelper.floor_double(z - modSin) - zOrigin * 16 - 1;
-					int zDist2 = MathHelper.floor_double(z + modSin) - zOrigin * 16 + 1;
-	
-					if (xDist1 < 0) {
-						xDist1 = 0;
-					}
-	
-					if (xDist2 > 16) {
-						xDist2 = 16;
-					}
-	
-					if (yDist1 < 0)// 1
-					{
-						yDist1 = 0;// 1
-					}
-	
-					if (yDist2 > 16)// 120
-					{
-						yDist2 = 16;// 120
-					}
-	
-					if (zDist1 < 0) {
-						zDist1 = 0;
-					}
-	
-					if (zDist2 > 16) {
-						zDist2 = 16;
+				node.addStep(x, y, z, modSin, yModSin, tries - numTry);
+			}
+		}
+		return node;
+	}
+
+	@Override
+	protected double distanceSquared(double xDist, double yDist, double zDist) {
+		// ravines ignore y distance
+		return xDist * xDist + zDist * zDist;
+	}
+
+	@Override
+	protected void carveStep(Cube cube, CarverNode node, int step, int xOrigin, int yOrigin, int zOrigin) {
+		double x = node.x[step];
+		double y = node.y[step];
+		double z = node.z[step];
+		double modSin = node.modSin[step];
+		double yModSin = node.yModSin[step];
+		float[] array1 = node.yScale;
+
+		int xDist1 = MathHelper.floor_double(x - modSin) - xOrigin * 16 - 1;
+		int xDist2 = MathHelper.floor_double(x + modSin) - xOrigin * 16 + 1;
+		int yDist1 = MathHelper.floor_double(y - yModSin) - yOrigin * 16 - 1;
+		int yDist2 = MathHelper.floor_double(y + yModSin) - yOrigin * 16 + 1;
+		int zDist1 = MathHelper.floor_double(z - modSin) - zOrigin * 16 - 1;
+		int zDist2 = MathHelper.floor_double(z + modSin) - zOrigin * 16 + 1;
+
+		if (xDist1 < 0) {
+			xDist1 = 0;
+		}
+
+		if (xDist2 > 16) {
+			xDist2 = 16;
+		}
+
+		if (yDist1 < 0)// 1
+		{
+			yDist1 = 0;// 1
+		}
+
+		if (yDist2 > 16)// 120
+		{
+			yDist2 = 16;// 120
+		}
+
+		if (zDist1 < 0) {
+			zDist1 = 0;
+		}
+
+		if (zDist2 > 16) {
+			zDist2 = 16;
+		}
+
+		boolean hitLiquid = scanForLiquid(cube, xDist1, xDist2, yDist1, yDist2, zDist1, zDist2, Blocks.water, Blocks.flowing_water);
+
+		if (!hitLiquid) {
+			for (int x1 = xDist1; x1 < xDist2; ++x1) {
+				double distX = calculateDistance(xOrigin, x1, x, modSin);
+
+				for (int z1 = zDist1; z1 < zDist2; ++z1) {
+					double distZ = calculateDistance(zOrigin, z1, z, modSin);
+					boolean grass = false;
+					
+					if (distX * distX + distZ * distZ >= 1.0D) {
+						continue;
 					}
-	
-					boolean hitLiquid = scanForLiquid(cube, xDist1, xDist2, yDist1, yDist2, zDist1, zDist2, Blocks.water, Blocks.flowing_water);
-	
-					if (!hitLiquid) {
-						for (int x1 = xDist1; x1 < xDist2; ++x1) {
-							double distX = calculateDistance(xOrigin, x1, x, modSin);
-	
-							for (int z1 = zDist1; z1 < zDist2; ++z1) {
-								double distZ = calculateDistance(zOrigin, z1, z, modSin);
-								boolean grass = false;
-								
-								if (distX * distX + distZ * distZ >= 1.0D) {
-									continue;
-								}
-								for (int y1 = yDist2 - 1; y1 >= yDist1; --y1) {
-									double distY = calculateDistance(yOrigin, y1, y, yModSin);
-	
-									if ((distX * distX + distZ * distZ) * this.array1[(y1 + yOrigin * 16) & 0xFF] + distY
-											* distY / 6.0D >= 1.0D) {
-										continue;
-									}
-	
-									BlockPos pos = new BlockPos(x1, y1, z1);
-									Block block = cube.getBlockState(pos).getBlock();
-	
-									if (block != Blocks.stone && block != Blocks.dirt && block != Blocks.grass) {
-										continue;
-									} else if (block == Blocks.grass) {
-										grass = true;
-									}
-									// used to place lava at the bottom of ravines if it was deep enough
-									if (y1 + yOrigin * 16 < /* 10 */0) {
-										// BUG: crash when it's lava
-										// cube.setBlockForGeneration(pos, Blocks.FLOWING_LAVA.getDefaultState());
-										cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
-									} else {
-										cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
-									}
-									
-									if (grass && block == Blocks.dirt) {
-										cube.setBlockForGeneration(pos, Blocks.grass.getDefaultState());
-										cube.setBlockForGeneration(pos.up(), Blocks.air.getDefaultState());
-									}
-								}
-							}
+					for (int y1 = yDist2 - 1; y1 >= yDist1; --y1) {
+						double distY = calculateDistance(yOrigin, y1, y, yModSin);
+
+						if ((distX * distX + distZ * distZ) * array1[(y1 + yOrigin * 16) & 0xFF] + distY
+								* distY / 6.0D >= 1.0D) {
+							continue;
+						}
+
+						BlockPos pos = new BlockPos(x1, y1, z1);
+						Block block = cube.getBlockState(pos).getBlock();
+
+						if (block != Blocks.stone && block != Blocks.dirt && block != Blocks.grass) {
+							continue;
+						} else if (block == Blocks.grass) {
+							grass = true;
+						}
+						// used to place lava at the bottom of ravines if it was deep enough
+						if (y1 + yOrigin * 16 < /* 10 */0) {
+							// BUG: crash when it's lava
+							// cube.setBlockForGeneration(pos, Blocks.FLOWING_LAVA.getDefaultState());
+							cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
+						} else {
+							cube.setBlockForGeneration(pos, Blocks.air.getDefaultState());
+						}
+						
+						if (grass && block == Blocks.dirt) {
+							cube.setBlockForGeneration(pos, Blocks.grass.getDefaultState());
+							cube.setBlockForGeneration(pos.up(), Blocks.air.getDefaultState());
 						}
-					}
-	
-					if (kAltered) {
-						break;
 					}
 				}
-			}	
+			}
 		}
 	}
 
@@ -23,15 +23,61 @@
  */
 package cubicchunks.generator.structures;
 
+import cubicchunks.util.AddressTools;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.block.Block;
 import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public abstract class CubicStructureGenerator {
 	
+	/** Structure starts are computed and cached for regions of 8x8x8 origin cubes */
+	private static final int RegionBits = 3;
+	private static final int RegionSize = 1 << RegionBits;
+	
+	/** Max number of regions kept in the cache */
+	private static final int MaxCachedRegions = 2048;
+	
+	/**
+	 * All structures starting in one origin cube, in the order they are carved
+	 */
+	private static class OriginStarts implements Comparable<OriginStarts> {
+		
+		final int x;
+		final int y;
+		final int z;
+		final List<CarverStart> starts;
+		
+		OriginStarts(int x, int y, int z, List<CarverStart> starts) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.starts = starts;
+		}
+		
+		@Override
+		public int compareTo(OriginStarts other) {
+			// same order as the origin loop in generate()
+			if (this.x != other.x) {
+				return this.x < other.x ? -1 : 1;
+			}
+			if (this.y != other.y) {
+				return this.y < other.y ? -1 : 1;
+			}
+			if (this.z != other.z) {
+				return this.z < other.z ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+	
 	/** The number of Chunks to gen-check in any given direction. */
 	protected int range = 8;
 	
@@ -41,6 +87,31 @@ public abstract class CubicStructureGenerator {
 	/** This world object. */
 	protected World m_world;
 	
+	/**
+	 * Origins that have any structure starts, for each cached region. Most origins don't have any, so this is much
+	 * smaller than the region itself.
+	 */
+	private final LinkedHashMap<Long, List<OriginStarts>> m_regions = new LinkedHashMap<Long, List<OriginStarts>>(
+		MaxCachedRegions * 4 / 3 + 1, 0.75f, true) {
+		
+		private static final long serialVersionUID = -2415327014869571231L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, List<OriginStarts>> eldest) {
+			return size() > MaxCachedRegions;
+		}
+	};
+	private long m_regionsSeed;
+	private long m_randX;
+	private long m_randY;
+	private long m_randZ;
+	
+	// reused by generate()
+	private final ArrayList<OriginStarts> m_startsInRange = new ArrayList<OriginStarts>();
+	
+	/** Scratch list for the starts of a single origin, most origins don't have any */
+	private final ArrayList<CarverStart> m_originStarts = new ArrayList<CarverStart>();
+	
 	public void generate(World world, Cube cube) {
 		int xOrigin = cube.getX();
 		int yOrigin = cube.getY();
@@ -48,29 +119,159 @@ public abstract class CubicStructureGenerator {
 		
 		int radius = this.range;
 		this.m_world = world;
-		this.rand.setSeed(world.getSeed());
-		long randX = this.rand.nextLong();
-		long randY = this.rand.nextLong();
-		long randZ = this.rand.nextLong();
+		if (this.m_regions.isEmpty() || this.m_regionsSeed != world.getSeed()) {
+			this.m_regions.clear();
+			this.m_regionsSeed = world.getSeed();
+			this.rand.setSeed(world.getSeed());
+			this.m_randX = this.rand.nextLong();
+			this.m_randY = this.rand.nextLong();
+			this.m_randZ = this.rand.nextLong();
+		}
+		
+		int minX = xOrigin - radius;
+		int minY = yOrigin - radius;
+		int minZ = zOrigin - radius;
+		int maxX = xOrigin + radius;
+		int maxY = yOrigin + radius;
+		int maxZ = zOrigin + radius;
+		
+		// find all origins in range that have any starts, without visiting every origin
+		List<OriginStarts> startsInRange = this.m_startsInRange;
+		startsInRange.clear();
+		for (int regionX = minX >> RegionBits; regionX <= maxX >> RegionBits; regionX++) {
+			for (int regionY = minY >> RegionBits; regionY <= maxY >> RegionBits; regionY++) {
+				for (int regionZ = minZ >> RegionBits; regionZ <= maxZ >> RegionBits; regionZ++) {
+					for (OriginStarts starts : getRegion(world, regionX, regionY, regionZ)) {
+						if (starts.x >= minX && starts.x <= maxX && starts.y >= minY && starts.y <= maxY
+								&& starts.z >= minZ && starts.z <= maxZ) {
+							startsInRange.add(starts);
+						}
+					}
+				}
+			}
+		}
+		// carving order matters, so keep the order the origins would be visited in
+		Collections.sort(startsInRange);
+		
+		double xCenter = xOrigin * 16D + 8D;
+		double yCenter = yOrigin * 16D + 8D;
+		double zCenter = zOrigin * 16D + 8D;
 		
-		for (int x = xOrigin - radius; x <= xOrigin + radius; ++x) {
-			for (int y = yOrigin - radius; y <= yOrigin + radius; ++y) {
-				for (int z = zOrigin - radius; z <= zOrigin + radius; ++z) {
-					long randX_mul = x * randX;
-					long randY_mul = y * randY;
-					long randZ_mul = z * randZ;
+		// nodes without explicit tries never make more than this
+		int maxTries = this.range * 16 - 16;
+		
+		for (OriginStarts starts : startsInRange) {
+			for (CarverStart start : starts.starts) {
+				if (!start.mayReach(this, xCenter, yCenter, zCenter, maxTries)) {
+					continue;
+				}
+				CarverNode node = start.getNode(this);
+				if (node.canReach(xCenter, yCenter, zCenter)) {
+					this.carveNode(cube, node, xOrigin, yOrigin, zOrigin);
+				}
+			}
+		}
+		startsInRange.clear();
+	}
+	
+	private List<OriginStarts> getRegion(World world, int regionX, int regionY, int regionZ) {
+		long address = AddressTools.getAddress(regionX, regionY, regionZ);
+		List<OriginStarts> region = this.m_regions.get(address);
+		if (region != null) {
+			return region;
+		}
+		
+		region = new ArrayList<OriginStarts>(0);
+		for (int localX = 0; localX < RegionSize; localX++) {
+			for (int localY = 0; localY < RegionSize; localY++) {
+				for (int localZ = 0; localZ < RegionSize; localZ++) {
+					int x = (regionX << RegionBits) + localX;
+					int y = (regionY << RegionBits) + localY;
+					int z = (regionZ << RegionBits) + localZ;
+					long randX_mul = x * this.m_randX;
+					long randY_mul = y * this.m_randY;
+					long randZ_mul = z * this.m_randZ;
 					this.rand.setSeed(randX_mul ^ randY_mul ^ randZ_mul ^ world.getSeed());
-					this.generate(world, cube, x, y, z, xOrigin, yOrigin, zOrigin);
+					
+					this.generateStarts(this.m_originStarts, x, y, z);
+					if (!this.m_originStarts.isEmpty()) {
+						region.add(new OriginStarts(x, y, z, new ArrayList<CarverStart>(this.m_originStarts)));
+						this.m_originStarts.clear();
+					}
 				}
 			}
+		}
+		this.m_regions.put(address, region);
+		return region;
+	}
+	
+	/**
+	 * Replays a precomputed node in the given cube, the same way the node would have been generated in it.
+	 */
+	private void carveNode(Cube cube, CarverNode node, int xOrigin, int yOrigin, int zOrigin) {
+		double xOCenter = xOrigin * 16D + 8D;
+		double yOCenter = yOrigin * 16D + 8D;
+		double zOCenter = zOrigin * 16D + 8D;
+		
+		for (int i = 0; i < node.size; i++) {
+			double x = node.x[i];
+			double y = node.y[i];
+			double z = node.z[i];
+			double modSin = node.modSin[i];
+			double yModSin = node.yModSin[i];
 			
+			double xDist = x - xOCenter;
+			double yDist = y - yOCenter;
+			double zDist = z - zOCenter;
+			double triesLeft = node.triesLeft[i];
+			double fDist = node.fDist;
+			
+			if (this.distanceSquared(xDist, yDist, zDist) - triesLeft * triesLeft > fDist * fDist) {
+				return;
+			}
+			
+			// Check y coords?
+			if (x >= xOCenter - 16.0D - modSin * 2.0D && y >= yOCenter - 16.0D - yModSin * 2.0D
+					&& z >= zOCenter - 16.0D - modSin * 2.0D && x <= xOCenter + 16.0D + modSin * 2.0D
+					&& y <= yOCenter + 16.0D + yModSin * 2.0D && z <= zOCenter + 16.0D + modSin * 2.0D) {
+				this.carveStep(cube, node, i, xOrigin, yOrigin, zOrigin);
+				
+				if (node.kAltered) {
+					return;
+				}
+			}
+		}
+		
+		if (node.children != null) {
+			for (CarverNode child : node.children) {
+				this.carveNode(cube, child, xOrigin, yOrigin, zOrigin);
+			}
 		}
 	}
 	
-	protected abstract void generate(World world, Cube cube, int x, int y, int z, int xOrig, int yOrig, int zOrig);
+	/**
+	 * Adds structures starting in the given origin cube to starts, in the order they should be carved. this.rand is
+	 * already seeded for the origin.
+	 */
+	protected abstract void generateStarts(List<CarverStart> starts, int x, int y, int z);
+	
+	/**
+	 * Computes the whole path of a node, without carving anything.
+	 */
+	protected abstract CarverNode generateNode(long seed, double x, double y, double z, float size_base, float curve, float angle, int numTry, int tries, double yModSinMultiplier);
+	
+	/**
+	 * Carves the given step of a node into the cube. The step is already known to be in range of the cube.
+	 */
+	protected abstract void carveStep(Cube cube, CarverNode node, int step, int xOrigin, int yOrigin, int zOrigin);
+	
+	/**
+	 * Squared distance used to check if the rest of a node is too far away from the cube
+	 */
+	protected double distanceSquared(double xDist, double yDist, double zDist) {
+		return xDist * xDist + yDist * yDist + zDist * zDist;
+	}
 	
-	protected abstract void generateNode(Cube cube, long seed, int xOrigin, int yOrigin, int zOrigin, double x, double y, double z, float size_base, float curve, float angle, int numTry, int tries, double yModSinMultiplier);
-
 	protected boolean scanForLiquid(Cube cube, int xDist1, int xDist2, int yDist1, int yDist2, int zDist1,
 			int zDist2, Block stationaryLiquid, Block flowingLiquid) {
 				boolean result = false;
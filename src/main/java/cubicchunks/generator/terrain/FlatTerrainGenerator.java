@@ -26,32 +26,29 @@ package cubicchunks.generator.terrain;
 import cubicchunks.api.generators.ITerrainGenerator;
 import cubicchunks.world.cube.Cube;
 
-import static cubicchunks.util.Coords.CUBE_SIZE;
+import java.util.Arrays;
+
 import static cubicchunks.util.TerrainGeneratorUtils.applyHeightGradient;
-import static cubicchunks.util.TerrainGeneratorUtils.getNewCubeSizedArray;
+import static cubicchunks.util.TerrainGeneratorUtils.newDensityBuffer;
+import static cubicchunks.util.TerrainGeneratorUtils.toCubeSizedArray;
 
 public class FlatTerrainGenerator implements ITerrainGenerator {
 
-	private final double[][][] rawDensity;
-
 	public FlatTerrainGenerator(final long seed) {
-		this.rawDensity = getNewCubeSizedArray();
 	}
 
 	@Override
 	public double[][][] generate(final Cube cube) {
-		generateTerrainArray(cube);
-
-		return applyHeightGradient(cube, this.rawDensity);
+		final double[] density = newDensityBuffer();
+		generate(cube, density);
+		return toCubeSizedArray(density);
 	}
 
-	private void generateTerrainArray(final Cube cube) {
-		for (int x = 0; x < CUBE_SIZE; x++) {
-			for (int z = 0; z < CUBE_SIZE; z++) {
-				for (int y = 0; y < CUBE_SIZE; y++) {
-					this.rawDensity[x][y][z] = 0;
-				}
-			}
-		}
+	@Override
+	public void generate(final Cube cube, final double[] densityOut) {
+		// flat terrain has no raw density, only the height gradient
+		Arrays.fill(densityOut, 0);
+
+		applyHeightGradient(cube.getY(), densityOut);
 	}
 }
@@ -0,0 +1,159 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.terrain;
+
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.X_SECTIONS;
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.Y_SECTIONS;
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.Z_SECTIONS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cubicchunks.generator.builder.IBuilder;
+import cubicchunks.util.AddressTools;
+
+/**
+ * Fills the coarse noise lattice of a cube, reusing the horizontal sample planes on the top and bottom faces.
+ * <p>
+ * The lattice of a cube includes the planes on its faces, so the top plane of one cube is the bottom plane of the cube
+ * above it. Face planes are kept in a bounded LRU cache keyed by the cube x/z and the face y, so generating a stack of
+ * cubes evaluates every shared plane only once. Planes inside the cube are never shared and are not cached.
+ */
+class LatticePlaneCache {
+	
+	private static final int DefaultMaxPlanes = 512;
+	
+	private static class Plane {
+		// each array is [X_SECTIONS][1][Z_SECTIONS], so they can be filled with IBuilder.getValues()
+		final double[][][] high = new double[X_SECTIONS][1][Z_SECTIONS];
+		final double[][][] low = new double[X_SECTIONS][1][Z_SECTIONS];
+		final double[][][] alpha = new double[X_SECTIONS][1][Z_SECTIONS];
+	}
+	
+	private final IBuilder builderHigh;
+	private final IBuilder builderLow;
+	private final IBuilder builderAlpha;
+	private final int maxPlanes;
+	private final LinkedHashMap<Long, Plane> planes;
+	
+	// planes evicted from the cache are reused instead of allocating new ones
+	private Plane spare;
+	// planes inside the cube are computed here
+	private final Plane scratch;
+	
+	private long planesComputed;
+	private long planesReused;
+	
+	LatticePlaneCache(IBuilder builderHigh, IBuilder builderLow, IBuilder builderAlpha) {
+		this(builderHigh, builderLow, builderAlpha, DefaultMaxPlanes);
+	}
+	
+	LatticePlaneCache(IBuilder builderHigh, IBuilder builderLow, IBuilder builderAlpha, int maxPlanes) {
+		this.builderHigh = builderHigh;
+		this.builderLow = builderLow;
+		this.builderAlpha = builderAlpha;
+		this.maxPlanes = maxPlanes;
+		this.planes = new LinkedHashMap<Long, Plane>(maxPlanes * 4 / 3 + 1, 0.75f, true) {
+			
+			private static final long serialVersionUID = 4021349566512347513L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Plane> eldest) {
+				if (size() > LatticePlaneCache.this.maxPlanes) {
+					spare = eldest.getValue();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.scratch = new Plane();
+		this.planesComputed = 0;
+		this.planesReused = 0;
+	}
+	
+	/**
+	 * Fills the [X_SECTIONS][Y_SECTIONS][Z_SECTIONS] lattice of the given cube with the same values
+	 * IBuilder.getValues() would produce.
+	 */
+	void fill(int cubeX, int cubeY, int cubeZ, double[][][] high, double[][][] low, double[][][] alpha) {
+		for (int y = 0; y < Y_SECTIONS; y++) {
+			Plane plane;
+			if (y == 0) {
+				plane = getFacePlane(cubeX, cubeY, cubeZ);
+			} else if (y == Y_SECTIONS - 1) {
+				plane = getFacePlane(cubeX, cubeY + 1, cubeZ);
+			} else {
+				plane = this.scratch;
+				computePlane(plane, cubeX, cubeY * (Y_SECTIONS - 1) + y, cubeZ);
+			}
+			
+			for (int x = 0; x < X_SECTIONS; x++) {
+				for (int z = 0; z < Z_SECTIONS; z++) {
+					high[x][y][z] = plane.high[x][0][z];
+					low[x][y][z] = plane.low[x][0][z];
+					alpha[x][y][z] = plane.alpha[x][0][z];
+				}
+			}
+		}
+	}
+	
+	long getPlanesComputed() {
+		return this.planesComputed;
+	}
+	
+	long getPlanesReused() {
+		return this.planesReused;
+	}
+	
+	/**
+	 * Gets the plane at the bottom face of cube (cubeX, faceY, cubeZ)
+	 */
+	private Plane getFacePlane(int cubeX, int faceY, int cubeZ) {
+		long key = AddressTools.getAddress(cubeX, faceY, cubeZ);
+		Plane plane = this.planes.get(key);
+		if (plane != null) {
+			this.planesReused++;
+			return plane;
+		}
+		
+		if (this.spare != null) {
+			plane = this.spare;
+			this.spare = null;
+		} else {
+			plane = new Plane();
+		}
+		computePlane(plane, cubeX, faceY * (Y_SECTIONS - 1), cubeZ);
+		this.planes.put(key, plane);
+		return plane;
+	}
+	
+	private void computePlane(Plane plane, int cubeX, int latticeY, int cubeZ) {
+		int latticeX = cubeX * (X_SECTIONS - 1);
+		int latticeZ = cubeZ * (Z_SECTIONS - 1);
+		this.builderHigh.getValues(plane.high, latticeX, latticeY, latticeZ);
+		this.builderLow.getValues(plane.low, latticeX, latticeY, latticeZ);
+		this.builderAlpha.getValues(plane.alpha, latticeX, latticeY, latticeZ);
+		this.planesComputed++;
+	}
+}
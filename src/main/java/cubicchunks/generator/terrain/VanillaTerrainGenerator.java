@@ -24,11 +24,14 @@
 package cubicchunks.generator.terrain;
 
 import cubicchunks.api.generators.ITerrainGenerator;
+import cubicchunks.generator.ColumnGeneratorData;
 import cubicchunks.generator.builder.BasicBuilder;
 import cubicchunks.generator.builder.IBuilder;
+import cubicchunks.util.Coords;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.world.biome.BiomeGenBase;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import static cubicchunks.generator.terrain.GlobalGeneratorConfig.*;
@@ -53,6 +56,8 @@ public class VanillaTerrainGenerator implements ITerrainGenerator {
 	private final IBuilder builderLow;
 	private final IBuilder builderAlpha;
 
+	private final LatticePlaneCache latticeCache;
+
 	private double biomeVolatility;
 	private double biomeHeight;
 
@@ -81,11 +86,12 @@ public class VanillaTerrainGenerator implements ITerrainGenerator {
 		this.noiseArrayLow = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
 		this.noiseArrayAlpha = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
 
-		this.rawDensity = getNewCubeSizedArray();
+		this.rawDensity = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
 
 		this.builderHigh = createHighBuilder();
 		this.builderLow = createLowBuilder();
 		this.builderAlpha = createAlphaBuilder();
+		this.latticeCache = new LatticePlaneCache(this.builderHigh, this.builderLow, this.builderAlpha);
 
 		this.noiseArrayHeight = new double[X_SECTIONS][Z_SECTIONS];
 
@@ -111,15 +117,74 @@ public class VanillaTerrainGenerator implements ITerrainGenerator {
 
 	@Override
 	public double[][][] generate(final Cube cube) {
+		final double[] density = newDensityBuffer();
+		generate(cube, density);
+		return toCubeSizedArray(density);
+	}
+
+	@Override
+	public void generate(final Cube cube, final double[] densityOut) {
+		// height noise and biome factors only depend on x/z, so compute them once per column
+		ColumnGeneratorData data = cube.getColumn().getGeneratorData();
+		if (!data.hasTerrainBiomeFactors()) {
+			generateBiomeFactors(cube, data);
+		}
+
+		final int seaLevel = cube.getWorld().provider.getAverageGroundLevel();
+		if (this.needsScaling && generateUniformDensity(cube, data, seaLevel, densityOut)) {
+			return;
+		}
+
 		generateNoiseArrays(cube);
 
-		generateTerrainArray(cube);
+		generateTerrainArray(cube, data);
 
 		if (this.needsScaling) {
-			scaleNoiseArray(cube.getWorld().provider.getAverageGroundLevel());
+			scaleNoiseArray(seaLevel);
+		}
+
+		expandNoiseArray(this.rawDensity, densityOut);
+		applyHeightGradient(cube.getY(), densityOut);
+	}
+
+	/**
+	 * Checks whether the cube is entirely above or entirely below the terrain, without evaluating any 3d noise.
+	 * <p>
+	 * Before scaling, density is lerp(alpha, low, high) * volatility + height. Alpha is clamped to 0..1 and low and
+	 * high to -1..1, so it's always within height +/- volatility, and interpolating between the sections can't leave
+	 * that range either. If the whole cube is on one side of it, fills the buffer with a density that has the correct
+	 * sign everywhere and returns true.
+	 */
+	private boolean generateUniformDensity(final Cube cube, final ColumnGeneratorData data, final int seaLevel,
+			final double[] densityOut) {
+		final double[] heights = data.getTerrainBiomeHeight();
+		final double[] volatilities = data.getTerrainBiomeVolatility();
+
+		double minRaw = Double.POSITIVE_INFINITY;
+		double maxRaw = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < heights.length; i++) {
+			final double volatility = Math.abs(volatilities[i]);
+			minRaw = Math.min(minRaw, heights[i] - volatility);
+			maxRaw = Math.max(maxRaw, heights[i] + volatility);
+		}
+		// one block of margin for rounding errors
+		minRaw = minRaw * MAX_ELEV + seaLevel - 1;
+		maxRaw = maxRaw * MAX_ELEV + seaLevel + 1;
+
+		final double raw;
+		if (maxRaw <= Coords.cubeToMinBlock(cube.getY())) {
+			// nothing solid in this cube
+			raw = maxRaw;
+		} else if (minRaw > Coords.cubeToMaxBlock(cube.getY())) {
+			// completely solid
+			raw = minRaw;
+		} else {
+			return false;
 		}
 
-		return applyHeightGradient(cube, expandNoiseArray(this.rawDensity));
+		Arrays.fill(densityOut, raw);
+		applyHeightGradient(cube.getY(), densityOut);
+		return true;
 	}
 
 	/**
@@ -191,40 +256,23 @@ public class VanillaTerrainGenerator implements ITerrainGenerator {
 	 * @see cubicchunks.generator.terrain.ITerrainGenerator#generateNoiseArrays(cubicchunks.world.cube.Cube)
 	 */
 	private void generateNoiseArrays(final Cube cube) {
-		int cubeXMin = cube.getX() * (X_SECTIONS - 1);
-		int cubeYMin = cube.getY() * (Y_SECTIONS - 1);
-		int cubeZMin = cube.getZ() * (Z_SECTIONS - 1);
-
-		for (int x = 0; x < X_SECTIONS; x++) {
-			int xPos = cubeXMin + x;
-
-			for (int z = 0; z < Z_SECTIONS; z++) {
-				int zPos = cubeZMin + z;
-
-				for (int y = 0; y < Y_SECTIONS; y++) {
-					int yPos = cubeYMin + y;
-
-					this.noiseArrayHigh[x][y][z] = this.builderHigh.getValue(xPos, yPos, zPos);
-					this.noiseArrayLow[x][y][z] = this.builderLow.getValue(xPos, yPos, zPos);
-					this.noiseArrayAlpha[x][y][z] = this.builderAlpha.getValue(xPos, yPos, zPos);
-				}
-			}
-		}
+		// the top and bottom planes are shared with the cubes above and below
+		this.latticeCache.fill(cube.getX(), cube.getY(), cube.getZ(),
+				this.noiseArrayHigh, this.noiseArrayLow, this.noiseArrayAlpha);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * @see cubicchunks.generator.terrain.ITerrainGenerator#generateTerrainArray(cubicchunks.world.cube.Cube)
 	 */
-	private void generateTerrainArray(final Cube cube) {
-		this.biomes = getBiomeMap(cube);
+	private void generateTerrainArray(final Cube cube, final ColumnGeneratorData data) {
+		final double[] heights = data.getTerrainBiomeHeight();
+		final double[] volatilities = data.getTerrainBiomeVolatility();
 
-		fillHeightArray(cube);
 		for (int x = 0; x < X_SECTIONS; x++) {
 			for (int z = 0; z < Z_SECTIONS; z++) {
-				// TODO: Remove addHeight?
-				double addHeight = getAddHeight(x, z);
-				biomeFactor(x, z, addHeight);
+				this.biomeHeight = heights[x * Z_SECTIONS + z];
+				this.biomeVolatility = volatilities[x * Z_SECTIONS + z];
 
 				for (int y = 0; y < Y_SECTIONS; y++) {
 					final double vol1Low = this.noiseArrayLow[x][y][z];
@@ -264,6 +312,26 @@ public class VanillaTerrainGenerator implements ITerrainGenerator {
 		}
 	}
 
+	private void generateBiomeFactors(final Cube cube, final ColumnGeneratorData data) {
+		this.biomes = getBiomeMap(cube);
+
+		fillHeightArray(cube);
+
+		final double[] heights = new double[X_SECTIONS * Z_SECTIONS];
+		final double[] volatilities = new double[X_SECTIONS * Z_SECTIONS];
+		for (int x = 0; x < X_SECTIONS; x++) {
+			for (int z = 0; z < Z_SECTIONS; z++) {
+				// TODO: Remove addHeight?
+				double addHeight = getAddHeight(x, z);
+				biomeFactor(x, z, addHeight);
+
+				heights[x * Z_SECTIONS + z] = this.biomeHeight;
+				volatilities[x * Z_SECTIONS + z] = this.biomeVolatility;
+			}
+		}
+		data.setTerrainBiomeFactors(heights, volatilities);
+	}
+
 	private BiomeGenBase[] getBiomeMap(final Cube cube) {
 		return cube.getWorld().provider.getWorldChunkManager().getBiomesForGeneration(this.biomes,
 				cube.getX() * 4 - this.maxSmoothRadius, cube.getZ() * 4 - this.maxSmoothRadius,
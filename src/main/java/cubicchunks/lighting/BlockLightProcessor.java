@@ -0,0 +1,59 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.lighting;
+
+import cubicchunks.util.AddressTools;
+import cubicchunks.util.Coords;
+import cubicchunks.world.ICubeCache;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.EnumSkyBlock;
+
+import java.util.Set;
+
+/**
+ * Updates block light around changed blocks on the light thread, the same way SkyLightCubeDiffuseProcessor does for
+ * sky light.
+ */
+class BlockLightProcessor extends LightBatchProcessor<BlockPos> {
+
+	public BlockLightProcessor(String name, ICubeCache provider, int batchSize) {
+		super(name, provider, batchSize, EnumSkyBlock.BLOCK);
+	}
+
+	@Override
+	protected long getCubeAddress(BlockPos pos) {
+		return AddressTools.getAddress(Coords.blockToCube(pos.getX()), Coords.blockToCube(pos.getY()),
+			Coords.blockToCube(pos.getZ()));
+	}
+
+	@Override
+	protected void addToBatch(LightEngine.Batch batch, BlockPos pos) {
+		batch.addBlock(this.cache, pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	@Override
+	protected boolean canReach(Set<Long> cubeAddresses, BlockPos pos) {
+		return LightEngine.Batch.canReach(cubeAddresses, pos.getX(), pos.getY(), pos.getZ(), pos.getX(), pos.getY(), pos.getZ());
+	}
+}
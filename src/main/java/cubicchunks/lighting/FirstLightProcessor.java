@@ -49,6 +49,7 @@ public class FirstLightProcessor extends CubeProcessor {
 		// only continue if the neighboring cubes are at least in the lighting stage
 		WorldContext worldContext = WorldContext.get(cube.getWorld());
 		if (!worldContext.cubeAndNeighborsExist(cube, true, GeneratorStage.LIGHTING)) {
+			deferredBecause("neighbors not ready");
 			return false;
 		}
 		
@@ -81,6 +82,7 @@ public class FirstLightProcessor extends CubeProcessor {
 					
 					// if the lighting failed, then try again later
 					if (!wasLit) {
+						deferredBecause("diffuse lighting failed");
 						return false;
 					}
 				}
@@ -143,22 +145,26 @@ public class FirstLightProcessor extends CubeProcessor {
 		} else {
 			IOpacityIndex index = cube.getColumn().getOpacityIndex();
 			
-			// need to calculate the light
+			// need to calculate the light, one run of blocks with the same opacity at a time
 			int light = 15;
 			int startBlockY = Math.max(gradientMaxBlockY, cubeMaxBlockY);
-			for (pos.y = startBlockY; pos.y >= cubeMinBlockY; pos.y--) {
-				int opacity = index.getOpacity(localX, pos.y, localZ);
-				if (opacity == 0 && light < 15) {
-					// after something blocks light, apply a linear falloff
-					opacity = 1;
-				}
-				
-				// decrease the light
-				light = Math.max(0, light - opacity);
-				
-				if (pos.y <= cubeMaxBlockY) {
-					// apply the light
-					cube.setLightValue(EnumSkyBlock.SKY, pos, light);
+			IOpacityIndex.SegmentIterator segments = index.getSegments(localX, localZ, cubeMinBlockY, startBlockY);
+			while (segments.next()) {
+				int runOpacity = segments.getOpacity();
+				for (pos.y = segments.getMaxBlockY(); pos.y >= segments.getMinBlockY(); pos.y--) {
+					int opacity = runOpacity;
+					if (opacity == 0 && light < 15) {
+						// after something blocks light, apply a linear falloff
+						opacity = 1;
+					}
+					
+					// decrease the light
+					light = Math.max(0, light - opacity);
+					
+					if (pos.y <= cubeMaxBlockY) {
+						// apply the light
+						cube.setLightValue(EnumSkyBlock.SKY, pos, light);
+					}
 				}
 			}
 			if(light != 15) light--;
@@ -250,10 +256,7 @@ public class FirstLightProcessor extends CubeProcessor {
 		
 		// should we diffuse block light?
 		if (block.getLightValue()> 0) {
-			boolean wasLit = world.checkLightFor(EnumSkyBlock.BLOCK, pos);
-			if (!wasLit) {
-				return false;
-			}
+			WorldContext.get(world).getLightingManager().queueBlockLightUpdate(pos);
 		}
 		
 		return true;
@@ -0,0 +1,213 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.lighting;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import cubicchunks.util.AddressTools;
+import cubicchunks.util.Progress;
+import cubicchunks.util.processor.QueueProcessor;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.column.BlankColumn;
+import cubicchunks.world.column.Column;
+import net.minecraft.world.EnumSkyBlock;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Updates light on the light thread. All queued entries that fit go into one LightEngine batch, and the light of that
+ * batch is applied in a later tick, once it's done. Only one batch per processor is worked on at a time.
+ * <p>
+ * processQueueUntil() applies the finished batch and starts the next one within the time it is given. Entries that
+ * don't fit into the time stay queued for the next tick, the rest of the queue isn't touched while a batch runs.
+ * <p>
+ * Subclasses only say which cube an entry is in, which blocks it checks and which cubes its light can reach.
+ */
+abstract class LightBatchProcessor<T> extends QueueProcessor<T> {
+
+	// limits how long taking the snapshots for a batch blocks the server thread
+	private static final int MaxCubesPerBatch = 64;
+
+	private final EnumSkyBlock type;
+	private LightEngine.Batch runningBatch;
+	private List<T> runningEntries;
+	private Future<?> runningFuture;
+	// when to stop adding entries to a batch, only set during processQueueUntil()
+	private long timeStop;
+
+	LightBatchProcessor(String name, ICubeCache provider, int batchSize, EnumSkyBlock type) {
+		super(name, provider, batchSize);
+		this.type = type;
+		this.timeStop = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the address of the cube the entry is in.
+	 */
+	protected abstract long getCubeAddress(T entry);
+
+	/**
+	 * Adds the blocks the entry checks to the batch.
+	 */
+	protected abstract void addToBatch(LightEngine.Batch batch, T entry);
+
+	/**
+	 * Returns true if light changes of the entry can reach any of the given cubes, see LightEngine.Batch.canReach().
+	 */
+	protected abstract boolean canReach(Set<Long> cubeAddresses, T entry);
+
+	/**
+	 * Returns true if the entry doesn't need to be done at all.
+	 */
+	protected boolean isNothingToDo(Column column, T entry) {
+		return false;
+	}
+
+	@Override
+	public int processQueueUntil(long timeStop) {
+		this.timeStop = timeStop;
+		try {
+			if (getNumInQueue() == 0 && this.runningFuture != null && this.runningFuture.isDone()
+					&& System.currentTimeMillis() < timeStop) {
+				// nothing is queued, but the light of the finished batch still has to be applied
+				return processQueue(null);
+			}
+			return super.processQueueUntil(timeStop);
+		} finally {
+			this.timeStop = Long.MAX_VALUE;
+		}
+	}
+
+	@Override
+	protected boolean canProcessBatch() {
+		// the next batch can only start once the light thread is done with the running one
+		return this.runningFuture == null || this.runningFuture.isDone();
+	}
+
+	@Override
+	public void processBatch(Progress progress) {
+		if (this.runningFuture != null) {
+			if (!this.runningFuture.isDone()) {
+				// wait for the running batch
+				this.deferredAddresses.addAll(this.incomingAddresses);
+				return;
+			}
+			finishRunningBatch();
+		}
+
+		LightEngine.Batch batch = new LightEngine.Batch(this.type);
+		List<T> entries = Lists.newArrayList();
+		for (T entry : this.incomingAddresses) {
+			if (batch.getNumCubes() >= MaxCubesPerBatch) {
+				defer(entry, "batch full");
+				continue;
+			}
+			// applying the last batch or taking the snapshots can use up the tick
+			if (System.currentTimeMillis() >= this.timeStop) {
+				defer(entry, "out of time");
+				continue;
+			}
+
+			long address = getCubeAddress(entry);
+			int cubeX = AddressTools.getX(address);
+			int cubeY = AddressTools.getY(address);
+			int cubeZ = AddressTools.getZ(address);
+
+			Column column = this.cache.getColumn(cubeX, cubeZ);
+			if (empty(column)) {
+				defer(entry, "column not loaded");
+				continue;
+			}
+			if (column.getCube(cubeY) == null) {
+				defer(entry, "cube not loaded");
+				continue;
+			}
+			if (isNothingToDo(column, entry)) {
+				this.processedAddresses.add(entry);
+				continue;
+			}
+			// light can spread into the neighboring cubes, wait until they are there
+			if (empty(this.cache.getColumn(cubeX + 1, cubeZ)) ||
+					empty(this.cache.getColumn(cubeX - 1, cubeZ)) ||
+					empty(this.cache.getColumn(cubeX, cubeZ + 1)) ||
+					empty(this.cache.getColumn(cubeX, cubeZ - 1)) ||
+					empty(this.cache.getColumn(cubeX + 1, cubeZ + 1)) ||
+					empty(this.cache.getColumn(cubeX + 1, cubeZ - 1)) ||
+					empty(this.cache.getColumn(cubeX - 1, cubeZ + 1)) ||
+					empty(this.cache.getColumn(cubeX - 1, cubeZ - 1))) {
+				defer(entry, "neighbors not loaded");
+				continue;
+			}
+
+			// the limit is checked before the next entry, once this one's cubes are in the batch
+			addToBatch(batch, entry);
+			entries.add(entry);
+		}
+
+		if (!entries.isEmpty()) {
+			this.runningBatch = batch;
+			this.runningEntries = entries;
+			this.runningFuture = LightEngine.Executor.submit(batch);
+		}
+	}
+
+	private void finishRunningBatch() {
+		try {
+			this.runningFuture.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw Throwables.propagate(ex);
+		} catch (ExecutionException ex) {
+			throw Throwables.propagate(ex.getCause());
+		}
+
+		Set<Long> conflictingCubes = this.runningBatch.apply(this.cache);
+		for (T entry : this.runningEntries) {
+			if (canReach(conflictingCubes, entry)) {
+				// some light changed while the batch was running, do it again with the new light
+				defer(entry, "light changed while running");
+			} else {
+				this.processedAddresses.add(entry);
+			}
+		}
+		this.runningBatch = null;
+		this.runningEntries = null;
+		this.runningFuture = null;
+	}
+
+	private void defer(T entry, String reason) {
+		this.deferredAddresses.add(entry);
+		deferredBecause(reason);
+		if (this.stats != null) {
+			this.stats.deferred();
+		}
+	}
+
+	private boolean empty(Column column) {
+		return column == null || column instanceof BlankColumn;
+	}
+}
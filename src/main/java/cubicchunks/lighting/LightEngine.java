@@ -0,0 +1,515 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.lighting;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import cubicchunks.util.AddressTools;
+import cubicchunks.util.Coords;
+import cubicchunks.util.FastIntQueue;
+import cubicchunks.util.MutableBlockPos;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.column.BlankColumn;
+import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Propagates sky or block light like World.checkLightFor() does, but for many blocks in one pass and on copies of the
+ * cubes around them, so the propagation itself can run on any thread.
+ * <p>
+ * Positions are packed into ints: the index of the cube in the batch, the light level (only used while removing light)
+ * and the index of the block in the cube.
+ */
+class LightEngine {
+
+	// runs the batches of all worlds and light types
+	static final ExecutorService Executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Light Thread");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final int MaxLight = 15;
+
+	// cube neighbors in the order of the direction indices
+	private static final int[] NeighborX = { -1, 1, 0, 0, 0, 0 };
+	private static final int[] NeighborY = { 0, 0, -1, 1, 0, 0 };
+	private static final int[] NeighborZ = { 0, 0, 0, 0, -1, 1 };
+
+	private static int pack(int cubeIndex, int level, int blockIndex) {
+		return cubeIndex << 16 | level << 12 | blockIndex;
+	}
+
+	private static int unpackCubeIndex(int packed) {
+		return packed >>> 16;
+	}
+
+	private static int unpackLevel(int packed) {
+		return (packed >>> 12) & 0xF;
+	}
+
+	private static int unpackBlockIndex(int packed) {
+		return packed & 0xFFF;
+	}
+
+	/**
+	 * The blocks to check and copies of all the cubes their light can reach. Create and apply on the server thread,
+	 * run on any thread.
+	 */
+	static class Batch implements Runnable {
+
+		private final EnumSkyBlock type;
+		private final Map<Long, Integer> cubeIndices;
+		private final List<CubeSnapshot> cubes;
+		private final FastIntQueue seeds;
+
+		Batch(EnumSkyBlock type) {
+			this.type = type;
+			this.cubeIndices = Maps.newHashMap();
+			this.cubes = Lists.newArrayList();
+			this.seeds = new FastIntQueue(1024);
+		}
+
+		int getNumCubes() {
+			return this.cubes.size();
+		}
+
+		/**
+		 * Checks the sky light of a block column in a cube and the four block columns next to it.
+		 */
+		void addBlockColumns(ICubeCache cache, int blockX, int blockZ, int cubeY) {
+			addBlockColumn(cache, blockX, blockZ, cubeY);
+			addBlockColumn(cache, blockX - 1, blockZ, cubeY);
+			addBlockColumn(cache, blockX + 1, blockZ, cubeY);
+			addBlockColumn(cache, blockX, blockZ - 1, cubeY);
+			addBlockColumn(cache, blockX, blockZ + 1, cubeY);
+		}
+
+		private void addBlockColumn(ICubeCache cache, int blockX, int blockZ, int cubeY) {
+			int cubeIndex = addCubeAndNeighbors(cache, Coords.blockToCube(blockX), cubeY, Coords.blockToCube(blockZ));
+			if (cubeIndex < 0) {
+				return;
+			}
+
+			int localX = Coords.blockToLocal(blockX);
+			int localZ = Coords.blockToLocal(blockZ);
+			for (int localY = 0; localY < 16; localY++) {
+				addSeed(cubeIndex, Cube.getBlockIndex(localX, localY, localZ));
+			}
+		}
+
+		/**
+		 * Checks the light of one block.
+		 */
+		void addBlock(ICubeCache cache, int blockX, int blockY, int blockZ) {
+			int cubeIndex = addCubeAndNeighbors(cache, Coords.blockToCube(blockX), Coords.blockToCube(blockY),
+				Coords.blockToCube(blockZ));
+			if (cubeIndex < 0) {
+				return;
+			}
+			addSeed(cubeIndex, Cube.getBlockIndex(Coords.blockToLocal(blockX), Coords.blockToLocal(blockY),
+				Coords.blockToLocal(blockZ)));
+		}
+
+		private void addSeed(int cubeIndex, int blockIndex) {
+			// neighboring entries share most of their block columns, check each block once
+			CubeSnapshot cube = this.cubes.get(cubeIndex);
+			if (cube.isSeed[blockIndex]) {
+				return;
+			}
+			cube.isSeed[blockIndex] = true;
+			this.seeds.add(pack(cubeIndex, 0, blockIndex));
+		}
+
+		private int addCubeAndNeighbors(ICubeCache cache, int cubeX, int cubeY, int cubeZ) {
+			int cubeIndex = addCube(cache, cubeX, cubeY, cubeZ);
+			if (cubeIndex < 0) {
+				return -1;
+			}
+
+			// light changes reach at most 15 blocks, so they stay within the neighboring cubes
+			for (int x = cubeX - 1; x <= cubeX + 1; x++) {
+				for (int y = cubeY - 1; y <= cubeY + 1; y++) {
+					for (int z = cubeZ - 1; z <= cubeZ + 1; z++) {
+						addCube(cache, x, y, z);
+					}
+				}
+			}
+			return cubeIndex;
+		}
+
+		private int addCube(ICubeCache cache, int cubeX, int cubeY, int cubeZ) {
+			long address = AddressTools.getAddress(cubeX, cubeY, cubeZ);
+			Integer index = this.cubeIndices.get(address);
+			if (index != null) {
+				return index;
+			}
+			Column column = cache.getColumn(cubeX, cubeZ);
+			Cube cube = column == null || column instanceof BlankColumn ? null : column.getCube(cubeY);
+			if (cube == null) {
+				this.cubeIndices.put(address, -1);
+				return -1;
+			}
+			index = this.cubes.size();
+			this.cubes.add(new CubeSnapshot(cube, this.type));
+			this.cubeIndices.put(address, index);
+			return index;
+		}
+
+		@Override
+		public void run() {
+			linkNeighbors();
+
+			FastIntQueue lightToRemove = new FastIntQueue();
+			FastIntQueue lightToSpread = new FastIntQueue();
+
+			// fix the light of the seeds, like World.checkLightFor() does for one block
+			this.seeds.reset();
+			while (this.seeds.hasNext()) {
+				int seed = this.seeds.get();
+				int cubeIndex = unpackCubeIndex(seed);
+				int blockIndex = unpackBlockIndex(seed);
+				CubeSnapshot cube = this.cubes.get(cubeIndex);
+				int light = cube.light[blockIndex];
+				int rawLight = getRawLight(cubeIndex, blockIndex);
+				if (rawLight > light) {
+					cube.light[blockIndex] = (byte)rawLight;
+					lightToSpread.add(seed);
+				} else if (rawLight < light) {
+					cube.light[blockIndex] = cube.source[blockIndex];
+					lightToRemove.add(pack(cubeIndex, light, blockIndex));
+					if (cube.source[blockIndex] > 0) {
+						lightToSpread.add(seed);
+					}
+				}
+			}
+
+			// remove light that might have come from darkened blocks
+			while (lightToRemove.hasNext()) {
+				int packed = lightToRemove.get();
+				int cubeIndex = unpackCubeIndex(packed);
+				CubeSnapshot cube = this.cubes.get(cubeIndex);
+				int level = unpackLevel(packed);
+				int blockIndex = unpackBlockIndex(packed);
+				for (int direction = 0; direction < 6; direction++) {
+					int neighborCubeIndex = cube.getNeighborCubeIndex(cubeIndex, direction, blockIndex);
+					if (neighborCubeIndex < 0) {
+						continue;
+					}
+					CubeSnapshot neighborCube = this.cubes.get(neighborCubeIndex);
+					int neighborBlockIndex = getNeighborBlockIndex(direction, blockIndex);
+					int neighborLight = neighborCube.light[neighborBlockIndex];
+					if (neighborLight == 0) {
+						continue;
+					}
+					if (neighborLight < level) {
+						neighborCube.light[neighborBlockIndex] = neighborCube.source[neighborBlockIndex];
+						lightToRemove.add(pack(neighborCubeIndex, neighborLight, neighborBlockIndex));
+						if (neighborCube.source[neighborBlockIndex] > 0) {
+							// light sources keep their own light
+							lightToSpread.add(pack(neighborCubeIndex, 0, neighborBlockIndex));
+						}
+					} else {
+						// lit from somewhere else, let it light up the darkened blocks again
+						lightToSpread.add(pack(neighborCubeIndex, 0, neighborBlockIndex));
+					}
+				}
+			}
+
+			// spread light from brightened blocks and from the edges of the darkened ones
+			while (lightToSpread.hasNext()) {
+				int packed = lightToSpread.get();
+				int cubeIndex = unpackCubeIndex(packed);
+				CubeSnapshot cube = this.cubes.get(cubeIndex);
+				int blockIndex = unpackBlockIndex(packed);
+				int light = cube.light[blockIndex];
+				if (light <= 1) {
+					continue;
+				}
+				for (int direction = 0; direction < 6; direction++) {
+					int neighborCubeIndex = cube.getNeighborCubeIndex(cubeIndex, direction, blockIndex);
+					if (neighborCubeIndex < 0) {
+						continue;
+					}
+					CubeSnapshot neighborCube = this.cubes.get(neighborCubeIndex);
+					int neighborBlockIndex = getNeighborBlockIndex(direction, blockIndex);
+					int neighborLight = light - neighborCube.opacity[neighborBlockIndex];
+					if (neighborLight > neighborCube.light[neighborBlockIndex]) {
+						neighborCube.light[neighborBlockIndex] = (byte)neighborLight;
+						lightToSpread.add(pack(neighborCubeIndex, 0, neighborBlockIndex));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the new light into the cubes. Cubes where something else changed the light of a block the batch
+		 * changes too since the batch was created are left alone.
+		 *
+		 * @return the addresses of the cubes that were left alone. Use canReach() to find the entries that have to be
+		 * done again.
+		 */
+		Set<Long> apply(ICubeCache cache) {
+			Set<Long> conflictingCubes = Sets.newHashSet();
+			MutableBlockPos pos = new MutableBlockPos();
+			for (CubeSnapshot snapshot : this.cubes) {
+				Cube cube = cache.getCube(snapshot.cubeX, snapshot.cubeY, snapshot.cubeZ);
+				if (cube == null) {
+					// got unloaded in the meantime, it will be lit again when it's loaded
+					continue;
+				}
+				if (hasConflict(snapshot, cube, pos)) {
+					conflictingCubes.add(AddressTools.getAddress(snapshot.cubeX, snapshot.cubeY, snapshot.cubeZ));
+					continue;
+				}
+				boolean isChanged = false;
+				for (int blockIndex = 0; blockIndex < 4096; blockIndex++) {
+					int light = snapshot.light[blockIndex];
+					if (light == snapshot.oldLight[blockIndex]) {
+						continue;
+					}
+					setPos(pos, snapshot, blockIndex);
+					cube.setLightValue(this.type, pos, light);
+					isChanged = true;
+				}
+				if (isChanged) {
+					cube.getColumn().setModified(true);
+				}
+			}
+			return conflictingCubes;
+		}
+
+		private boolean hasConflict(CubeSnapshot snapshot, Cube cube, MutableBlockPos pos) {
+			for (int blockIndex = 0; blockIndex < 4096; blockIndex++) {
+				int oldLight = snapshot.oldLight[blockIndex];
+				if (snapshot.light[blockIndex] == oldLight) {
+					continue;
+				}
+				setPos(pos, snapshot, blockIndex);
+				if (cube.getLightValue(this.type, pos) != oldLight) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static void setPos(MutableBlockPos pos, CubeSnapshot snapshot, int blockIndex) {
+			pos.x = Coords.localToBlock(snapshot.cubeX, blockIndex & 0xF);
+			pos.y = Coords.localToBlock(snapshot.cubeY, blockIndex >> 8);
+			pos.z = Coords.localToBlock(snapshot.cubeZ, (blockIndex >> 4) & 0xF);
+		}
+
+		/**
+		 * Returns true if light changes from the given block range can reach any of the given cubes. Entries whose
+		 * blocks can reach a cube apply() left alone have to be done again.
+		 */
+		static boolean canReach(Set<Long> cubeAddresses, int minBlockX, int minBlockY, int minBlockZ,
+				int maxBlockX, int maxBlockY, int maxBlockZ) {
+			if (cubeAddresses.isEmpty()) {
+				return false;
+			}
+			// light changes reach at most 15 blocks, so they stay within the neighboring cubes
+			for (int cubeX = Coords.blockToCube(minBlockX) - 1; cubeX <= Coords.blockToCube(maxBlockX) + 1; cubeX++) {
+				for (int cubeY = Coords.blockToCube(minBlockY) - 1; cubeY <= Coords.blockToCube(maxBlockY) + 1; cubeY++) {
+					for (int cubeZ = Coords.blockToCube(minBlockZ) - 1; cubeZ <= Coords.blockToCube(maxBlockZ) + 1; cubeZ++) {
+						if (cubeAddresses.contains(AddressTools.getAddress(cubeX, cubeY, cubeZ))) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		private void linkNeighbors() {
+			for (CubeSnapshot cube : this.cubes) {
+				for (int direction = 0; direction < 6; direction++) {
+					Integer index = this.cubeIndices.get(AddressTools.getAddress(
+						cube.cubeX + NeighborX[direction], cube.cubeY + NeighborY[direction], cube.cubeZ + NeighborZ[direction]));
+					cube.neighbors[direction] = index == null ? -1 : index;
+				}
+			}
+		}
+
+		private int getRawLight(int cubeIndex, int blockIndex) {
+			CubeSnapshot cube = this.cubes.get(cubeIndex);
+			int light = cube.source[blockIndex];
+			if (light == MaxLight) {
+				return MaxLight;
+			}
+			int opacity = cube.opacity[blockIndex];
+			if (opacity >= MaxLight) {
+				return light;
+			}
+			for (int direction = 0; direction < 6; direction++) {
+				int neighborCubeIndex = cube.getNeighborCubeIndex(cubeIndex, direction, blockIndex);
+				if (neighborCubeIndex < 0) {
+					continue;
+				}
+				int neighborLight = this.cubes.get(neighborCubeIndex).light[getNeighborBlockIndex(direction, blockIndex)];
+				light = Math.max(light, neighborLight - opacity);
+			}
+			return light;
+		}
+	}
+
+	private static int getNeighborBlockIndex(int direction, int blockIndex) {
+		// wraps around into the neighboring cube
+		switch (direction) {
+			case 0:
+				return (blockIndex & ~0xF) | ((blockIndex - 1) & 0xF);
+			case 1:
+				return (blockIndex & ~0xF) | ((blockIndex + 1) & 0xF);
+			case 2:
+				return (blockIndex - 0x100) & 0xFFF;
+			case 3:
+				return (blockIndex + 0x100) & 0xFFF;
+			case 4:
+				return (blockIndex & ~0xF0) | ((blockIndex - 0x10) & 0xF0);
+			default:
+				return (blockIndex & ~0xF0) | ((blockIndex + 0x10) & 0xF0);
+		}
+	}
+
+	private static class CubeSnapshot {
+
+		public final int cubeX;
+		public final int cubeY;
+		public final int cubeZ;
+		// light the block gets without any neighbors: sky exposure or emitted block light
+		public final byte[] source;
+		// opacity as World.getRawLight() sees it, from 1 to 15
+		public final byte[] opacity;
+		public final byte[] light;
+		public final byte[] oldLight;
+		public final boolean[] isSeed;
+		public final int[] neighbors;
+
+		public CubeSnapshot(Cube cube, EnumSkyBlock type) {
+			this.cubeX = cube.getX();
+			this.cubeY = cube.getY();
+			this.cubeZ = cube.getZ();
+			this.source = new byte[4096];
+			this.opacity = new byte[4096];
+			this.light = new byte[4096];
+			this.isSeed = new boolean[4096];
+			this.neighbors = new int[6];
+
+			// lowest block y that can see the sky for each block column, in x + z*16 order
+			int[] skylightBlockYs = null;
+			if (type == EnumSkyBlock.SKY) {
+				Column column = cube.getColumn();
+				skylightBlockYs = new int[256];
+				for (int localZ = 0; localZ < 16; localZ++) {
+					for (int localX = 0; localX < 16; localX++) {
+						Integer skylightBlockY = column.getSkylightBlockY(localX, localZ);
+						skylightBlockYs[localZ << 4 | localX] = skylightBlockY == null ? Integer.MIN_VALUE : skylightBlockY;
+					}
+				}
+			}
+
+			ExtendedBlockStorage storage = cube.getStorage();
+			MutableBlockPos pos = new MutableBlockPos();
+			for (int blockIndex = 0; blockIndex < 4096; blockIndex++) {
+				int localX = blockIndex & 0xF;
+				int localY = blockIndex >> 8;
+				int localZ = (blockIndex >> 4) & 0xF;
+				Block block;
+				if (storage == null) {
+					// empty cubes only have air, and their light isn't stored
+					block = Blocks.air;
+					pos.x = Coords.localToBlock(this.cubeX, localX);
+					pos.y = Coords.localToBlock(this.cubeY, localY);
+					pos.z = Coords.localToBlock(this.cubeZ, localZ);
+					this.light[blockIndex] = (byte)cube.getLightValue(type, pos);
+				} else {
+					block = storage.get(localX, localY, localZ).getBlock();
+					this.light[blockIndex] = (byte)(type == EnumSkyBlock.SKY ?
+						storage.getExtSkylightValue(localX, localY, localZ) :
+						storage.getExtBlocklightValue(localX, localY, localZ));
+				}
+				this.opacity[blockIndex] = (byte)getOpacity(block);
+				if (type == EnumSkyBlock.SKY) {
+					int blockY = Coords.localToBlock(this.cubeY, localY);
+					this.source[blockIndex] = (byte)(blockY >= skylightBlockYs[localZ << 4 | localX] ? MaxLight : 0);
+				} else {
+					this.source[blockIndex] = (byte)block.getLightValue();
+				}
+			}
+			this.oldLight = this.light.clone();
+		}
+
+		/**
+		 * Returns the index of the cube the neighboring block is in, -1 if that cube isn't in the batch.
+		 */
+		public int getNeighborCubeIndex(int cubeIndex, int direction, int blockIndex) {
+			boolean isInside;
+			switch (direction) {
+				case 0:
+					isInside = (blockIndex & 0xF) != 0;
+					break;
+				case 1:
+					isInside = (blockIndex & 0xF) != 0xF;
+					break;
+				case 2:
+					isInside = (blockIndex >> 8) != 0;
+					break;
+				case 3:
+					isInside = (blockIndex >> 8) != 0xF;
+					break;
+				case 4:
+					isInside = (blockIndex & 0xF0) != 0;
+					break;
+				default:
+					isInside = (blockIndex & 0xF0) != 0xF0;
+					break;
+			}
+			return isInside ? cubeIndex : this.neighbors[direction];
+		}
+
+		private static int getOpacity(Block block) {
+			int opacity = block.getLightOpacity();
+			if (opacity >= MaxLight && block.getLightValue() > 0) {
+				opacity = 1;
+			}
+			return Math.max(1, Math.min(MaxLight, opacity));
+		}
+	}
+}
@@ -23,10 +23,11 @@
  */
 package cubicchunks.lighting;
 
-import cubicchunks.CubicChunks;
 import cubicchunks.util.Coords;
 import cubicchunks.world.ICubeCache;
 import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 
 import java.util.Set;
@@ -39,22 +40,32 @@ public class LightingManager {
 
 	private SkyLightUpdateProcessor skylightUpdateProcessor;
 	private SkyLightCubeDiffuseProcessor skylightCubeDiffuseProcessor;
+	private BlockLightProcessor blockLightProcessor;
 
 	private FirstLightProcessor firstLightProcessor;
 
 	private SkyLightUpdateCalculator skylightUpdateCalculator;
 	private SkyLightCubeDiffuseCalculator skylightCubeDiffuseCalculator;
 
+	private LightingStats stats;
+
 	public LightingManager(World world, ICubeCache provider) {
 		this.world = world;
 		
 		this.skylightCubeDiffuseProcessor = new SkyLightCubeDiffuseProcessor(this ,"Sky Light Diffuse", provider, 50);
 		this.skylightUpdateProcessor = new SkyLightUpdateProcessor(this, "Sky Light Update", provider, 10);
+		this.blockLightProcessor = new BlockLightProcessor("Block Light", provider, 50);
 
 		this.firstLightProcessor = new FirstLightProcessor("First Light", provider, 1);
 
-		this.skylightCubeDiffuseCalculator = new SkyLightCubeDiffuseCalculator();
+		this.skylightCubeDiffuseCalculator = new SkyLightCubeDiffuseCalculator(provider);
 		this.skylightUpdateCalculator = new SkyLightUpdateCalculator();
+
+		this.stats = new LightingStats((world.isRemote ? "CLIENT" : "SERVER") + " DIM" + world.provider.getDimensionId());
+		this.stats.addProcessor(this.skylightCubeDiffuseProcessor);
+		this.stats.addProcessor(this.firstLightProcessor);
+		this.stats.addProcessor(this.skylightUpdateProcessor);
+		this.stats.addProcessor(this.blockLightProcessor);
 	}
 
 	public void columnSkylightUpdate(UpdateType type, Column column, int localX, int maxY, int localZ) {
@@ -83,26 +94,24 @@ public class LightingManager {
 	}
 	
 	public void tick() {
-		long timeStart = System.currentTimeMillis();
-		long timeStop = timeStart + TickBudget;
+		long timeStart = System.nanoTime();
+		long timeStop = System.currentTimeMillis() + TickBudget;
 		
 		// process the queues
-		int numProcessed = 0;
 		//this.world.profiler.addSection("skyLightOcclusion");
-		numProcessed += this.skylightCubeDiffuseProcessor.processQueueUntil(timeStop);
+		this.stats.processQueueUntil(this.skylightCubeDiffuseProcessor, timeStop);
 		//this.world.profiler.startSection("firstLight");
-		numProcessed += this.firstLightProcessor.processQueueUntil(timeStop);
+		this.stats.processQueueUntil(this.firstLightProcessor, timeStop);
 		//this.world.profiler.endSection();
-		numProcessed += this.skylightUpdateProcessor.processQueueUntil(timeStop);
-
-		// reporting
-		long timeDiff = System.currentTimeMillis() - timeStart;
-		if (numProcessed > 0) {
-			CubicChunks.LOGGER.info(String.format("%s Lighting manager processed %d calculations in %d ms.", this.world.isRemote ? "CLIENT" : "SERVER", numProcessed, timeDiff));
-			CubicChunks.LOGGER.info(this.skylightCubeDiffuseProcessor.getProcessingReport());
-			CubicChunks.LOGGER.info(this.firstLightProcessor.getProcessingReport());
-			CubicChunks.LOGGER.info(this.skylightUpdateProcessor.getProcessingReport());
-		}
+		this.stats.processQueueUntil(this.skylightUpdateProcessor, timeStop);
+		this.stats.processQueueUntil(this.blockLightProcessor, timeStop);
+
+		// reporting, only logs every now and then
+		this.stats.tick(System.nanoTime() - timeStart);
+	}
+
+	public LightingStats getStats() {
+		return this.stats;
 	}
 
 	SkyLightUpdateCalculator getSkylightUpdateCalculator() {
@@ -121,6 +130,32 @@ public class LightingManager {
 		this.firstLightProcessor.add(cubeAddress);
 	}
 
+	/**
+	 * Queues a sky light update of some x/z columns of a cube, for when the column changed while the cube was unloaded.
+	 * @param blockColumns which x/z columns to update, in z*16 + x order
+	 */
+	public void queueBlockColumnRelight(Cube cube, boolean[] blockColumns) {
+		// diffuse the columns of this cube directly. Going through the column update would skip cubes far below the
+		// top block whose top is dark, and those are exactly the cubes that were unloaded while the column changed
+		for (int localZ = 0; localZ < 16; localZ++) {
+			for (int localX = 0; localX < 16; localX++) {
+				if (blockColumns[localZ << 4 | localX]) {
+					int blockX = Coords.localToBlock(cube.getX(), localX);
+					int blockZ = Coords.localToBlock(cube.getZ(), localZ);
+					this.skylightCubeDiffuseProcessor.add(new SkyLightCubeDiffuseProcessor.Entry(blockX, blockZ, cube.getY()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues a block light update around the block, for when a light source or the opacity of the block changed.
+	 */
+	public void queueBlockLightUpdate(BlockPos pos) {
+		// the position might be mutable
+		this.blockLightProcessor.add(new BlockPos(pos.getX(), pos.getY(), pos.getZ()));
+	}
+
 	public enum UpdateType {
 		IMMEDIATE, IMMEDIATE_UPDATE_QUEUED_DIFFUSE, QUEUED
 	}
@@ -0,0 +1,202 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.lighting;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import cubicchunks.CubicChunks;
+import cubicchunks.perf.LatencyHistogram;
+import cubicchunks.util.processor.ProcessorStats;
+import cubicchunks.util.processor.QueueProcessor;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timings of the lighting processors of one world. They are always kept, reading them is what costs.
+ * <p>
+ * A summary is logged every 300 seconds, which can be changed with -Dcubicchunks.lightingStats.interval (in seconds, 0
+ * to never log it). The stats of all worlds can be shown in game or appended to lighting-stats.txt with the lightstats
+ * command. The file can be changed with -Dcubicchunks.lightingStats.file.
+ */
+public class LightingStats {
+
+	private static final long LogIntervalMs = Long.getLong("cubicchunks.lightingStats.interval", 300) * 1000;
+	private static final String DumpFile = System.getProperty("cubicchunks.lightingStats.file", "lighting-stats.txt");
+
+	// the stats of all loaded worlds, they go away with their lighting manager
+	private static final Map<LightingStats, Boolean> AllStats = Collections.synchronizedMap(new WeakHashMap<LightingStats, Boolean>());
+
+	private static class ProcessorCounters {
+
+		public final QueueProcessor<?> processor;
+		// collects the defer reasons the processors give
+		public final ProcessorStats processorStats;
+		public final AtomicLong numProcessed;
+		public final AtomicLong numDeferred;
+		public final AtomicLong maxQueueDepth;
+		public final LatencyHistogram timePerTick;
+
+		public ProcessorCounters(QueueProcessor<?> processor) {
+			this.processor = processor;
+			this.processorStats = new ProcessorStats();
+			this.numProcessed = new AtomicLong();
+			this.numDeferred = new AtomicLong();
+			this.maxQueueDepth = new AtomicLong();
+			this.timePerTick = new LatencyHistogram();
+		}
+	}
+
+	private final String name;
+	private final Map<QueueProcessor<?>, ProcessorCounters> processors;
+	private final LatencyHistogram tickTime;
+	// sky light updates queued, and how many of them were merged into an entry of the same block column
+	private final AtomicLong numSkylightUpdates;
+	private final AtomicLong numMergedSkylightUpdates;
+	private long timeLastLog;
+
+	LightingStats(String name) {
+		this.name = name;
+		this.processors = Maps.newLinkedHashMap();
+		this.tickTime = new LatencyHistogram();
+		this.numSkylightUpdates = new AtomicLong();
+		this.numMergedSkylightUpdates = new AtomicLong();
+		this.timeLastLog = System.currentTimeMillis();
+		AllStats.put(this, Boolean.TRUE);
+	}
+
+	void addProcessor(QueueProcessor<?> processor) {
+		ProcessorCounters counters = new ProcessorCounters(processor);
+		processor.setStats(counters.processorStats);
+		this.processors.put(processor, counters);
+	}
+
+	/**
+	 * Runs the processor's queue and counts what happened.
+	 */
+	int processQueueUntil(QueueProcessor<?> processor, long timeStop) {
+		ProcessorCounters counters = this.processors.get(processor);
+		long timeStart = System.nanoTime();
+		int numProcessed = processor.processQueueUntil(timeStop);
+		counters.timePerTick.record(System.nanoTime() - timeStart);
+		counters.numProcessed.addAndGet(numProcessed);
+		counters.numDeferred.addAndGet(processor.getNumDeferred());
+		long queueDepth = processor.getNumInQueue();
+		if (queueDepth > counters.maxQueueDepth.get()) {
+			counters.maxQueueDepth.set(queueDepth);
+		}
+		return numProcessed;
+	}
+
+	void skylightUpdateQueued(boolean merged) {
+		this.numSkylightUpdates.incrementAndGet();
+		if (merged) {
+			this.numMergedSkylightUpdates.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records how long the lighting tick took, and logs the summary when it's time to.
+	 */
+	void tick(long nanos) {
+		this.tickTime.record(nanos);
+
+		long now = System.currentTimeMillis();
+		if (LogIntervalMs <= 0 || now - this.timeLastLog < LogIntervalMs) {
+			return;
+		}
+		this.timeLastLog = now;
+		CubicChunks.LOGGER.info(getReport());
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns one line for the whole tick, one for each processor and one for how well sky light updates were merged.
+	 * The lines after the first start with a tab.
+	 */
+	public List<String> getSummary() {
+		List<String> lines = Lists.newArrayList();
+		lines.add(String.format("Lighting %s: tick %s", this.name, this.tickTime));
+		for (ProcessorCounters counters : this.processors.values()) {
+			lines.add(String.format("\t%s: %d queued (max %d), %d processed, %d deferred, per tick %s",
+				counters.processor.getName(), counters.processor.getNumInQueue(), counters.maxQueueDepth.get(),
+				counters.numProcessed.get(), counters.numDeferred.get(), counters.timePerTick));
+		}
+		long numUpdates = this.numSkylightUpdates.get();
+		long numEntries = numUpdates - this.numMergedSkylightUpdates.get();
+		lines.add(String.format("\tSky light updates: %d merged into %d entries (%.2f per entry)",
+			numUpdates, numEntries, numEntries == 0 ? 0.0 : (double)numUpdates/numEntries));
+		return lines;
+	}
+
+	/**
+	 * Returns the summary and why entries were deferred.
+	 */
+	public String getReport() {
+		StringBuilder buf = new StringBuilder();
+		for (String line : getSummary()) {
+			buf.append(line).append(String.format("%n"));
+		}
+		for (ProcessorCounters counters : this.processors.values()) {
+			for (Map.Entry<String, Long> entry : counters.processorStats.getDeferReasons().entrySet()) {
+				buf.append(String.format("\t%s deferred, %s: %d%n", counters.processor.getName(), entry.getKey(), entry.getValue()));
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the stats of all worlds that are loaded.
+	 */
+	public static List<LightingStats> getAll() {
+		synchronized (AllStats) {
+			return Lists.newArrayList(AllStats.keySet());
+		}
+	}
+
+	/**
+	 * Appends the reports of all worlds to the dump file.
+	 * @return the file
+	 */
+	public static File dumpAll() throws IOException {
+		File file = new File(DumpFile);
+		try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+			out.println(String.format("Lighting stats at %tF %<tT", System.currentTimeMillis()));
+			for (LightingStats stats : getAll()) {
+				out.print(stats.getReport());
+			}
+		}
+		return file;
+	}
+}
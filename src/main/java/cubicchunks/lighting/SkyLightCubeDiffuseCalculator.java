@@ -24,55 +24,39 @@
 package cubicchunks.lighting;
 
 import cubicchunks.util.Coords;
-import cubicchunks.util.MutableBlockPos;
+import cubicchunks.world.ICubeCache;
 import cubicchunks.world.column.BlankColumn;
 import cubicchunks.world.column.Column;
 import net.minecraft.world.EnumSkyBlock;
-import net.minecraft.world.World;
 
 class SkyLightCubeDiffuseCalculator {
 
-	private final MutableBlockPos pos = new MutableBlockPos();
+	private final ICubeCache cache;
+
+	SkyLightCubeDiffuseCalculator(ICubeCache cache) {
+		this.cache = cache;
+	}
 
 	boolean calculate(Column column, int localX, int localZ, int cubeY) {
 		if(column instanceof BlankColumn || column.getCube(cubeY) == null) {
 			return true;
 		}
+		if (column.getWorld().provider.getHasNoSky()) {
+			return true;
+		}
+
 		// update this block and its xz neighbors
 		int blockX = Coords.localToBlock(column.xPosition, localX);
 		int blockZ = Coords.localToBlock(column.zPosition, localZ);
 
-		World world = column.getWorld();
-
-		int minY = Coords.cubeToMinBlock(cubeY);
-		int maxY = Coords.cubeToMaxBlock(cubeY);
-		pos.setBlockPos(blockX, minY, blockZ);
-		if(!world.isAreaLoaded(pos, 18, false)) {
-			return false;
-		}
-		pos.y = maxY;
-		if(!world.isAreaLoaded(pos, 18, false)) {
-			return false;
-		}
-
-		boolean updated = true;
-		updated &= diffuseSkyLightForBlockColumn(world, blockX - 1, blockZ, cubeY);
-		updated &= diffuseSkyLightForBlockColumn(world, blockX + 1, blockZ, cubeY);
-		updated &= diffuseSkyLightForBlockColumn(world, blockX, blockZ - 1, cubeY);
-		updated &= diffuseSkyLightForBlockColumn(world, blockX, blockZ + 1, cubeY);
-		updated &= diffuseSkyLightForBlockColumn(world, blockX, blockZ, cubeY);
+		LightEngine.Batch batch = new LightEngine.Batch(EnumSkyBlock.SKY);
+		batch.addBlockColumns(this.cache, blockX, blockZ, cubeY);
+		batch.run();
+		// nothing else can change the light while the batch runs on this thread
+		boolean updated = batch.apply(this.cache).isEmpty();
 
 		assert updated;
 		column.setModified(true);
 		return true;
 	}
-
-	private boolean diffuseSkyLightForBlockColumn(World world, int blockX, int blockZ, int cubeY) {
-		boolean ok = true;
-		for (int y = 0; y < 16; y++) {
-			pos.setBlockPos(blockX, y + cubeY * 16, blockZ);
-			ok &= world.checkLightFor(EnumSkyBlock.SKY, pos);
-		}
-		return ok;
-	}
 }
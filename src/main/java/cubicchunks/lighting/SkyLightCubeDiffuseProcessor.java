@@ -23,60 +23,47 @@
  */
 package cubicchunks.lighting;
 
+import cubicchunks.util.AddressTools;
 import cubicchunks.util.Coords;
-import cubicchunks.util.Progress;
-import cubicchunks.util.processor.QueueProcessor;
 import cubicchunks.world.ICubeCache;
-import cubicchunks.world.column.BlankColumn;
 import cubicchunks.world.column.Column;
+import net.minecraft.world.EnumSkyBlock;
 
-class SkyLightCubeDiffuseProcessor extends QueueProcessor<SkyLightCubeDiffuseProcessor.Entry> {
+import java.util.Set;
 
+/**
+ * Diffuses sky light on a separate thread. Each entry checks the sky light of a block column in a cube and the four
+ * block columns next to it.
+ */
+class SkyLightCubeDiffuseProcessor extends LightBatchProcessor<SkyLightCubeDiffuseProcessor.Entry> {
 
 	private LightingManager lightingManager;
 
 	public SkyLightCubeDiffuseProcessor(LightingManager lightingManager, String name, ICubeCache provider, int batchSize) {
-		super(name, provider, batchSize);
+		super(name, provider, batchSize, EnumSkyBlock.SKY);
 		this.lightingManager = lightingManager;
 	}
 
 	@Override
-	public void processBatch(Progress progress) {
-		SkyLightCubeDiffuseCalculator skylightCubeDiffuseCalculator = lightingManager.getSkylightCubeDiffuseCalculator();
-		for (Entry e : incomingAddresses) {
-			int columnX = Coords.blockToCube(e.blockX);
-			int columnZ = Coords.blockToCube(e.blockZ);
-
-			Column column = cache.getColumn(columnX, columnZ);
-			if(empty(column)) {
-				continue;
-			}
-			if(column.getCube(e.cubeY) == null) {
-				continue;
-			}
-			if (empty(cache.getColumn(columnX + 1, columnZ)) ||
-					empty(cache.getColumn(columnX - 1, columnZ)) ||
-					empty(cache.getColumn(columnX, columnZ + 1)) ||
-					empty(cache.getColumn(columnX, columnZ - 1)) ||
-					empty(cache.getColumn(columnX + 1, columnZ + 1)) ||
-					empty(cache.getColumn(columnX + 1, columnZ - 1)) ||
-					empty(cache.getColumn(columnX - 1, columnZ + 1)) ||
-					empty(cache.getColumn(columnX - 1, columnZ - 1))) {
-				deferredAddresses.add(e);
-				continue;
-			}
-
-
-			int localX = Coords.blockToLocal(e.blockX);
-			int localZ = Coords.blockToLocal(e.blockZ);
-
-			boolean updated = skylightCubeDiffuseCalculator.calculate(column, localX, localZ, e.cubeY);
-			(updated ? processedAddresses : deferredAddresses).add(e);
-		}
+	protected long getCubeAddress(Entry e) {
+		return AddressTools.getAddress(Coords.blockToCube(e.blockX), e.cubeY, Coords.blockToCube(e.blockZ));
+	}
+
+	@Override
+	protected boolean isNothingToDo(Column column, Entry e) {
+		return column.getWorld().provider.getHasNoSky();
 	}
 
-	private boolean empty(Column column) {
-		return column == null || column instanceof BlankColumn;
+	@Override
+	protected void addToBatch(LightEngine.Batch batch, Entry e) {
+		batch.addBlockColumns(this.cache, e.blockX, e.blockZ, e.cubeY);
+	}
+
+	@Override
+	protected boolean canReach(Set<Long> cubeAddresses, Entry e) {
+		int minBlockY = Coords.cubeToMinBlock(e.cubeY);
+		return LightEngine.Batch.canReach(cubeAddresses, e.blockX - 1, minBlockY, e.blockZ - 1,
+			e.blockX + 1, minBlockY + 15, e.blockZ + 1);
 	}
 
 	public static class Entry {
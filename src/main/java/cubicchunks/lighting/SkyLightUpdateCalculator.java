@@ -25,6 +25,7 @@ package cubicchunks.lighting;
 
 import cubicchunks.util.Coords;
 import cubicchunks.util.MutableBlockPos;
+import cubicchunks.world.IOpacityIndex;
 import cubicchunks.world.column.Column;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.world.EnumSkyBlock;
@@ -85,32 +86,28 @@ class SkyLightUpdateCalculator {
 				}
 				cubesToDiffuse.add(cube.getY());
 			} else if(/*cubeY == maxCubeY - 1 || */cubeY == maxCubeY) {
-				//we actually also attempt to update cube at maxCubeY - 1 here
+				//we actually also attempt to update cube at maxCubeY - 1 here, light can propagate to it too
+				Cube cubeBelow = column.getCube(maxCubeY - 1);
+				int minSegmentBlockY = Coords.cubeToMinBlock(cubeBelow == null ? maxCubeY : maxCubeY - 1);
 				int light = 15, maxOpacity = 0;
 
-				//TODO: remove code duplication here
-				for(int y = 15; y >=0; y--) {
-					blockPos.setBlockPos(localX, y, localZ);
-					maxOpacity = Math.max(maxOpacity, cube.getBlockAt(blockPos).getLightOpacity());
-					light -= maxOpacity;
-					if(light < 0) light = 0;
-
-					cube.setLightValue(EnumSkyBlock.SKY, blockPos, light);
-				}
-
-				cubesToDiffuse.add(cube.getY());
-
-				//light can propagate to cube below too
-				if((cube = column.getCube(maxCubeY - 1)) != null) {
-					for(int y = 15; y >=0; y--) {
-						blockPos.setBlockPos(localX, y, localZ);
-						maxOpacity = Math.max(maxOpacity, cube.getBlockAt(blockPos).getLightOpacity());
+				//walk down the runs of blocks with the same opacity
+				IOpacityIndex.SegmentIterator segments = column.getOpacityIndex().getSegments(
+					localX, localZ, minSegmentBlockY, Coords.cubeToMaxBlock(maxCubeY));
+				while(segments.next()) {
+					maxOpacity = Math.max(maxOpacity, segments.getOpacity());
+					for(int y = segments.getMaxBlockY(); y >= segments.getMinBlockY(); y--) {
 						light -= maxOpacity;
 						if(light < 0) light = 0;
 
-						cube.setLightValue(EnumSkyBlock.SKY, blockPos, light);
+						blockPos.setBlockPos(localX, y, localZ);
+						(y >= minCubeBlockY ? cube : cubeBelow).setLightValue(EnumSkyBlock.SKY, blockPos, light);
 					}
-					cubesToDiffuse.add(cube.getY());
+				}
+
+				cubesToDiffuse.add(cube.getY());
+				if(cubeBelow != null) {
+					cubesToDiffuse.add(cubeBelow.getY());
 				}
 			} else if(cubeY == maxCubeY - 1) {
 				//it's done in code above
@@ -23,6 +23,7 @@
  */
 package cubicchunks.lighting;
 
+import com.google.common.collect.Maps;
 import cubicchunks.util.Coords;
 import cubicchunks.util.Progress;
 import cubicchunks.util.processor.QueueProcessor;
@@ -30,19 +31,51 @@ import cubicchunks.world.ICubeCache;
 import cubicchunks.world.column.BlankColumn;
 import cubicchunks.world.column.Column;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Updates the sky light of block columns after their opacity changed. Updates for a block column that is already
+ * queued are merged into the queued entry, so digging or building up a column only calculates it once.
+ */
 /*package-protected*/ class SkyLightUpdateProcessor extends QueueProcessor<SkyLightUpdateProcessor.Entry> {
 	private final LightingManager lightingManager;
+	// the queued entry for each block column, entries only compare their block column
+	private final Map<Entry, Entry> queuedEntries;
 
 	SkyLightUpdateProcessor(LightingManager lightingManager, String name, ICubeCache provider, int batchSize) {
 		super(name, provider, batchSize);
 		this.lightingManager = lightingManager;
+		this.queuedEntries = Maps.newHashMap();
+	}
+
+	@Override
+	public void add(Entry entry) {
+		Entry queuedEntry = this.queuedEntries.get(entry);
+		this.lightingManager.getStats().skylightUpdateQueued(queuedEntry != null);
+		if (queuedEntry != null) {
+			queuedEntry.merge(entry);
+			return;
+		}
+		this.queuedEntries.put(entry, entry);
+		super.add(entry);
+	}
+
+	@Override
+	public void addAll(Collection<Entry> entries) {
+		for (Entry entry : entries) {
+			add(entry);
+		}
 	}
 
 	@Override
 	public void processBatch(Progress progress) {
 		SkyLightUpdateCalculator skylightUpdateCalculator = lightingManager.getSkylightUpdateCalculator();
+		for(Entry entry : incomingAddresses) {
+			// later updates of this block column get queued again
+			this.queuedEntries.remove(entry);
+		}
 		for(Entry entry : incomingAddresses) {
 			Column column = cache.getColumn(entry.blockX >> 4, entry.blockZ >> 4);
 			if(column == null || column instanceof BlankColumn) {
@@ -61,7 +94,7 @@ import java.util.Set;
 
 	static final class Entry {
 		private final int blockX, blockZ;
-		private final int minY, startY;
+		private int minY, startY;
 
 		public Entry(int blockX, int blockZ, int minY, int startY) {
 			this.blockX = blockX;
@@ -70,6 +103,16 @@ import java.util.Set;
 			this.startY = startY;
 		}
 
+		/**
+		 * Widens the y range of this entry so it also covers the other entry of the same block column.
+		 */
+		void merge(Entry other) {
+			assert this.equals(other);
+			this.minY = Math.min(this.minY, other.minY);
+			this.startY = Math.max(this.startY, other.startY);
+		}
+
+		// the y range isn't compared, there is at most one entry per block column in the queue
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) return true;
@@ -78,9 +121,7 @@ import java.util.Set;
 			Entry entry = (Entry) o;
 
 			if (blockX != entry.blockX) return false;
-			if (blockZ != entry.blockZ) return false;
-			if (minY != entry.minY) return false;
-			return startY == entry.startY;
+			return blockZ == entry.blockZ;
 
 		}
 
@@ -88,8 +129,6 @@ import java.util.Set;
 		public int hashCode() {
 			int result = blockX;
 			result = 31 * result + blockZ;
-			result = 31 * result + minY;
-			result = 31 * result + startY;
 			return result;
 		}
 	}
@@ -126,6 +126,11 @@ public class ClientHandler implements INetHandler {
 				}
 			}
 		}
+		
+		// servers that send compressed cubes pace them by how fast we get through them
+		if (packet instanceof PacketCompressedCubeData) {
+			PacketDispatcher.sendToServer(new PacketCubesReceived(packet.getSize()));
+		}
 	}
 	
 	public void handle(final PacketUnloadCubes packet) {
@@ -269,4 +274,50 @@ public class ClientHandler implements INetHandler {
 			blockEntity.updateContainingBlockInfo();
 		}	
 	}
+	
+	public void handle(final PacketHeightmapUpdate packet) {
+
+		IThreadListener taskQueue = Minecraft.getMinecraft();
+		if (!taskQueue.isCallingFromMinecraftThread()) {
+			taskQueue.addScheduledTask(new Runnable() {
+				@Override
+				public void run() {
+					handle(packet);
+				}
+			});
+			return;
+		}
+		
+		WorldClient worldClient = Minecraft.getMinecraft().theWorld;
+		WorldClientContext context = WorldClientContext.get(worldClient);
+		ClientCubeCache cubeCache = context.getCubeCache();
+		
+		// get the column
+		int cubeX = AddressTools.getX(packet.columnAddress);
+		int cubeZ = AddressTools.getZ(packet.columnAddress);
+		Column column = cubeCache.getColumn(cubeX, cubeZ);
+		if (column instanceof BlankColumn) {
+			CubicChunks.LOGGER.error("Ignored heightmap update to blank column ({},{})", cubeX, cubeZ);
+			return;
+		}
+		
+		ClientOpacityIndex index = (ClientOpacityIndex) column.getOpacityIndex();
+		LightingManager lm = context.getLightingManager();
+		for (int i = 0; i < packet.xzIndices.length; i++) {
+			int x = packet.xzIndices[i] & 0xF;
+			int z = packet.xzIndices[i] >> 4;
+			int height = packet.topBlockYs[i];
+			
+			Integer oldHeight = index.getTopBlockY(x, z);
+			index.setHeight(x, z, height);
+			index.setBottomBlockY(x, z, packet.bottomBlockYs[i]);
+			if (oldHeight == null || height == Integer.MIN_VALUE || oldHeight == height) {
+				continue;
+			}
+			
+			int minY = Math.min(oldHeight, height);
+			int maxY = Math.max(oldHeight, height);
+			lm.columnSkylightUpdate(LightingManager.UpdateType.IMMEDIATE, column, x, minY, maxY, z);
+		}
+	}
 }
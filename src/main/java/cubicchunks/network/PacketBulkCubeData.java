@@ -32,6 +32,9 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 import java.io.*;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 public class PacketBulkCubeData implements IMessage {
@@ -39,12 +42,21 @@ public class PacketBulkCubeData implements IMessage {
 	public long[] columnAddresses;
 	public long[] cubeAddresses;
 	public byte[] data;
+	protected int encoding;
 	private DataInputStream m_in;
 
 	//this constructor must be there to instantiate packet via reflection
-	public PacketBulkCubeData() {}
+	public PacketBulkCubeData() {
+		this.encoding = WorldEncoder.RawEncoding;
+	}
 	
 	public PacketBulkCubeData(List<Column> columns, List<Cube> cubes) {
+		this(columns, cubes, WorldEncoder.RawEncoding);
+	}
+	
+	protected PacketBulkCubeData(List<Column> columns, List<Cube> cubes, int encoding) {
+		
+		this.encoding = encoding;
 		
 		if (columns.size() > 255) {
 			throw new IllegalArgumentException("Don't send more than 255 columns at a time!");
@@ -67,12 +79,27 @@ public class PacketBulkCubeData implements IMessage {
 			
 			// encode the cubes and columns
 			ByteArrayOutputStream buf = new ByteArrayOutputStream();
-			try (DataOutputStream out = new DataOutputStream(buf)) {
-				for (Column column : columns) {
-					WorldEncoder.encodeColumn(out, column);
+			if (encoding == WorldEncoder.RawEncoding) {
+				try (DataOutputStream out = new DataOutputStream(buf)) {
+					for (Column column : columns) {
+						WorldEncoder.encodeColumn(out, column);
+					}
+					for (Cube cube : cubes) {
+						WorldEncoder.encodeCube(out, cube);
+					}
 				}
-				for (Cube cube : cubes) {
-					WorldEncoder.encodeCube(out, cube);
+			} else {
+				// light and biome arrays still have long runs after the palette pass, so deflate everything
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buf, deflater))) {
+					for (Column column : columns) {
+						WorldEncoder.encodeColumnCompact(out, column);
+					}
+					for (Cube cube : cubes) {
+						WorldEncoder.encodeCubeCompact(out, cube);
+					}
+				} finally {
+					deflater.end();
 				}
 			}
 			data = buf.toByteArray();
@@ -83,13 +110,28 @@ public class PacketBulkCubeData implements IMessage {
 		}
 	}
 
+	/**
+	 * Returns roughly how many bytes this packet takes on the wire.
+	 */
+	public int getSize() {
+		return 2 + (cubeAddresses.length + columnAddresses.length) * 8 + 4 + data.length;
+	}
+
 	public void startDecoding() {
-		m_in = new DataInputStream(new ByteArrayInputStream(data));
+		if (encoding == WorldEncoder.RawEncoding) {
+			m_in = new DataInputStream(new ByteArrayInputStream(data));
+		} else {
+			m_in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+		}
 	}
 	
 	public void decodeNextColumn(Column column) {
 		try {
-			WorldEncoder.decodeColumn(m_in, column);
+			if (encoding == WorldEncoder.RawEncoding) {
+				WorldEncoder.decodeColumn(m_in, column);
+			} else {
+				WorldEncoder.decodeColumnCompact(m_in, column);
+			}
 		} catch (IOException ex) {
 			// if you saw this exception, you're probably not using the decode functions correctly
 			throw new Error(ex);
@@ -98,7 +140,11 @@ public class PacketBulkCubeData implements IMessage {
 
 	public void decodeNextCube(Cube cube) {
 		try {
-			WorldEncoder.decodeCube(m_in, cube);
+			if (encoding == WorldEncoder.RawEncoding) {
+				WorldEncoder.decodeCube(m_in, cube);
+			} else {
+				WorldEncoder.decodeCubeCompact(m_in, cube);
+			}
 		} catch (IOException ex) {
 			// if you saw this exception, you're probably not using the decode functions correctly
 			throw new Error(ex);
@@ -0,0 +1,57 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.network;
+
+import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.List;
+
+/**
+ * {@link PacketBulkCubeData} with cubes in the palette encoding and the whole payload deflated.
+ * Only sent to clients that asked for it with {@link PacketCubeEncoding}.
+ */
+public class PacketCompressedCubeData extends PacketBulkCubeData {
+
+	//this constructor must be there to instantiate packet via reflection
+	public PacketCompressedCubeData() {
+		this.encoding = WorldEncoder.PaletteEncoding;
+	}
+
+	public PacketCompressedCubeData(List<Column> columns, List<Cube> cubes) {
+		super(columns, cubes, WorldEncoder.PaletteEncoding);
+	}
+
+	public static class Handler extends AbstractClientMessageHandler<PacketCompressedCubeData> {
+
+		@Override
+		public IMessage handleClientMessage(EntityPlayer player, PacketCompressedCubeData message, MessageContext ctx) {
+			ClientHandler.getInstance().handle(message);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.NetHandlerPlayServer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Sent by the client when it joins a world to tell the server the newest cube encoding it can decode.
+ * Until this arrives the server sends cubes in {@link WorldEncoder#RawEncoding}.
+ */
+public class PacketCubeEncoding implements IMessage {
+
+	// keyed by connection so the choice survives respawns and dimension changes, and goes away with the connection
+	private static final Map<NetHandlerPlayServer,Integer> Encodings = new WeakHashMap<>();
+
+	public int encoding;
+
+	public PacketCubeEncoding() {}
+
+	public PacketCubeEncoding(int encoding) {
+		this.encoding = encoding;
+	}
+
+	public static int getEncoding(EntityPlayerMP player) {
+		synchronized (Encodings) {
+			Integer encoding = Encodings.get(player.playerNetServerHandler);
+			return encoding == null ? WorldEncoder.RawEncoding : encoding;
+		}
+	}
+
+	@Override
+	public void fromBytes(ByteBuf buf) {
+		encoding = buf.readUnsignedByte();
+	}
+
+	@Override
+	public void toBytes(ByteBuf buf) {
+		buf.writeByte(encoding);
+	}
+
+	public static class Handler extends AbstractServerMessageHandler<PacketCubeEncoding> {
+
+		@Override
+		public IMessage handleServerMessage(EntityPlayer player, PacketCubeEncoding message, MessageContext ctx) {
+			// never use an encoding newer than ours
+			int encoding = Math.min(message.encoding, WorldEncoder.LatestEncoding);
+			synchronized (Encodings) {
+				Encodings.put(ctx.getServerHandler(), encoding);
+			}
+			return null;
+		}
+	}
+}
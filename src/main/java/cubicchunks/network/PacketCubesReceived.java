@@ -0,0 +1,78 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.network;
+
+import cubicchunks.server.CubePlayerManager;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Sent by clients on the palette encoding after they decoded a cube packet, so the server can tell how fast
+ * cubes get through to them.
+ */
+public class PacketCubesReceived implements IMessage {
+
+	public int numBytes;
+
+	public PacketCubesReceived() {}
+
+	public PacketCubesReceived(int numBytes) {
+		this.numBytes = numBytes;
+	}
+
+	@Override
+	public void fromBytes(ByteBuf buf) {
+		numBytes = buf.readInt();
+	}
+
+	@Override
+	public void toBytes(ByteBuf buf) {
+		buf.writeInt(numBytes);
+	}
+
+	public static class Handler extends AbstractServerMessageHandler<PacketCubesReceived> {
+
+		@Override
+		public IMessage handleServerMessage(EntityPlayer player, final PacketCubesReceived message, MessageContext ctx) {
+			final EntityPlayerMP playerMP = (EntityPlayerMP)player;
+			final WorldServer worldServer = playerMP.getServerForPlayer();
+			final long nowMs = System.currentTimeMillis();
+			worldServer.addScheduledTask(new Runnable() {
+				@Override
+				public void run() {
+					PlayerManager playerManager = worldServer.getPlayerManager();
+					if (playerManager instanceof CubePlayerManager) {
+						((CubePlayerManager)playerManager).onCubesReceived(playerMP, message.numBytes, nowMs);
+					}
+				}
+			});
+			return null;
+		}
+	}
+}
@@ -56,6 +56,12 @@ public class PacketDispatcher {
 
 		registerMessage(PacketUnloadColumns.Handler.class, PacketUnloadColumns.class);
 		registerMessage(PacketUnloadCubes.Handler.class, PacketUnloadCubes.class);
+
+		// keep these last so the ids of the packets above stay the same for older clients
+		registerMessage(PacketCubeEncoding.Handler.class, PacketCubeEncoding.class);
+		registerMessage(PacketCompressedCubeData.Handler.class, PacketCompressedCubeData.class);
+		registerMessage(PacketHeightmapUpdate.Handler.class, PacketHeightmapUpdate.class);
+		registerMessage(PacketCubesReceived.Handler.class, PacketCubesReceived.class);
 	}
 
 	/**
@@ -0,0 +1,88 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * The heightmap and bottom-block-y entries of a column that changed since the client last got them.
+ * Missing values are Integer.MIN_VALUE.
+ */
+public class PacketHeightmapUpdate implements IMessage {
+
+	public long columnAddress;
+	public int[] xzIndices; // z*16 + x
+	public int[] topBlockYs;
+	public int[] bottomBlockYs;
+
+	public PacketHeightmapUpdate() {}
+
+	public PacketHeightmapUpdate(long columnAddress, int[] xzIndices, int[] topBlockYs, int[] bottomBlockYs, int numChanges) {
+		this.columnAddress = columnAddress;
+		this.xzIndices = new int[numChanges];
+		this.topBlockYs = new int[numChanges];
+		this.bottomBlockYs = new int[numChanges];
+		System.arraycopy(xzIndices, 0, this.xzIndices, 0, numChanges);
+		System.arraycopy(topBlockYs, 0, this.topBlockYs, 0, numChanges);
+		System.arraycopy(bottomBlockYs, 0, this.bottomBlockYs, 0, numChanges);
+	}
+
+	@Override
+	public void fromBytes(ByteBuf in) {
+		this.columnAddress = in.readLong();
+		// all 256 entries can change, so the count doesn't fit in a byte
+		int numChanges = in.readUnsignedShort();
+		xzIndices = new int[numChanges];
+		topBlockYs = new int[numChanges];
+		bottomBlockYs = new int[numChanges];
+		for (int i = 0; i < numChanges; i++) {
+			xzIndices[i] = in.readUnsignedByte();
+			topBlockYs[i] = in.readInt();
+			bottomBlockYs[i] = in.readInt();
+		}
+	}
+
+	@Override
+	public void toBytes(ByteBuf out) {
+		out.writeLong(columnAddress);
+		out.writeShort(xzIndices.length);
+		for (int i = 0; i < xzIndices.length; i++) {
+			out.writeByte(xzIndices[i]);
+			out.writeInt(topBlockYs[i]);
+			out.writeInt(bottomBlockYs[i]);
+		}
+	}
+
+	public static class Handler extends AbstractClientMessageHandler<PacketHeightmapUpdate> {
+
+		@Override
+		public IMessage handleClientMessage(EntityPlayer player, PacketHeightmapUpdate message, MessageContext ctx) {
+			ClientHandler.getInstance().handle(message);
+			return null;
+		}
+	}
+}
@@ -26,6 +26,7 @@ package cubicchunks.network;
 import cubicchunks.generator.GeneratorStage;
 import cubicchunks.lighting.LightingManager;
 import cubicchunks.util.ArrayConverter;
+import cubicchunks.util.VarInts;
 import cubicchunks.world.ClientOpacityIndex;
 import cubicchunks.world.OpacityIndex;
 import cubicchunks.world.WorldContext;
@@ -41,6 +42,20 @@ import java.util.Arrays;
 
 public class WorldEncoder {
 	
+	// cube encodings, in the order they were added. Clients tell the server the newest one they understand
+	public static final int RawEncoding = 0;
+	public static final int PaletteEncoding = 1;
+	public static final int LatestEncoding = PaletteEncoding;
+	
+	// markers for the palette encoding
+	private static final int UniformBlocks = 0;
+	private static final int PaletteBlocks = 1;
+	private static final int RawBlocks = 2;
+	private static final int UniformLight = 0;
+	private static final int RawLight = 1;
+	// past this many distinct block states the indices aren't much smaller than the raw ids
+	private static final int MaxPaletteSize = 256;
+	
 	public static void encodeCube(DataOutputStream out, Cube cube)
 	throws IOException {
 		
@@ -62,9 +77,9 @@ public class WorldEncoder {
 			}
 
 			// 5. heightmap and bottom-block-y. Each non-empty cube has a chance to update this data.
-			// trying to keep track of when it changes would be complex, so send it wil all cubes
+			// clients on this encoding don't get PacketHeightmapUpdate, so send it with all cubes
 			byte[] heightmaps = ((OpacityIndex) cube.getColumn().getOpacityIndex()).getDataForClient();
-			assert  heightmaps.length == 256*2*4;
+			assert heightmaps.length == 256*2*4;
 			out.write(heightmaps);
 		}
 	}
@@ -80,7 +95,7 @@ public class WorldEncoder {
 	throws IOException {
 		
 		// 1. biomes
-		in.read(column.getBiomeArray());
+		in.readFully(column.getBiomeArray());
 	}
 
 	public static void decodeCube(DataInputStream in, Cube cube)
@@ -112,11 +127,241 @@ public class WorldEncoder {
 
 			// 5. heightmaps
 			byte[] heightmaps = new byte[256*2*4];
-			in.read(heightmaps);
+			in.readFully(heightmaps);
 			ClientOpacityIndex coi = ((ClientOpacityIndex)cube.getColumn().getOpacityIndex());
 			coi.setData(heightmaps);
 			cube.initialClientSkylight();
 			storage.removeInvalidBlocks();
 		}
 	}
+
+	/**
+	 * Same contents as {@link #encodeColumn}, plus the heightmap and bottom-block-y. The cubes of the column
+	 * don't repeat it, CubePlayerManager sends changes to it as PacketHeightmapUpdate instead.
+	 */
+	public static void encodeColumnCompact(DataOutputStream out, Column column)
+	throws IOException {
+		
+		// 1. biomes
+		out.write(column.getBiomeArray());
+		
+		// 2. heightmap and bottom-block-y
+		byte[] heightmaps = ((OpacityIndex) column.getOpacityIndex()).getCompactDataForClient();
+		out.writeShort(heightmaps.length);
+		out.write(heightmaps);
+	}
+	
+	public static void decodeColumnCompact(DataInputStream in, Column column)
+	throws IOException {
+		
+		// 1. biomes
+		in.readFully(column.getBiomeArray());
+		
+		// 2. heightmap and bottom-block-y
+		byte[] heightmaps = new byte[in.readUnsignedShort()];
+		in.readFully(heightmaps);
+		((ClientOpacityIndex) column.getOpacityIndex()).setCompactData(heightmaps);
+	}
+	
+	/**
+	 * Same contents as {@link #encodeCube} without the heightmap, and block ids go through a per-cube palette
+	 * and light arrays that hold a single value are sent as that value.
+	 */
+	public static void encodeCubeCompact(DataOutputStream out, Cube cube)
+	throws IOException {
+		
+		// 1. emptiness
+		out.writeBoolean(cube.isEmpty());
+		
+		if (!cube.isEmpty()) {
+			ExtendedBlockStorage storage = cube.getStorage();
+			
+			// 2. block IDs and metadata
+			writeBlocks(out, storage.getData());
+			
+			// 3. block light
+			writeLight(out, storage.getBlocklightArray().getData());
+			
+			if (!cube.getWorld().provider.getHasNoSky()) {
+				// 4. sky light
+				writeLight(out, storage.getSkylightArray().getData());
+			}
+		}
+	}
+	
+	public static void decodeCubeCompact(DataInputStream in, Cube cube)
+	throws IOException {
+		
+		// if the cube came from the server, it must be live
+		cube.setGeneratorStage(GeneratorStage.getLastStage());
+		
+		// 1. emptiness
+		boolean isEmpty = in.readBoolean();
+		cube.setEmpty(isEmpty);
+		
+		if (!isEmpty) {
+			ExtendedBlockStorage storage = cube.getStorage();
+			
+			// 2. block IDs and metadata
+			char[] blocks = new char[16*16*16];
+			readBlocks(in, blocks);
+			storage.setData(blocks);
+			
+			// 3. block light
+			readLight(in, storage.getBlocklightArray().getData());
+			
+			if (!cube.getWorld().provider.getHasNoSky()) {
+				// 4. sky light
+				readLight(in, storage.getSkylightArray().getData());
+			}
+			
+			// the heightmap came with the column
+			cube.initialClientSkylight();
+			storage.removeInvalidBlocks();
+		}
+	}
+	
+	static void writeBlocks(DataOutputStream out, char[] blocks)
+	throws IOException {
+		
+		// collect the palette, remembering the index of each block
+		char[] palette = new char[MaxPaletteSize];
+		int paletteSize = 0;
+		int[] indices = new int[blocks.length];
+		int last = -1;
+		for (int i = 0; i < blocks.length; i++) {
+			char block = blocks[i];
+			if (last < 0 || palette[last] != block) {
+				last = 0;
+				while (last < paletteSize && palette[last] != block) {
+					last++;
+				}
+				if (last == paletteSize) {
+					if (paletteSize == MaxPaletteSize) {
+						out.writeByte(RawBlocks);
+						out.write(ArrayConverter.toByteArray(blocks));
+						return;
+					}
+					palette[paletteSize++] = block;
+				}
+			}
+			indices[i] = last;
+		}
+		
+		if (paletteSize == 1) {
+			out.writeByte(UniformBlocks);
+			out.writeChar(palette[0]);
+			return;
+		}
+		
+		out.writeByte(PaletteBlocks);
+		VarInts.writeUnsigned(out, paletteSize);
+		for (int i = 0; i < paletteSize; i++) {
+			VarInts.writeUnsigned(out, palette[i]);
+		}
+		
+		// pack the indices, low bits first
+		int bits = getBitsPerIndex(paletteSize);
+		byte[] packed = new byte[blocks.length*bits/8];
+		int buffer = 0;
+		int numBuffered = 0;
+		int pos = 0;
+		for (int index : indices) {
+			buffer |= index << numBuffered;
+			numBuffered += bits;
+			while (numBuffered >= 8) {
+				packed[pos++] = (byte)buffer;
+				buffer >>>= 8;
+				numBuffered -= 8;
+			}
+		}
+		out.write(packed);
+	}
+	
+	static void readBlocks(DataInputStream in, char[] blocks)
+	throws IOException {
+		int type = in.readUnsignedByte();
+		switch (type) {
+			case UniformBlocks:
+				Arrays.fill(blocks, in.readChar());
+				return;
+			
+			case RawBlocks:
+				byte[] raw = new byte[blocks.length*2];
+				in.readFully(raw);
+				System.arraycopy(ArrayConverter.toCharArray(raw), 0, blocks, 0, blocks.length);
+				return;
+			
+			case PaletteBlocks:
+				char[] palette = new char[VarInts.readUnsigned(in)];
+				if (palette.length < 2 || palette.length > MaxPaletteSize) {
+					throw new IOException("Bad block palette size: " + palette.length);
+				}
+				for (int i = 0; i < palette.length; i++) {
+					palette[i] = (char)VarInts.readUnsigned(in);
+				}
+				int bits = getBitsPerIndex(palette.length);
+				int mask = (1 << bits) - 1;
+				byte[] packed = new byte[blocks.length*bits/8];
+				in.readFully(packed);
+				int buffer = 0;
+				int numBuffered = 0;
+				int pos = 0;
+				for (int i = 0; i < blocks.length; i++) {
+					while (numBuffered < bits) {
+						buffer |= (packed[pos++] & 0xFF) << numBuffered;
+						numBuffered += 8;
+					}
+					int index = buffer & mask;
+					if (index >= palette.length) {
+						throw new IOException("Block palette index out of range: " + index);
+					}
+					blocks[i] = palette[index];
+					buffer >>>= bits;
+					numBuffered -= bits;
+				}
+				return;
+			
+			default:
+				throw new IOException("Unknown block encoding: " + type);
+		}
+	}
+	
+	static void writeLight(DataOutputStream out, byte[] light)
+	throws IOException {
+		// a nibble array is uniform when every byte holds the same value twice
+		byte first = light[0];
+		boolean isUniform = (first & 0xF) == (first >> 4 & 0xF);
+		for (int i = 1; isUniform && i < light.length; i++) {
+			isUniform = light[i] == first;
+		}
+		if (isUniform) {
+			out.writeByte(UniformLight);
+			out.writeByte(first);
+		} else {
+			out.writeByte(RawLight);
+			out.write(light);
+		}
+	}
+	
+	static void readLight(DataInputStream in, byte[] light)
+	throws IOException {
+		int type = in.readUnsignedByte();
+		switch (type) {
+			case UniformLight:
+				Arrays.fill(light, in.readByte());
+				return;
+			
+			case RawLight:
+				in.readFully(light);
+				return;
+			
+			default:
+				throw new IOException("Unknown light encoding: " + type);
+		}
+	}
+	
+	private static int getBitsPerIndex(int paletteSize) {
+		return 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+	}
 }
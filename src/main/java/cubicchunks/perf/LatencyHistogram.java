@@ -0,0 +1,149 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds using buckets that are powers of two wide. Recording is lock free and can be done
+ * from any thread. Percentiles are only accurate to a factor of two, which is plenty to tell where time goes.
+ */
+public class LatencyHistogram {
+
+	// bucket 0 holds 0 ns, bucket i holds [2^(i-1), 2^i) ns
+	public static final int NumBuckets = 64;
+
+	private final AtomicLongArray buckets;
+	private final AtomicLong count;
+	private final AtomicLong totalNanos;
+	private final AtomicLong maxNanos;
+
+	public LatencyHistogram() {
+		this.buckets = new AtomicLongArray(NumBuckets);
+		this.count = new AtomicLong();
+		this.totalNanos = new AtomicLong();
+		this.maxNanos = new AtomicLong();
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			// nanoTime() isn't guaranteed to be monotonic across threads
+			nanos = 0;
+		}
+		this.buckets.incrementAndGet(getBucket(nanos));
+		this.count.incrementAndGet();
+		this.totalNanos.addAndGet(nanos);
+
+		long max = this.maxNanos.get();
+		while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+			max = this.maxNanos.get();
+		}
+	}
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+	public long getTotalNanos() {
+		return this.totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	public long getMeanNanos() {
+		long count = getCount();
+		return count == 0 ? 0 : getTotalNanos() / count;
+	}
+
+	public long getBucketCount(int bucket) {
+		return this.buckets.get(bucket);
+	}
+
+	/**
+	 * Returns an upper bound for the given percentile (0 to 100) of the recorded durations.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * count));
+		long numSeen = 0;
+		for (int i = 0; i < NumBuckets; i++) {
+			numSeen += this.buckets.get(i);
+			if (numSeen >= rank) {
+				return Math.min(getBucketMaxNanos(i), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/**
+	 * Returns a copy that won't change when more durations are recorded here.
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		for (int i = 0; i < NumBuckets; i++) {
+			copy.buckets.set(i, this.buckets.get(i));
+		}
+		copy.count.set(this.count.get());
+		copy.totalNanos.set(this.totalNanos.get());
+		copy.maxNanos.set(this.maxNanos.get());
+		return copy;
+	}
+
+	public static int getBucket(long nanos) {
+		return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+	}
+
+	public static long getBucketMaxNanos(int bucket) {
+		return bucket == 0 ? 0 : (1L << bucket) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%s p50=%s p90=%s p99=%s max=%s",
+			getCount(),
+			formatNanos(getMeanNanos()),
+			formatNanos(getPercentileNanos(50)),
+			formatNanos(getPercentileNanos(90)),
+			formatNanos(getPercentileNanos(99)),
+			formatNanos(getMaxNanos())
+		);
+	}
+
+	public static String formatNanos(long nanos) {
+		if (nanos < 1000L) {
+			return nanos + "ns";
+		} else if (nanos < 1000000L) {
+			return String.format("%.1fus", nanos / 1000.0);
+		} else if (nanos < 1000000000L) {
+			return String.format("%.1fms", nanos / 1000000.0);
+		}
+		return String.format("%.1fs", nanos / 1000000000.0);
+	}
+}
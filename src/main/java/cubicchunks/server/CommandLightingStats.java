@@ -0,0 +1,76 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.server;
+
+import cubicchunks.lighting.LightingStats;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * /lightstats shows the lighting stats of all loaded worlds, /lightstats dump appends them to the stats file.
+ */
+public class CommandLightingStats extends CommandBase {
+
+	@Override
+	public String getCommandName() {
+		return "lightstats";
+	}
+
+	@Override
+	public String getCommandUsage(ICommandSender sender) {
+		return "/lightstats [dump]";
+	}
+
+	@Override
+	public int getRequiredPermissionLevel() {
+		return 2;
+	}
+
+	@Override
+	public void processCommand(ICommandSender sender, String[] args) throws CommandException {
+		if (args.length == 0) {
+			for (LightingStats stats : LightingStats.getAll()) {
+				for (String line : stats.getSummary()) {
+					// chat doesn't show tabs
+					sender.addChatMessage(new ChatComponentText(line.replace("\t", "  ")));
+				}
+			}
+		} else if (args.length == 1 && args[0].equals("dump")) {
+			try {
+				File file = LightingStats.dumpAll();
+				sender.addChatMessage(new ChatComponentText("Wrote lighting stats to " + file.getAbsolutePath()));
+			} catch (IOException ex) {
+				throw new CommandException("Unable to write lighting stats: %s", ex.getMessage());
+			}
+		} else {
+			throw new WrongUsageException(getCommandUsage(sender));
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.server;
+
+/**
+ * The server wide egress cap for cube streaming. Each tick it is split evenly between the players of all worlds that
+ * were waiting for cubes in the tick before. There is one for the whole server, CubicChunkSystem advances it at the
+ * start of every server tick and resets it when the server stops. Only the server thread touches it.
+ */
+public class CubeEgressBudget {
+
+	// 0 turns the cap off
+	private static final long MaxEgressBytesPerTick = Long.getLong("cubicchunks.maxEgressKBps", 0) * 1024 / 20;
+
+	private final long m_bytesPerTick;
+	private long m_tick;
+	private int m_numStreaming;
+	private int m_numStreamingLastTick;
+
+	public CubeEgressBudget() {
+		this(MaxEgressBytesPerTick);
+	}
+
+	public CubeEgressBudget(long bytesPerTick) {
+		m_bytesPerTick = bytesPerTick;
+		reset();
+	}
+
+	public boolean isCapped() {
+		return m_bytesPerTick > 0;
+	}
+
+	public long getTick() {
+		return m_tick;
+	}
+
+	/**
+	 * Call once at the start of every server tick.
+	 */
+	public void tick() {
+		m_tick++;
+		m_numStreamingLastTick = Math.max(1, m_numStreaming);
+		m_numStreaming = 0;
+	}
+
+	/**
+	 * Counts a player as waiting for cubes this tick and returns its share of the cap. Call at most once per player
+	 * and tick.
+	 */
+	public long takeShare() {
+		m_numStreaming++;
+		return m_bytesPerTick / m_numStreamingLastTick;
+	}
+
+	/**
+	 * Forgets the players of the last server, the next one starts from scratch.
+	 */
+	public void reset() {
+		m_tick = 0;
+		m_numStreaming = 0;
+		m_numStreamingLastTick = 1;
+	}
+}
@@ -31,6 +31,7 @@ import cubicchunks.util.Coords;
 import cubicchunks.world.ChunkSectionHelper;
 import cubicchunks.world.IEntityActionListener;
 import cubicchunks.world.OpacityIndex;
+import cubicchunks.world.OpacityIndexBuilder;
 import cubicchunks.world.column.Column;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.block.Block;
@@ -289,8 +290,18 @@ public class CubeIO implements IThreadedFileIO {
 		// biomes
 		column.setBiomeArray(nbt.getByteArray("Biomes"));
 		
-		// read light index
-		((OpacityIndex)column.getOpacityIndex()).readData(nbt.getByteArray("OpacityIndex"));
+		// read light index, columns written by other tools might not have one
+		// then it's built from the cubes as they are loaded
+		OpacityIndex opacityIndex = (OpacityIndex)column.getOpacityIndex();
+		if (nbt.hasKey("OpacityIndex")) {
+			opacityIndex.readData(nbt.getByteArray("OpacityIndex"));
+		}
+		if (nbt.hasKey("OpacityLog")) {
+			opacityIndex.setChangeLog(nbt.getByteArray("OpacityLog"));
+		} else if (nbt.hasKey("OpacityChanges")) {
+			// saved before the change log was packed
+			opacityIndex.setOldChangeLog(nbt.getIntArray("OpacityChanges"));
+		}
 		
 		// entities
 		column.getEntityContainer().readFromNbt(nbt, "Entities", this.world, new IEntityActionListener() {
@@ -412,11 +423,30 @@ public class CubeIO implements IThreadedFileIO {
 		}
 		
 		// check to see if the cube needs to be relit
-		if (nbt.hasKey("OpacityIndex")) {
+		if (nbt.hasKey("OpacityVersion")) {
+			// relight only the x/z columns that changed since the cube was saved
+			boolean[] changedColumns = new boolean[16 * 16];
+			OpacityIndex opacityIndex = (OpacityIndex)column.getOpacityIndex();
+			if (!opacityIndex.getChangesSince(nbt.getInteger("OpacityVersion"), Coords.cubeToMinBlock(cubeY), changedColumns)) {
+				cube.setNeedsRelightAfterLoad(true);
+			} else {
+				for (boolean isChanged : changedColumns) {
+					if (isChanged) {
+						cube.setBlockColumnsToRelight(changedColumns);
+						break;
+					}
+				}
+			}
+		} else if (nbt.hasKey("OpacityIndex")) {
+			// saved before the opacity index kept track of changes
 			int savedHash = nbt.getInteger("OpacityIndex");
 			int currentHash = column.getOpacityIndex().hashCode();
 			cube.setNeedsRelightAfterLoad(savedHash != currentHash);
 		} else {
+			// the cube was never saved along with the light index, so its blocks might not be in it
+			OpacityIndexBuilder builder = new OpacityIndexBuilder();
+			builder.addCube(cube);
+			builder.build((OpacityIndex)column.getOpacityIndex());
 			cube.setNeedsRelightAfterLoad(true);
 		}
 		
@@ -448,7 +478,9 @@ public class CubeIO implements IThreadedFileIO {
 			nbt.setByteArray("Biomes", column.getBiomeArray());
 			
 			// light index
-			nbt.setByteArray("OpacityIndex", ((OpacityIndex)column.getOpacityIndex()).getData());
+			OpacityIndex opacityIndex = (OpacityIndex)column.getOpacityIndex();
+			nbt.setByteArray("OpacityIndex", opacityIndex.getData());
+			nbt.setByteArray("OpacityLog", opacityIndex.getChangeLog());
 			
 			// entities
 			column.getEntityContainer().writeToNbt(nbt, "Entities");
@@ -537,8 +569,8 @@ public class CubeIO implements IThreadedFileIO {
 			}
 		}
 		
-		// opacity index hash
-		nbt.setInteger("OpacityIndex", cube.getColumn().getOpacityIndex().hashCode());
+		// opacity index version, to find out what changed while the cube was unloaded
+		nbt.setInteger("OpacityVersion", ((OpacityIndex)cube.getColumn().getOpacityIndex()).getVersion());
 		
 		return nbt;
 	}
@@ -25,15 +25,22 @@ package cubicchunks.server;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import cubicchunks.CubicChunks;
+import cubicchunks.generator.GeneratorPipeline;
 import cubicchunks.network.PacketBulkCubeData;
+import cubicchunks.network.PacketCompressedCubeData;
+import cubicchunks.network.PacketCubeEncoding;
 import cubicchunks.network.PacketDispatcher;
+import cubicchunks.network.PacketHeightmapUpdate;
 import cubicchunks.network.PacketUnloadColumns;
 import cubicchunks.network.PacketUnloadCubes;
+import cubicchunks.network.WorldEncoder;
 import cubicchunks.util.AddressTools;
 import cubicchunks.util.Coords;
 import cubicchunks.visibility.CubeSelector;
 import cubicchunks.visibility.CuboidalCubeSelector;
+import cubicchunks.world.OpacityIndex;
 import cubicchunks.world.column.Column;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.entity.EntityTracker;
@@ -53,6 +60,29 @@ public class CubePlayerManager extends PlayerManager {
 	
 	private final Logger LOGGER = CubicChunks.LOGGER;
 	
+	// how far ahead to predict where moving players will be, in ticks. 0 turns speculative loading off
+	private static final int LookAheadTicks = Integer.getInteger("cubicchunks.prefetchTicks", 40);
+	// at most this many cubes are loaded ahead of each player
+	private static final int MaxSpeculativeCubes = Integer.getInteger("cubicchunks.prefetchMaxCubes", 256);
+	private static final int SpeculativeLoadsPerTick = 4;
+	// speculative cubes are only loaded while the generator pipeline has less than this many cubes queued
+	private static final int MaxSpeculativePipelineCubes = 200;
+	// anything faster than this (in blocks per tick) is a teleport, not movement
+	private static final double MaxPlayerSpeed = 8;
+	
+	// the heightmap of a column as the player last got it
+	private static class SentHeightmap {
+		
+		public int version;
+		public int[] topBlockYs;
+		public int[] bottomBlockYs;
+		
+		public SentHeightmap() {
+			this.topBlockYs = new int[16*16];
+			this.bottomBlockYs = new int[16*16];
+		}
+	}
+	
 	private static class PlayerInfo {
 		
 		public Set<Long> watchedCubeAddresses;
@@ -67,7 +97,24 @@ public class CubePlayerManager extends PlayerManager {
 		public int blockZ;
 		public long address;
 		
-		public PlayerInfo() {
+		// movement, for loading cubes before the player can see them
+		public double lastPosX;
+		public double lastPosY;
+		public double lastPosZ;
+		public long lastMoveTick;
+		public double velocityX; // blocks per tick
+		public double velocityY;
+		public double velocityZ;
+		public long predictedAddress;
+		public CubeSelector predictedCubeSelector;
+		public LinkedList<Long> speculativeCubeAddressesToLoad; // nearest first
+		public Set<Long> speculativeCubeAddresses; // loaded, but not visible yet
+		
+		public Map<Long,SentHeightmap> sentHeightmaps;
+		
+		public CubeStreamController streamController;
+		
+		public PlayerInfo(CubeEgressBudget egressBudget) {
 			this.watchedCubeAddresses = new TreeSet<>();
 			this.watchedColumnAddresses = new TreeSet<>();
 			this.cubesToLoad = new LinkedList<>();
@@ -79,6 +126,12 @@ public class CubePlayerManager extends PlayerManager {
 			this.blockY = 0;
 			this.blockZ = 0;
 			this.address = 0;
+			this.lastMoveTick = -1;
+			this.predictedCubeSelector = new CuboidalCubeSelector();
+			this.speculativeCubeAddressesToLoad = new LinkedList<>();
+			this.speculativeCubeAddresses = new TreeSet<>();
+			this.sentHeightmaps = new TreeMap<>();
+			this.streamController = new CubeStreamController(egressBudget);
 		}
 		
 		public void sortOutgoingCubesToLoad() {
@@ -121,11 +174,13 @@ public class CubePlayerManager extends PlayerManager {
 	private int m_viewDistance;
 	private TreeMap<Long,CubeWatcher> m_watchers;
 	private TreeMap<Integer,PlayerInfo> m_players;
+	private CubeEgressBudget m_egressBudget;
 	
-	public CubePlayerManager(WorldServer worldServer) {
+	public CubePlayerManager(WorldServer worldServer, CubeEgressBudget egressBudget) {
 		super(worldServer);
 		
 		this.m_worldServer = worldServer;
+		this.m_egressBudget = egressBudget;
 		this.m_cubeCache = (ServerCubeCache)m_worldServer.theChunkProviderServer;
 		this.m_viewDistance = worldServer.getMinecraftServer().getConfigurationManager().getViewDistance();
 		this.m_watchers = Maps.newTreeMap();
@@ -136,7 +191,7 @@ public class CubePlayerManager extends PlayerManager {
 	public void addPlayer(EntityPlayerMP player) {
 		
 		// make new player info
-		PlayerInfo info = new PlayerInfo();
+		PlayerInfo info = new PlayerInfo(this.m_egressBudget);
 		this.m_players.put(player.getEntityId(), info);
 		
 		// set initial player position
@@ -147,6 +202,7 @@ public class CubePlayerManager extends PlayerManager {
 		int cubeY = Coords.blockToCube(info.blockY);
 		int cubeZ = Coords.blockToCube(info.blockZ);
 		info.address = AddressTools.getAddress(cubeX, cubeY, cubeZ);
+		info.predictedAddress = info.address;
 		
 		// compute initial visibility
 		info.cubeSelector.setPlayerPosition(info.address, this.m_viewDistance);
@@ -188,12 +244,15 @@ public class CubePlayerManager extends PlayerManager {
 			// remove from the watcher
 			watcher.removePlayer(player);
 			
-			// cleanup empty watchers and cubes
+			// cleanup empty watchers and cubes, but keep cubes other players loaded ahead of time
 			if (!watcher.hasPlayers()) {
 				this.m_watchers.remove(address);
-				m_cubeCache.unloadCube(watcher.getCube());
+				if (!isSpeculativeCube(address)) {
+					m_cubeCache.unloadCube(watcher.getCube());
+				}
 			}
 		}
+		cancelSpeculativeCubes(info, Collections.<Long>emptySet());
 		
 		// remove the info
 		this.m_players.remove(player.getEntityId());
@@ -210,6 +269,8 @@ public class CubePlayerManager extends PlayerManager {
 			watcher.tick();
 		}
 		
+		loadSpeculativeCubes();
+		
 		// did all the players leave an alternate dimension?
 		if (this.m_players.isEmpty() && !this.m_worldServer.provider.canRespawnHere()) {
 			// unload everything
@@ -241,6 +302,7 @@ public class CubePlayerManager extends PlayerManager {
 		// the player moved
 		// if the player moved into a new chunk, update which chunks the player needs to know about
 		// then update the list of chunks that need to be sent to the client
+		// and load the chunks a moving player will see next
 		
 		// get the player info
 		PlayerInfo info = this.m_players.get(player.getEntityId());
@@ -248,6 +310,13 @@ public class CubePlayerManager extends PlayerManager {
 			return;
 		}
 		
+		updateVelocity(player, info);
+		updatePlayerPosition(player, info);
+		updateSpeculativeCubes(info);
+	}
+	
+	private void updatePlayerPosition(EntityPlayerMP player, PlayerInfo info) {
+		
 		// did the player move far enough to matter?
 		int newBlockX = MathHelper.floor_double(player.posX);
 		int newBlockY = MathHelper.floor_double(player.posY);
@@ -285,6 +354,7 @@ public class CubePlayerManager extends PlayerManager {
 			CubeWatcher watcher = getOrCreateWatcher(address);
 			watcher.addPlayer(player);
 			info.cubesToLoad.add(watcher.getCube());
+			info.speculativeCubeAddresses.remove(address);
 		}
 		
 		// remove from old watchers
@@ -297,10 +367,12 @@ public class CubePlayerManager extends PlayerManager {
 			watcher.removePlayer(player);
 			info.cubesToUnload.add(watcher.getCube());
 			
-			// cleanup empty watchers and cubes
+			// cleanup empty watchers and cubes, but keep cubes other players loaded ahead of time
 			if (!watcher.hasPlayers()) {
 				this.m_watchers.remove(address);
-				m_cubeCache.unloadCube(watcher.getCube());
+				if (!isSpeculativeCube(address)) {
+					m_cubeCache.unloadCube(watcher.getCube());
+				}
 			}
 		}
 		
@@ -311,6 +383,143 @@ public class CubePlayerManager extends PlayerManager {
 		info.columnAddressesToUnload.addAll(info.cubeSelector.getNewlyHiddenColumns());
 	}
 	
+	private void updateVelocity(EntityPlayerMP player, PlayerInfo info) {
+		long tick = this.m_worldServer.getTotalWorldTime();
+		if (tick == info.lastMoveTick) {
+			// moved more than once this tick, the next tick will see all of it
+			return;
+		}
+		if (info.lastMoveTick >= 0) {
+			double ticks = tick - info.lastMoveTick;
+			double velocityX = (player.posX - info.lastPosX) / ticks;
+			double velocityY = (player.posY - info.lastPosY) / ticks;
+			double velocityZ = (player.posZ - info.lastPosZ) / ticks;
+			if (velocityX * velocityX + velocityY * velocityY + velocityZ * velocityZ > MaxPlayerSpeed * MaxPlayerSpeed) {
+				info.velocityX = 0;
+				info.velocityY = 0;
+				info.velocityZ = 0;
+			} else {
+				// smooth out the velocity a bit so a single odd move doesn't throw the prediction off
+				info.velocityX = (info.velocityX + velocityX) / 2;
+				info.velocityY = (info.velocityY + velocityY) / 2;
+				info.velocityZ = (info.velocityZ + velocityZ) / 2;
+			}
+		}
+		info.lastPosX = player.posX;
+		info.lastPosY = player.posY;
+		info.lastPosZ = player.posZ;
+		info.lastMoveTick = tick;
+	}
+	
+	private void updateSpeculativeCubes(PlayerInfo info) {
+		
+		// where will the player be?
+		long predictedAddress = info.address;
+		if (LookAheadTicks > 0) {
+			predictedAddress = AddressTools.getAddress(
+				Coords.blockToCube(MathHelper.floor_double(info.lastPosX + info.velocityX * LookAheadTicks)),
+				Coords.blockToCube(MathHelper.floor_double(info.lastPosY + info.velocityY * LookAheadTicks)),
+				Coords.blockToCube(MathHelper.floor_double(info.lastPosZ + info.velocityZ * LookAheadTicks))
+			);
+		}
+		if (predictedAddress == info.predictedAddress) {
+			return;
+		}
+		info.predictedAddress = predictedAddress;
+		
+		// which cubes will be visible from there that aren't visible now?
+		List<Long> addresses = Lists.newArrayList();
+		if (predictedAddress != info.address) {
+			info.predictedCubeSelector.setPlayerPosition(predictedAddress, this.m_viewDistance);
+			for (long address : info.predictedCubeSelector.getVisibleCubes()) {
+				if (!info.cubeSelector.isCubeVisible(address)) {
+					addresses.add(address);
+				}
+			}
+			
+			// the nearest cubes will be needed first
+			final int cubeX = AddressTools.getX(info.address);
+			final int cubeY = AddressTools.getY(info.address);
+			final int cubeZ = AddressTools.getZ(info.address);
+			Collections.sort(addresses, new Comparator<Long>() {
+				
+				@Override
+				public int compare(Long a, Long b) {
+					return getManhattanDist(a) - getManhattanDist(b);
+				}
+				
+				private int getManhattanDist(long address) {
+					int dx = Math.abs(AddressTools.getX(address) - cubeX);
+					int dy = Math.abs(AddressTools.getY(address) - cubeY);
+					int dz = Math.abs(AddressTools.getZ(address) - cubeZ);
+					return dx + dy + dz;
+				}
+			});
+			if (addresses.size() > MaxSpeculativeCubes) {
+				addresses = addresses.subList(0, MaxSpeculativeCubes);
+			}
+		}
+		
+		// the player changed course, forget about the cubes that aren't on the way anymore
+		cancelSpeculativeCubes(info, Sets.newHashSet(addresses));
+		
+		info.speculativeCubeAddressesToLoad.clear();
+		for (long address : addresses) {
+			if (!info.speculativeCubeAddresses.contains(address)) {
+				info.speculativeCubeAddressesToLoad.add(address);
+			}
+		}
+	}
+	
+	private void cancelSpeculativeCubes(PlayerInfo info, Set<Long> addressesToKeep) {
+		Iterator<Long> iter = info.speculativeCubeAddresses.iterator();
+		while (iter.hasNext()) {
+			long address = iter.next();
+			if (addressesToKeep.contains(address)) {
+				continue;
+			}
+			iter.remove();
+			
+			// unload the cube unless someone can see it by now, or another player loaded it ahead of time too
+			CubeWatcher watcher = getWatcher(address);
+			if ((watcher == null || !watcher.hasPlayers()) && !isSpeculativeCube(address) && cubeExists(address)) {
+				m_cubeCache.unloadCube(AddressTools.getX(address), AddressTools.getY(address), AddressTools.getZ(address));
+			}
+		}
+	}
+	
+	private boolean isSpeculativeCube(long address) {
+		for (PlayerInfo info : this.m_players.values()) {
+			if (info.speculativeCubeAddresses.contains(address)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void loadSpeculativeCubes() {
+		GeneratorPipeline pipeline = WorldServerContext.get(this.m_worldServer).getGeneratorPipeline();
+		for (PlayerInfo info : this.m_players.values()) {
+			int numLoaded = 0;
+			while (numLoaded < SpeculativeLoadsPerTick && !info.speculativeCubeAddressesToLoad.isEmpty()) {
+				
+				// speculative cubes only get what the generator has left over
+				if (pipeline.getNumCubes() >= MaxSpeculativePipelineCubes) {
+					return;
+				}
+				
+				long address = info.speculativeCubeAddressesToLoad.poll();
+				if (info.cubeSelector.isCubeVisible(address)) {
+					// the player got there first
+					continue;
+				}
+				m_cubeCache.loadCube(AddressTools.getX(address), AddressTools.getY(address), AddressTools.getZ(address));
+				info.speculativeCubeAddresses.add(address);
+				numLoaded++;
+			}
+		}
+	}
+	
 	@Override
 	public boolean isPlayerWatchingChunk(EntityPlayerMP player, int cubeX, int cubeZ) {
 		
@@ -338,21 +547,30 @@ public class CubePlayerManager extends PlayerManager {
 		if (!info.cubesToUnload.isEmpty()) {
 			sendCubesAndColumnsToUnload(player, info);
 		}
+		if (PacketCubeEncoding.getEncoding(player) >= WorldEncoder.PaletteEncoding) {
+			sendHeightmapChanges(player, info);
+		}
 	}
 	
 	private void sendCubesAndColumnsToLoad(EntityPlayerMP player, PlayerInfo info) {
 		
+		// how many cubes can the connection take right now?
+		boolean isWritable = player.playerNetServerHandler.netManager.channel().isWritable();
+		int maxCubesToSend = info.streamController.getCubeBudget(isWritable);
+		if (maxCubesToSend <= 0) {
+			return;
+		}
+		
 		info.removeOutOfRangeOutgoingCubesToLoad();
 		info.sortOutgoingCubesToLoad();
 
 		//LOGGER.trace("Server cubes to load: {}", info.cubesToLoad.size());
 		
 		// pull off enough cubes from the queue to fit in a packet
-		final int MaxCubesToSend = 8;
 		List<Cube> cubesToSend = new ArrayList<Cube>();
 		List<TileEntity> blockEntitiesToSend = new ArrayList<>();
 		Iterator<Cube> iter = info.cubesToLoad.iterator();
-		while (iter.hasNext() && cubesToSend.size() < MaxCubesToSend) {
+		while (iter.hasNext() && cubesToSend.size() < maxCubesToSend) {
 			Cube cube = iter.next();
 			
 			// check to see if the cube is live before sending
@@ -398,11 +616,27 @@ public class CubePlayerManager extends PlayerManager {
 		}*/
 
 		// send the cube data
-		PacketDispatcher.sendTo(new PacketBulkCubeData(columnsToSend, cubesToSend), player);
+		PacketBulkCubeData cubePacket;
+		if (PacketCubeEncoding.getEncoding(player) >= WorldEncoder.PaletteEncoding) {
+			cubePacket = new PacketCompressedCubeData(columnsToSend, cubesToSend);
+			// only the columns carry the heightmap
+			for (Column column : columnsToSend) {
+				rememberHeightmap(info, column);
+			}
+		} else {
+			cubePacket = new PacketBulkCubeData(columnsToSend, cubesToSend);
+			// every cube carries the heightmap of its column
+			for (Cube cube : cubesToSend) {
+				rememberHeightmap(info, cube.getColumn());
+			}
+		}
+		PacketDispatcher.sendTo(cubePacket, player);
+		info.streamController.onSent(cubesToSend.size(), cubePacket.getSize());
 
-		LOGGER.trace("Server sent {}/{} cubes, {}/{} columns to player",
+		LOGGER.trace("Server sent {}/{} cubes, {}/{} columns to player, {} cubes per tick",
 			cubesToSend.size(), cubesToSend.size() + info.cubesToLoad.size(),
-			columnsToSend.size(), columnsToSend.size() + info.columnAddressesToLoad.size()
+			columnsToSend.size(), columnsToSend.size() + info.columnAddressesToLoad.size(),
+			(int)info.streamController.getCubesPerTick()
 		);
 
 		// tell the cube watchers which cubes were sent for this player
@@ -447,9 +681,88 @@ public class CubePlayerManager extends PlayerManager {
 		assert info.columnAddressesToUnload.size() < PacketUnloadColumns.MAX_SIZE;
 		PacketDispatcher.sendTo(new PacketUnloadColumns(info.columnAddressesToUnload), player);
 		LOGGER.debug("Server sent {} columns to player to unload", info.columnAddressesToUnload.size());
+		info.sentHeightmaps.keySet().removeAll(info.columnAddressesToUnload);
 		info.columnAddressesToUnload.clear();
 	}
 	
+	public void onCubesReceived(EntityPlayerMP player, int numBytes, long nowMs) {
+		PlayerInfo info = this.m_players.get(player.getEntityId());
+		if (info == null) {
+			return;
+		}
+		info.streamController.onAcked(numBytes, nowMs);
+	}
+	
+	private void rememberHeightmap(PlayerInfo info, Column column) {
+		SentHeightmap sent = info.sentHeightmaps.get(column.getAddress());
+		if (sent == null) {
+			sent = new SentHeightmap();
+			info.sentHeightmaps.put(column.getAddress(), sent);
+		}
+		OpacityIndex index = (OpacityIndex)column.getOpacityIndex();
+		sent.version = index.getVersion();
+		for (int i = 0; i < 16*16; i++) {
+			sent.topBlockYs[i] = getTopBlockY(index, i);
+			sent.bottomBlockYs[i] = getBottomBlockY(index, i);
+		}
+	}
+	
+	private void sendHeightmapChanges(EntityPlayerMP player, PlayerInfo info) {
+		
+		int[] xzIndices = null;
+		int[] topBlockYs = null;
+		int[] bottomBlockYs = null;
+		for (Map.Entry<Long,SentHeightmap> entry : info.sentHeightmaps.entrySet()) {
+			long columnAddress = entry.getKey();
+			SentHeightmap sent = entry.getValue();
+			
+			// the version changes with every opacity change, so most columns are skipped here
+			int columnX = AddressTools.getX(columnAddress);
+			int columnZ = AddressTools.getZ(columnAddress);
+			if (!info.watchedColumnAddresses.contains(columnAddress) || !m_cubeCache.chunkExists(columnX, columnZ)) {
+				continue;
+			}
+			OpacityIndex index = (OpacityIndex)m_cubeCache.getColumn(columnX, columnZ).getOpacityIndex();
+			if (index.getVersion() == sent.version) {
+				continue;
+			}
+			sent.version = index.getVersion();
+			
+			// find the entries that changed
+			if (xzIndices == null) {
+				xzIndices = new int[16*16];
+				topBlockYs = new int[16*16];
+				bottomBlockYs = new int[16*16];
+			}
+			int numChanges = 0;
+			for (int i = 0; i < 16*16; i++) {
+				int top = getTopBlockY(index, i);
+				int bottom = getBottomBlockY(index, i);
+				if (top != sent.topBlockYs[i] || bottom != sent.bottomBlockYs[i]) {
+					sent.topBlockYs[i] = top;
+					sent.bottomBlockYs[i] = bottom;
+					xzIndices[numChanges] = i;
+					topBlockYs[numChanges] = top;
+					bottomBlockYs[numChanges] = bottom;
+					numChanges++;
+				}
+			}
+			if (numChanges > 0) {
+				PacketDispatcher.sendTo(new PacketHeightmapUpdate(columnAddress, xzIndices, topBlockYs, bottomBlockYs, numChanges), player);
+			}
+		}
+	}
+	
+	private static int getTopBlockY(OpacityIndex index, int xzIndex) {
+		Integer blockY = index.getTopBlockY(xzIndex & 0xF, xzIndex >> 4);
+		return blockY == null ? Integer.MIN_VALUE : blockY;
+	}
+	
+	private static int getBottomBlockY(OpacityIndex index, int xzIndex) {
+		Integer blockY = index.getBottomBlockY(xzIndex & 0xF, xzIndex >> 4);
+		return blockY == null ? Integer.MIN_VALUE : blockY;
+	}
+	
 	public Iterable<Long> getVisibleCubeAddresses(EntityPlayerMP player) {
 		
 		// get the info
@@ -0,0 +1,172 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.server;
+
+/**
+ * Decides how many cubes to send to one player each tick. The rate grows while the connection keeps up and halves
+ * when Netty stops accepting writes. Clients that acknowledge cube packets also limit the data in flight to what
+ * they received in the last TargetLatencyMs. A server wide egress cap, if set, is split evenly between the players
+ * that are waiting for cubes, see CubeEgressBudget.
+ */
+public class CubeStreamController {
+
+	// all cubes of a tick go in one packet. A raw cube is about 13 KB and custom payloads must stay under 1 MB
+	private static final int MaxCubesPerTick = Math.min(Integer.getInteger("cubicchunks.maxCubesPerTick", 64), 64);
+	private static final int MinCubesPerTick = 1;
+	private static final int InitialCubesPerTick = 8;
+	// how long acknowledged data may take to arrive before the link counts as backed up
+	private static final int TargetLatencyMs = Integer.getInteger("cubicchunks.streamLatencyMs", 250);
+	// clients that acknowledge cubes may always have this much in flight, so the throughput estimate can grow
+	private static final int MinWindowBytes = 64 * 1024;
+	// players can save up this many ticks of their egress share, so one large cube still goes out on slow caps
+	private static final int MaxEgressCreditTicks = 20;
+
+	// shared by the players of all worlds
+	private final CubeEgressBudget m_egressBudget;
+	private double m_cubesPerTick;
+	private double m_bytesPerCube;
+	private long m_bytesSent;
+	private long m_bytesAcked;
+	private boolean m_clientAcks;
+	private double m_ackedBytesPerMs;
+	private long m_lastAckTimeMs;
+	private long m_lastTick;
+	private int m_cubesSentThisTick;
+	private long m_egressCredit;
+
+	public CubeStreamController(CubeEgressBudget egressBudget) {
+		m_egressBudget = egressBudget;
+		m_cubesPerTick = InitialCubesPerTick;
+		m_bytesPerCube = 4096;
+		m_bytesSent = 0;
+		m_bytesAcked = 0;
+		m_clientAcks = false;
+		m_ackedBytesPerMs = 0;
+		m_lastAckTimeMs = -1;
+		m_lastTick = Long.MIN_VALUE;
+		m_cubesSentThisTick = 0;
+		m_egressCredit = 0;
+	}
+
+	/**
+	 * Returns how many cubes can be sent to the player now. Only call this when there are cubes waiting, the egress
+	 * cap is split between the players that called it in the last tick.
+	 * @param isWritable whether the Netty channel of the player accepts writes without queueing them
+	 */
+	public int getCubeBudget(boolean isWritable) {
+
+		// calls in the same server tick share one budget
+		long tick = m_egressBudget.getTick();
+		if (tick != m_lastTick) {
+			m_lastTick = tick;
+			m_cubesSentThisTick = 0;
+			addEgressCredit();
+		}
+
+		if (!isWritable) {
+			// Netty is buffering, the client can't keep up
+			m_cubesPerTick = Math.max(MinCubesPerTick, m_cubesPerTick / 2);
+			return 0;
+		}
+
+		int budget = (int)m_cubesPerTick - m_cubesSentThisTick;
+
+		if (m_clientAcks) {
+			long window = Math.max(MinWindowBytes, (long)(m_ackedBytesPerMs * TargetLatencyMs));
+			long bytesInFlight = getBytesInFlight();
+			if (bytesInFlight >= window) {
+				return 0;
+			}
+			budget = Math.min(budget, (int)Math.ceil((window - bytesInFlight) / m_bytesPerCube));
+		}
+
+		if (m_egressBudget.isCapped()) {
+			if (m_egressCredit <= 0) {
+				return 0;
+			}
+			// the last cube may overdraw the credit, it's paid back in the next ticks
+			budget = Math.min(budget, (int)Math.ceil(m_egressCredit / m_bytesPerCube));
+		}
+
+		return Math.max(budget, 0);
+	}
+
+	/**
+	 * Call after sending a packet with numCubes cubes in it.
+	 */
+	public void onSent(int numCubes, int numBytes) {
+		m_bytesSent += numBytes;
+		m_cubesSentThisTick += numCubes;
+		m_egressCredit -= numBytes;
+		if (numCubes > 0) {
+			m_bytesPerCube = m_bytesPerCube * 0.75 + (double)numBytes / numCubes * 0.25;
+		}
+
+		// clients that don't acknowledge cubes only have writability to go by, grow slowly while it holds
+		if (!m_clientAcks) {
+			m_cubesPerTick = Math.min(MaxCubesPerTick, m_cubesPerTick + 0.25);
+		}
+	}
+
+	/**
+	 * Call when the client says it received numBytes of cube data.
+	 */
+	public void onAcked(int numBytes, long nowMs) {
+		m_clientAcks = true;
+		// if nothing else was in flight the time since the last ack includes time the link was idle
+		boolean wasBusy = getBytesInFlight() > numBytes;
+		m_bytesAcked += numBytes;
+
+		if (m_lastAckTimeMs >= 0 && wasBusy) {
+			// acks come in once per packet, smooth over a few of them
+			long elapsedMs = Math.max(1, nowMs - m_lastAckTimeMs);
+			m_ackedBytesPerMs = m_ackedBytesPerMs * 0.75 + (double)numBytes / elapsedMs * 0.25;
+		}
+		m_lastAckTimeMs = nowMs;
+
+		// every packet that made it through allows a bit more
+		m_cubesPerTick = Math.min(MaxCubesPerTick, m_cubesPerTick + 1);
+	}
+
+	public long getBytesInFlight() {
+		// acks for packets sent before a dimension change can outnumber what this controller sent
+		return Math.max(0, m_bytesSent - m_bytesAcked);
+	}
+
+	public double getCubesPerTick() {
+		return m_cubesPerTick;
+	}
+
+	public double getAckedBytesPerSecond() {
+		return m_ackedBytesPerMs * 1000;
+	}
+
+	private void addEgressCredit() {
+		if (!m_egressBudget.isCapped()) {
+			return;
+		}
+		long share = m_egressBudget.takeShare();
+		m_egressCredit = Math.min(m_egressCredit + share, share * MaxEgressCreditTicks);
+	}
+}
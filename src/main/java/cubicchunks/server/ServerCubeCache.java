@@ -221,6 +221,10 @@ public class ServerCubeCache extends ChunkProviderServer implements ICubeCache {
 		} else if (cube.needsRelightAfterLoad()) {
 			// queue the cube for re-lighting
 			WorldServerContext.get(this.worldServer).getLightingManager().queueFirstLightCalculation(cubeAddress);
+		} else if (cube.getBlockColumnsToRelight() != null) {
+			// only some blocks changed in the column while the cube was unloaded
+			WorldServerContext.get(this.worldServer).getLightingManager().queueBlockColumnRelight(cube, cube.getBlockColumnsToRelight());
+			cube.setBlockColumnsToRelight(null);
 		}
 		
 		// add the column to the cache
@@ -52,6 +52,9 @@ public class WorldServerContext extends WorldContext {
 	}
 
 	public static void clear() {
+		for (WorldServerContext context : instances.values()) {
+			context.generatorPipeline.shutdown();
+		}
 		instances.clear();
 	}
 	
@@ -78,6 +81,9 @@ public class WorldServerContext extends WorldContext {
 		this.generatorPipeline.addStage(GeneratorStage.LIGHTING, new FirstLightProcessor("Lighting", this.serverCubeCache, 5));
 		this.generatorPipeline.addStage(GeneratorStage.FEATURES, new FeatureProcessor("Population", worldServer, this.serverCubeCache, 100));
 		this.generatorPipeline.checkStages();
+		if (GeneratorPipelineStats.Enabled) {
+			this.generatorPipeline.enableStats("DIM" + worldServer.provider.getDimensionId());
+		}
 	}
 
 	@Override
@@ -23,6 +23,8 @@
  */
 package cubicchunks.util;
 
+import java.util.Arrays;
+
 public class FastIntQueue {
 	
 	private int[] m_queue;
@@ -30,7 +32,11 @@ public class FastIntQueue {
 	private int m_stop;
 	
 	public FastIntQueue() {
-		m_queue = new int[32768];
+		this(32768);
+	}
+	
+	public FastIntQueue(int capacity) {
+		m_queue = new int[capacity];
 		clear();
 	}
 	
@@ -39,6 +45,10 @@ public class FastIntQueue {
 	}
 	
 	public void add(int val) {
+		if (m_stop == m_queue.length) {
+			// values are never removed until clear(), so grow instead of wrapping around
+			m_queue = Arrays.copyOf(m_queue, m_queue.length * 2);
+		}
 		m_queue[m_stop++] = val;
 	}
 	
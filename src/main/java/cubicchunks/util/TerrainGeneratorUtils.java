@@ -34,11 +34,34 @@ import static cubicchunks.util.MathHelper.lerp;
 import cubicchunks.world.cube.Cube;
 
 public final class TerrainGeneratorUtils {
+
+	/**
+	 * Number of density values in a single cube
+	 */
+	public static final int CUBE_VOLUME = CUBE_SIZE * CUBE_SIZE * CUBE_SIZE;
+
+	/**
+	 * Returns index of the given cube-local position in a flat density buffer. Values are stored x-major with y in the
+	 * innermost position, so a vertical run of density values is contiguous in memory.
+	 */
+	public static int getDensityIndex(final int x, final int y, final int z) {
+		return (x * CUBE_SIZE + z) * CUBE_SIZE + y;
+	}
+
+	/**
+	 * Creates a flat density buffer large enough to hold one cube. Callers are expected to keep it and reuse it for
+	 * every cube they generate.
+	 */
+	public static double[] newDensityBuffer() {
+		return new double[CUBE_VOLUME];
+	}
+
 	/**
-	 * expand the noise array to 16x16x16 by interpolating the values.
+	 * expand the noise array to 16x16x16 by interpolating the values, writing the result into the given flat buffer.
 	 */
-	public static double[][][] expandNoiseArray(final double[][][] input) {
-		double[][][] result = getNewCubeSizedArray();
+	public static void expandNoiseArray(final double[][][] input, final double[] out) {
+		assert out.length >= CUBE_VOLUME;
+
 		int xSteps = X_SECTION_SIZE - 1;
 		int ySteps = Y_SECTION_SIZE - 1;
 		int zSteps = Z_SECTION_SIZE - 1;
@@ -78,44 +101,56 @@ public final class TerrainGeneratorUtils {
 							double xy0z = lerp(zd, xy0z0, xy0z1);
 							double xy1z = lerp(zd, xy1z0, xy1z1);
 
+							// y is the innermost index, so this run is contiguous
+							int index = getDensityIndex(xRel, noiseY * ySteps, zRel);
 							for (int y = 0; y < ySteps; y++) {
-								int yRel = noiseY * ySteps + y;
-
 								double yd = (double) y / ySteps;
 
 								// interpolate along y
-								double xyz = lerp(yd, xy0z, xy1z);
-
-								result[xRel][yRel][zRel] = xyz;
+								out[index + y] = lerp(yd, xy0z, xy1z);
 							}
 						}
 					}
 				}
 			}
 		}
-
-		return result;
 	}
 
-	public static double[][][] getNewCubeSizedArray() {
-		return new double[CUBE_SIZE][CUBE_SIZE][CUBE_SIZE];
+	/**
+	 * Subtracts the absolute block height from every value in the given flat density buffer, in place.
+	 */
+	public static void applyHeightGradient(final int cubeY, final double[] density) {
+		final int cubeYMin = Coords.cubeToMinBlock(cubeY);
+
+		for (int x = 0; x < CUBE_SIZE; x++) {
+			for (int z = 0; z < CUBE_SIZE; z++) {
+				int index = getDensityIndex(x, 0, z);
+				for (int y = 0; y < CUBE_SIZE; y++) {
+					density[index + y] -= cubeYMin + y;
+				}
+			}
+		}
 	}
 
-	public static double[][][] applyHeightGradient(final Cube cube, final double[][][] rawDensity) {
-		final double [][][] result = getNewCubeSizedArray();
-		
-		final int cubeYMin = Coords.cubeToMinBlock(cube.getY());
-		
+	/**
+	 * Copies a flat density buffer into a newly allocated 16x16x16 array. Only needed by code that still uses
+	 * {@link cubicchunks.api.generators.ITerrainGenerator#generate(Cube)}.
+	 */
+	public static double[][][] toCubeSizedArray(final double[] density) {
+		final double[][][] result = getNewCubeSizedArray();
+
 		for (int x = 0; x < CUBE_SIZE; x++) {
 			for (int z = 0; z < CUBE_SIZE; z++) {
 				for (int y = 0; y < CUBE_SIZE; y++) {
-					final int yAbs = cubeYMin + y;
-					
-					result[x][y][z] = rawDensity[x][y][z] - yAbs;
+					result[x][y][z] = density[getDensityIndex(x, y, z)];
 				}
 			}
 		}
-		
+
 		return result;
 	}
+
+	public static double[][][] getNewCubeSizedArray() {
+		return new double[CUBE_SIZE][CUBE_SIZE][CUBE_SIZE];
+	}
 }
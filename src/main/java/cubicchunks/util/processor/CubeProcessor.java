@@ -48,11 +48,23 @@ public abstract class CubeProcessor extends QueueProcessor<Long> {
 			if (cube == null) {
 				// this cube probably got unloaded before it could be processed
 				// just drop it from the queue
+				if (this.stats != null) {
+					this.stats.dropped();
+				}
 				continue;
 			}
 			
 			// add unsuccessful calculations back onto the queue
+			long timeStart = this.stats != null ? System.nanoTime() : 0;
 			boolean success = calculate(cube);
+			if (this.stats != null) {
+				long nanos = System.nanoTime() - timeStart;
+				if (success) {
+					this.stats.processed(nanos);
+				} else {
+					this.stats.deferred(nanos);
+				}
+			}
 			if (success) {
 				this.processedAddresses.add(address);
 			} else {
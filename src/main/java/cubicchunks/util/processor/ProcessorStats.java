@@ -0,0 +1,110 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.util.processor;
+
+import cubicchunks.perf.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a QueueProcessor. Processors only keep these when stats are turned on, so every update is guarded by a
+ * null check and costs nothing otherwise. All updates are thread safe.
+ */
+public class ProcessorStats {
+
+	private final AtomicLong numProcessed;
+	private final AtomicLong numDeferred;
+	private final AtomicLong numDropped;
+	private final ConcurrentMap<String, AtomicLong> deferReasons;
+	private final LatencyHistogram latency;
+
+	public ProcessorStats() {
+		this.numProcessed = new AtomicLong();
+		this.numDeferred = new AtomicLong();
+		this.numDropped = new AtomicLong();
+		this.deferReasons = new ConcurrentHashMap<>();
+		this.latency = new LatencyHistogram();
+	}
+
+	public void processed(long nanos) {
+		this.numProcessed.incrementAndGet();
+		this.latency.record(nanos);
+	}
+
+	public void deferred(long nanos) {
+		this.numDeferred.incrementAndGet();
+		this.latency.record(nanos);
+	}
+
+	public void deferred() {
+		this.numDeferred.incrementAndGet();
+	}
+
+	public void dropped() {
+		this.numDropped.incrementAndGet();
+	}
+
+	public void deferredBecause(String reason) {
+		AtomicLong counter = this.deferReasons.get(reason);
+		if (counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = this.deferReasons.putIfAbsent(reason, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		counter.incrementAndGet();
+	}
+
+	public long getNumProcessed() {
+		return this.numProcessed.get();
+	}
+
+	public long getNumDeferred() {
+		return this.numDeferred.get();
+	}
+
+	public long getNumDropped() {
+		return this.numDropped.get();
+	}
+
+	public Map<String, Long> getDeferReasons() {
+		Map<String, Long> reasons = new TreeMap<>();
+		for (Map.Entry<String, AtomicLong> entry : this.deferReasons.entrySet()) {
+			reasons.put(entry.getKey(), entry.getValue().get());
+		}
+		return reasons;
+	}
+
+	/**
+	 * Time spent on each item, whether it was processed or deferred.
+	 */
+	public LatencyHistogram getLatency() {
+		return this.latency;
+	}
+}
@@ -40,6 +40,8 @@ public abstract class QueueProcessor<T> {
 	protected Set<T> incomingAddresses;
 	protected Set<T> processedAddresses;
 	protected Set<T> deferredAddresses;
+	// null unless stats are turned on
+	protected ProcessorStats stats;
 	
 	public QueueProcessor(String name, ICubeCache cache, int batchSize) {
 		this.name = name;
@@ -56,6 +58,14 @@ public abstract class QueueProcessor<T> {
 		return this.name;
 	}
 	
+	public ProcessorStats getStats() {
+		return this.stats;
+	}
+	
+	public void setStats(ProcessorStats stats) {
+		this.stats = stats;
+	}
+	
 	public void add(T address) {
 		this.queue.add(address);
 	}
@@ -73,7 +83,7 @@ public abstract class QueueProcessor<T> {
 		this.deferredAddresses.clear();
 		
 		// is there time left?
-		while (System.currentTimeMillis() < timeStop) {
+		while (System.currentTimeMillis() < timeStop && canProcessBatch()) {
 			
 			// get a batch of addresses
 			this.incomingAddresses.clear();
@@ -109,6 +119,13 @@ public abstract class QueueProcessor<T> {
 		return this.processedAddresses.size();
 	}
 	
+	/**
+	 * Returns how many addresses were put back on the queue in the last run.
+	 */
+	public int getNumDeferred() {
+		return this.deferredAddresses.size();
+	}
+	
 	public Set<T> getProcessedAddresses() {
 		return this.processedAddresses;
 	}
@@ -117,9 +134,31 @@ public abstract class QueueProcessor<T> {
 		return String.format("\t%15s: %3d processed, %d remaining", this.name, this.processedAddresses.size(), this.queue.size());
 	}
 	
+	/**
+	 * Call before deferring an address to record why it couldn't be processed yet.
+	 */
+	protected void deferredBecause(String reason) {
+		if (this.stats != null) {
+			this.stats.deferredBecause(reason);
+		}
+	}
+	
 	public void processBatch() {
 		processBatch(null);
 	}
 	
+	/**
+	 * Returns false if the processor can't take another batch right now, processQueueUntil() stops then.
+	 */
+	protected boolean canProcessBatch() {
+		return true;
+	}
+	
+	/**
+	 * Stops any threads the processor started. It can't be used anymore afterwards.
+	 */
+	public void shutdown() {
+	}
+	
 	public abstract void processBatch(Progress progress);
 }
@@ -24,6 +24,7 @@
 package cubicchunks.world;
 
 import com.google.common.base.Throwables;
+import cubicchunks.util.VarInts;
 import cubicchunks.world.column.Column;
 
 import java.io.ByteArrayInputStream;
@@ -57,6 +58,11 @@ public class ClientOpacityIndex implements IOpacityIndex {
 		//do nothing, we return values based on real blocks
 	}
 
+	@Override
+	public void setOpacities(int localX, int localZ, int minBlockY, int[] opacities) {
+		//do nothing, we return values based on real blocks
+	}
+
 	@Override
 	public Integer getTopBlockY(int localX, int localZ) {
 		int v = hmap[getIndex(localX, localZ)];
@@ -82,14 +88,60 @@ public class ClientOpacityIndex implements IOpacityIndex {
 		return heightMapLowest;
 	}
 
+	@Override
+	public SegmentIterator getSegments(final int localX, final int localZ, final int minBlockY, final int maxBlockY) {
+		// there are no segments on the client, group the blocks while walking down
+		return new SegmentIterator() {
+
+			private int nextBlockY = maxBlockY;
+			private int opacity;
+			private int runMinBlockY;
+			private int runMaxBlockY;
+
+			@Override
+			public boolean next() {
+				if (this.nextBlockY < minBlockY) {
+					return false;
+				}
+				this.runMaxBlockY = this.nextBlockY;
+				this.opacity = ClientOpacityIndex.this.getOpacity(localX, this.nextBlockY, localZ);
+				do {
+					this.nextBlockY--;
+				} while (this.nextBlockY >= minBlockY &&
+						ClientOpacityIndex.this.getOpacity(localX, this.nextBlockY, localZ) == this.opacity);
+				this.runMinBlockY = this.nextBlockY + 1;
+				return true;
+			}
+
+			@Override
+			public int getOpacity() {
+				return this.opacity;
+			}
+
+			@Override
+			public int getMinBlockY() {
+				return this.runMinBlockY;
+			}
+
+			@Override
+			public int getMaxBlockY() {
+				return this.runMaxBlockY;
+			}
+		};
+	}
+
 	public void setHeight(int localX, int localZ, int height) {
 		hmap[getIndex(localX, localZ)] = height;
+		heightMapLowest = NONE;
 	}
 
 	public void setBottomBlockY(int localX, int localZ, int height) {
 		bottomBlocks[getIndex(localX, localZ)] = height;
 	}
 
+	/**
+	 * Reads the data written by OpacityIndex.getDataForClient()
+	 */
 	public void setData(byte[] data) {
 		try {
 			ByteArrayInputStream buf = new ByteArrayInputStream(data);
@@ -101,6 +153,40 @@ public class ClientOpacityIndex implements IOpacityIndex {
 			for (int i = 0; i < 256; i++) {
 				hmap[i] = in.readInt();
 			}
+			heightMapLowest = NONE;
+
+			in.close();
+		} catch (IOException e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Reads the data written by OpacityIndex.getCompactDataForClient()
+	 */
+	public void setCompactData(byte[] data) {
+		try {
+			ByteArrayInputStream buf = new ByteArrayInputStream(data);
+			DataInputStream in = new DataInputStream(buf);
+
+			int format = in.readUnsignedByte();
+			if (format != OpacityIndex.CompactFormat) {
+				throw new IOException("Unknown heightmap format " + format);
+			}
+			int lastBottom = 0;
+			int lastTop = 0;
+			for (int i = 0; i < 256; i++) {
+				if (in.readUnsignedByte() == 0) {
+					hmap[i] = NONE;
+					bottomBlocks[i] = NONE;
+					continue;
+				}
+				bottomBlocks[i] = lastBottom + VarInts.readSigned(in);
+				hmap[i] = lastTop + VarInts.readSigned(in);
+				lastBottom = bottomBlocks[i];
+				lastTop = hmap[i];
+			}
+			heightMapLowest = NONE;
 
 			in.close();
 		} catch (IOException e) {
@@ -43,6 +43,15 @@ public interface IOpacityIndex {
 	 */
 	void setOpacity(int localX, int blockY, int localZ, int opacity);
 
+	/**
+	 * Set opacity of a range of blocks in one x/z column. Same as calling setOpacity for each block, but faster.
+	 * @param localX local block X position (0..15).
+	 * @param localZ local block Z position (0..15)
+	 * @param minBlockY block Y position of the first value in opacities.
+	 * @param opacities new opacities (0..255) of blocks from minBlockY to minBlockY + opacities.length - 1
+	 */
+	void setOpacities(int localX, int localZ, int minBlockY, int[] opacities);
+
 	/**
 	 * Returns Y position of the top non-transparent block.
 	 * @param localX local block X position (0..15).
@@ -63,4 +72,38 @@ public interface IOpacityIndex {
 	 * Returns the lowest value that could be returned by getTopBlockY (for any localX and localZ values).
 	 */
 	int getLowestTopBlockY();
+
+	/**
+	 * Returns an iterator over the runs of blocks with the same opacity in one x/z column, from maxBlockY down to
+	 * minBlockY. Faster than calling getOpacity for each block. Don't change the index while iterating.
+	 * @param localX local block X position (0..15).
+	 * @param localZ local block Z position (0..15)
+	 * @param minBlockY lowest block Y position to iterate over.
+	 * @param maxBlockY highest block Y position to iterate over.
+	 */
+	SegmentIterator getSegments(int localX, int localZ, int minBlockY, int maxBlockY);
+
+	interface SegmentIterator {
+
+		/**
+		 * Moves to the next run below the current one.
+		 * @return false if there are no more runs in the range
+		 */
+		boolean next();
+
+		/**
+		 * Returns the opacity (0..255) of all blocks in the current run.
+		 */
+		int getOpacity();
+
+		/**
+		 * Returns the block Y position of the lowest block in the current run, at least minBlockY.
+		 */
+		int getMinBlockY();
+
+		/**
+		 * Returns the block Y position of the highest block in the current run, at most maxBlockY.
+		 */
+		int getMaxBlockY();
+	}
 }
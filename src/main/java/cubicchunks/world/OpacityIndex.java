@@ -24,34 +24,64 @@
 package cubicchunks.world;
 
 import cubicchunks.util.Bits;
+import cubicchunks.util.VarInts;
 
 import java.io.*;
+import java.util.Arrays;
 
 
 public class OpacityIndex implements IOpacityIndex {
 
 	private static int None = Integer.MIN_VALUE;
 
-	// it's hard to find a segment value we can't use
-	// this is the best I can do
-	// a 1-block segment at the very top of the world with opacity zero
-	// seems a bit redundant =P
-	private static int NoneSegment = packSegment(0x7fffff, 0);
+	// First byte of the data written by writeData() and getCompactDataForClient(). The old format started with the ymin
+	// of the first column as an int, that's None or a 24 bit block y, so its first byte is always 0x00, 0x80 or 0xff.
+	public static final int CompactFormat = 1;
+
+	// room for more segments each x/z column gets when it moves in the arena, one edit adds at most two
+	private static final int SegmentSlack = 2;
+	private static final int MinArenaSize = 64;
 
 	private int[] m_ymin;
 	private int[] m_ymax;
-	private int[][] m_segments;
+
+	// The segments of all x/z columns are packed into one array. Each column has a slot in it with some room to spare,
+	// so most edits don't allocate anything. A column that outgrows its slot moves to the end and leaves a hole, the
+	// holes are only compacted away when the arena is full.
+	private int[] m_arena;
+	private int m_arenaSize;
+	private int[] m_segmentOffsets;
+	private int[] m_segmentCounts;
+	private int[] m_segmentCapacities;
 
 	private int heightMapLowest = None;
 
-	private int m_hash;
-	private boolean m_needsHash;
+	// A tree of the hashes of the x/z columns, the leaves at 256 + i and the root at 1. Each node has the hash of its
+	// columns and 37^(number of values hashed), so an edit only rehashes its column and the 8 nodes above it.
+	private int[] m_hashTree;
+	private int[] m_hashTreeMultipliers;
+
+	// scratch space for rebuilding the segments of one column
+	private int[] m_runs;
+	private int[] m_oldRuns;
+	private int[] m_rangeRuns;
+
+	// counts the changes, cubes remember it when they are saved to find out what changed while they were unloaded
+	private int m_version;
+	// the last two changes of each x/z column, the version and the highest changed block y, the newest one second
+	private int[] m_changeVersions;
+	private int[] m_changeMaxYs;
 
 	public OpacityIndex() {
 
 		m_ymin = new int[16 * 16];
 		m_ymax = new int[16 * 16];
-		m_segments = new int[16 * 16][];
+
+		m_arena = new int[0];
+		m_arenaSize = 0;
+		m_segmentOffsets = new int[16 * 16];
+		m_segmentCounts = new int[16 * 16];
+		m_segmentCapacities = new int[16 * 16];
 
 		// init to empty
 		for (int i = 0; i < 16 * 16; i++) {
@@ -59,8 +89,18 @@ public class OpacityIndex implements IOpacityIndex {
 			m_ymax[i] = None;
 		}
 
-		m_hash = 0;
-		m_needsHash = true;
+		m_hashTree = new int[16 * 16 * 2];
+		m_hashTreeMultipliers = new int[16 * 16 * 2];
+
+		m_runs = new int[16];
+		m_oldRuns = new int[16];
+		m_rangeRuns = new int[16];
+
+		m_version = 0;
+		m_changeVersions = new int[16 * 16 * 2];
+		m_changeMaxYs = new int[16 * 16 * 2];
+
+		rebuildHash();
 	}
 
 	@Override
@@ -73,19 +113,21 @@ public class OpacityIndex implements IOpacityIndex {
 		}
 
 		// are there segments for this column?
-		int[] segments = m_segments[i];
-		if (segments == null) {
+		int numSegments = m_segmentCounts[i];
+		if (numSegments == 0) {
 			// this column is black or white
 			// there are no shades of grey =P
 			return 255;
 		}
 
 		// scan the shades of grey with binary search
+		int[] segments = m_arena;
+		int offset = m_segmentOffsets[i];
 		int mini = 0;
-		int maxi = getLastSegmentIndex(segments);
+		int maxi = numSegments - 1;
 		while (mini <= maxi) {
 			int midi = (mini + maxi) >>> 1;
-			int midPos = unpackPos(segments[midi]);
+			int midPos = unpackPos(segments[offset + midi]);
 
 			if (midPos < blockY) {
 				mini = midi + 1;
@@ -93,7 +135,7 @@ public class OpacityIndex implements IOpacityIndex {
 				maxi = midi - 1;
 			} else {
 				// hit a segment start exactly
-				return unpackOpacity(segments[midi]);
+				return unpackOpacity(segments[offset + midi]);
 			}
 		}
 
@@ -105,16 +147,21 @@ public class OpacityIndex implements IOpacityIndex {
 
 		// didn't hit a segment start, mini is the correct answer + 1
 		assert (mini > 0) : String.format("can't find %d in %s", blockY, dump(i));
-		return unpackOpacity(segments[mini - 1]);
+		return unpackOpacity(segments[offset + mini - 1]);
 	}
 
 	@Override
 	public void setOpacity(int localX, int blockY, int localZ, int opacity) {
+		if (getOpacity(localX, blockY, localZ) == opacity) {
+			return;
+		}
+
 		// what's the range?
 		int xzIndex = getIndex(localX, localZ);
+		logChange(xzIndex, blockY);
 
 		// try to stay in no-segments mode as long as we can
-		if (m_segments[xzIndex] == null) {
+		if (m_segmentCounts[xzIndex] == 0) {
 			if (opacity == 255) {
 				setOpacityNoSegmentsOpaque(xzIndex, blockY);
 			} else if (opacity == 0) {
@@ -126,7 +173,275 @@ public class OpacityIndex implements IOpacityIndex {
 			setOpacityWithSegments(xzIndex, blockY, opacity);
 		}
 		heightMapLowest = None;
-		m_needsHash = true;
+		updateHash(xzIndex);
+	}
+
+	@Override
+	public void setOpacities(int localX, int localZ, int minBlockY, int[] opacities) {
+		// turn the range into runs first
+		m_rangeRuns = ensureCapacity(m_rangeRuns, opacities.length);
+		int[] rangeRuns = m_rangeRuns;
+		int numRangeRuns = 0;
+		int opacity = 0;
+		for (int n = 0; n < opacities.length; n++) {
+			if (opacities[n] != opacity) {
+				opacity = opacities[n];
+				rangeRuns[numRangeRuns++] = packSegment(minBlockY + n, opacity);
+			}
+		}
+		replaceRuns(getIndex(localX, localZ), minBlockY, minBlockY + opacities.length - 1, rangeRuns, numRangeRuns);
+	}
+
+	/**
+	 * Replaces the opacities of blocks minBlockY to maxBlockY of one x/z column. The range is given as runs, packed
+	 * segments (see packSegment()) in bottom up order that start where the opacity changes. Blocks in the range below
+	 * the first run are transparent. This is what OpacityIndexBuilder uses, it never needs the opacity of each block.
+	 */
+	public void replaceRuns(int localX, int localZ, int minBlockY, int maxBlockY, int[] rangeRuns, int numRangeRuns) {
+		replaceRuns(getIndex(localX, localZ), minBlockY, maxBlockY, rangeRuns, numRangeRuns);
+	}
+
+	private void replaceRuns(int i, int minBlockY, int maxBlockY, int[] rangeRuns, int numRangeRuns) {
+		// Work on the column as a list of runs. A run is a segment that starts where the opacity changes,
+		// everything below the first run is transparent.
+		int numOldRuns = getRuns(i);
+		int[] oldRuns = m_oldRuns;
+		m_runs = ensureCapacity(m_runs, numOldRuns + numRangeRuns + 2);
+		int[] runs = m_runs;
+		int numRuns = 0;
+		int opacity = 0;
+
+		// keep the runs below the range
+		int opacityAbove = 0;
+		int j = 0;
+		for (; j < numOldRuns && unpackPos(oldRuns[j]) <= maxBlockY + 1; j++) {
+			if (unpackPos(oldRuns[j]) < minBlockY) {
+				runs[numRuns++] = oldRuns[j];
+				opacity = unpackOpacity(oldRuns[j]);
+			}
+			opacityAbove = unpackOpacity(oldRuns[j]);
+		}
+
+		// replace the range, it starts out transparent
+		if (opacity != 0 && (numRangeRuns == 0 || unpackPos(rangeRuns[0]) > minBlockY)) {
+			opacity = 0;
+			runs[numRuns++] = packSegment(minBlockY, opacity);
+		}
+		for (int n = 0; n < numRangeRuns; n++) {
+			assert unpackPos(rangeRuns[n]) >= minBlockY && unpackPos(rangeRuns[n]) <= maxBlockY;
+			if (unpackOpacity(rangeRuns[n]) != opacity) {
+				opacity = unpackOpacity(rangeRuns[n]);
+				runs[numRuns++] = rangeRuns[n];
+			}
+		}
+
+		// and keep the runs above it
+		if (opacityAbove != opacity) {
+			opacity = opacityAbove;
+			runs[numRuns++] = packSegment(maxBlockY + 1, opacity);
+		}
+		for (; j < numOldRuns; j++) {
+			runs[numRuns++] = oldRuns[j];
+		}
+
+		// Both lists only have runs where the opacity changes, so they are the same if the column didn't change.
+		// Builders rewrite every column of a cube, and unchanged ones must not look changed to getChangesSince().
+		if (isSameRuns(runs, numRuns, oldRuns, numOldRuns)) {
+			return;
+		}
+		logChange(i, maxBlockY);
+		setRuns(i, runs, numRuns);
+		heightMapLowest = None;
+		updateHash(i);
+	}
+
+	public int getVersion() {
+		return m_version;
+	}
+
+	/**
+	 * Finds the x/z columns with changes since the given version that could change the sky light at or above
+	 * minBlockY. Changes cast shadows down, and light spreads at most 15 blocks up from them.
+	 * @param changedColumns set to true for each changed x/z column, in z*16 + x order
+	 * @return false if the version is newer than this index, then nothing is known about the changes
+	 */
+	public boolean getChangesSince(int version, int minBlockY, boolean[] changedColumns) {
+		if (version > m_version) {
+			return false;
+		}
+		for (int i = 0; i < 16 * 16; i++) {
+			for (int j = i * 2; j <= i * 2 + 1; j++) {
+				if (m_changeVersions[j] > version && m_changeMaxYs[j] + 15 >= minBlockY) {
+					changedColumns[i] = true;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the version and the last changes of each x/z column, to be saved along with getData(). Only the slots
+	 * that hold a change are written, as varints: the gap to the slot before, how many versions ago the change was
+	 * and its highest block y. An index that never changed takes two bytes.
+	 */
+	public byte[] getChangeLog() {
+		try {
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buf);
+
+			int numChanges = 0;
+			for (int v : m_changeVersions) {
+				if (v != 0) {
+					numChanges++;
+				}
+			}
+			VarInts.writeUnsigned(out, m_version);
+			VarInts.writeUnsigned(out, numChanges);
+			int lastSlot = 0;
+			for (int j = 0; j < m_changeVersions.length; j++) {
+				if (m_changeVersions[j] == 0) {
+					continue;
+				}
+				VarInts.writeUnsigned(out, j - lastSlot);
+				VarInts.writeUnsigned(out, m_version - m_changeVersions[j]);
+				VarInts.writeSigned(out, m_changeMaxYs[j]);
+				lastSlot = j;
+			}
+
+			out.close();
+			return buf.toByteArray();
+		} catch (IOException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * Reads a change log written by getChangeLog().
+	 */
+	public void setChangeLog(byte[] log) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(log));
+			Arrays.fill(m_changeVersions, 0);
+			Arrays.fill(m_changeMaxYs, 0);
+			m_version = VarInts.readUnsigned(in);
+			int numChanges = VarInts.readUnsigned(in);
+			int slot = 0;
+			for (int n = 0; n < numChanges; n++) {
+				slot += VarInts.readUnsigned(in);
+				if (slot >= m_changeVersions.length) {
+					throw new IOException("Wrong change log slot " + slot);
+				}
+				m_changeVersions[slot] = m_version - VarInts.readUnsigned(in);
+				m_changeMaxYs[slot] = VarInts.readSigned(in);
+			}
+			in.close();
+		} catch (IOException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * Reads a change log saved as the full int array of every slot, before only the changes were written.
+	 */
+	public void setOldChangeLog(int[] log) {
+		if (log.length != 1 + m_changeVersions.length * 2) {
+			throw new IllegalArgumentException("Wrong change log length " + log.length);
+		}
+		m_version = log[0];
+		System.arraycopy(log, 1, m_changeVersions, 0, m_changeVersions.length);
+		System.arraycopy(log, 1 + m_changeVersions.length, m_changeMaxYs, 0, m_changeMaxYs.length);
+	}
+
+	private void logChange(int i, int maxBlockY) {
+		m_version++;
+		int older = i * 2;
+		int newer = i * 2 + 1;
+		if (m_changeVersions[newer] != 0) {
+			// only two changes fit, fold the older two together. That can only make cubes relight more, not less.
+			m_changeMaxYs[older] = m_changeVersions[older] == 0 ?
+				m_changeMaxYs[newer] : Math.max(m_changeMaxYs[older], m_changeMaxYs[newer]);
+			m_changeVersions[older] = m_changeVersions[newer];
+		}
+		m_changeVersions[newer] = m_version;
+		m_changeMaxYs[newer] = maxBlockY;
+	}
+
+	/**
+	 * Writes the runs of column i into m_oldRuns, returns the number of runs
+	 */
+	private int getRuns(int i) {
+		if (m_ymin[i] == None) {
+			return 0;
+		}
+		int lastSegment = m_segmentCounts[i] - 1;
+		if (lastSegment < 0) {
+			m_oldRuns = ensureCapacity(m_oldRuns, 2);
+			m_oldRuns[0] = packSegment(m_ymin[i], 255);
+			m_oldRuns[1] = packSegment(m_ymax[i] + 1, 0);
+			return 2;
+		}
+		m_oldRuns = ensureCapacity(m_oldRuns, lastSegment + 2);
+		int[] runs = m_oldRuns;
+		int[] segments = m_arena;
+		int offset = m_segmentOffsets[i];
+		int numRuns = 0;
+		int opacity = 0;
+		for (int j = 0; j <= lastSegment; j++) {
+			// only the last segment starting at or below ymin counts, and only from ymin
+			if (j < lastSegment && unpackPos(segments[offset + j + 1]) <= m_ymin[i]) {
+				continue;
+			}
+			int pos = Math.max(unpackPos(segments[offset + j]), m_ymin[i]);
+			if (pos > m_ymax[i]) {
+				break;
+			}
+			if (unpackOpacity(segments[offset + j]) != opacity) {
+				opacity = unpackOpacity(segments[offset + j]);
+				runs[numRuns++] = packSegment(pos, opacity);
+			}
+		}
+		if (opacity != 0) {
+			runs[numRuns++] = packSegment(m_ymax[i] + 1, 0);
+		}
+		return numRuns;
+	}
+
+	/**
+	 * Sets the range and segments of column i from runs. The last run has to be transparent.
+	 */
+	private void setRuns(int i, int[] runs, int numRuns) {
+		if (numRuns == 0) {
+			removeSegments(i);
+			return;
+		}
+		assert unpackOpacity(runs[numRuns - 1]) == 0;
+		m_ymin[i] = unpackPos(runs[0]);
+		m_ymax[i] = unpackPos(runs[numRuns - 1]) - 1;
+		if (numRuns == 2 && unpackOpacity(runs[0]) == 255) {
+			m_segmentCounts[i] = 0;
+		} else {
+			resizeSegments(i, numRuns - 1);
+			System.arraycopy(runs, 0, m_arena, m_segmentOffsets[i], numRuns - 1);
+		}
+	}
+
+	private static boolean isSameRuns(int[] runs, int numRuns, int[] otherRuns, int numOtherRuns) {
+		if (numRuns != numOtherRuns) {
+			return false;
+		}
+		for (int n = 0; n < numRuns; n++) {
+			if (runs[n] != otherRuns[n]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] ensureCapacity(int[] array, int size) {
+		if (array.length >= size) {
+			return array;
+		}
+		return new int[Math.max(size, array.length * 2)];
 	}
 
 	private void setOpacityNoSegmentsOpaque(int xzIndex, int blockY) {
@@ -148,19 +463,17 @@ public class OpacityIndex implements IOpacityIndex {
 
 		// making a new section?
 		if (blockY > m_ymax[xzIndex] + 1) {
-			m_segments[xzIndex] = new int[]{
-					packSegment(m_ymin[xzIndex], 255),
-					packSegment(m_ymax[xzIndex] + 1, 0),
-					packSegment(blockY, 255)
-			};
+			resizeSegments(xzIndex, 3);
+			setSegment(xzIndex, 0, packSegment(m_ymin[xzIndex], 255));
+			setSegment(xzIndex, 1, packSegment(m_ymax[xzIndex] + 1, 0));
+			setSegment(xzIndex, 2, packSegment(blockY, 255));
 			m_ymax[xzIndex] = blockY;
 			return;
 		} else if (blockY < m_ymin[xzIndex] - 1) {
-			m_segments[xzIndex] = new int[]{
-					packSegment(blockY, 255),
-					packSegment(blockY + 1, 0),
-					packSegment(m_ymin[xzIndex], 255)
-			};
+			resizeSegments(xzIndex, 3);
+			setSegment(xzIndex, 0, packSegment(blockY, 255));
+			setSegment(xzIndex, 1, packSegment(blockY + 1, 0));
+			setSegment(xzIndex, 2, packSegment(m_ymin[xzIndex], 255));
 			m_ymin[xzIndex] = blockY;
 			return;
 		}
@@ -203,11 +516,10 @@ public class OpacityIndex implements IOpacityIndex {
 
 		// we must be bisecting the range, need to make segments
 		assert (blockY >= m_ymin[i] && blockY <= m_ymax[i]) : String.format("%d -> [%d,%d]", blockY, m_ymin[i], m_ymax[i]);
-		m_segments[i] = new int[]{
-				packSegment(m_ymin[i], 255),
-				packSegment(blockY, 0),
-				packSegment(blockY + 1, 255)
-		};
+		resizeSegments(i, 3);
+		setSegment(i, 0, packSegment(m_ymin[i], 255));
+		setSegment(i, 1, packSegment(blockY, 0));
+		setSegment(i, 2, packSegment(blockY + 1, 255));
 	}
 
 	private void setOpacityNoSegmentsTranslucent(int i, int blockY, int opacity) {
@@ -215,9 +527,8 @@ public class OpacityIndex implements IOpacityIndex {
 		if (m_ymin[i] == None && m_ymax[i] == None) {
 
 			// make a new segment
-			m_segments[i] = new int[]{
-					packSegment(blockY, opacity)
-			};
+			resizeSegments(i, 1);
+			setSegment(i, 0, packSegment(blockY, opacity));
 			m_ymin[i] = blockY;
 			m_ymax[i] = blockY;
 
@@ -230,22 +541,20 @@ public class OpacityIndex implements IOpacityIndex {
 	}
 
 	private void makeSegmentsFromOpaqueRange(int i) {
-		assert (m_segments[i] == null);
+		assert (m_segmentCounts[i] == 0);
 		assert (m_ymin[i] != None);
 		assert (m_ymax[i] != None);
-		m_segments[i] = new int[]{
-				packSegment(m_ymin[i], 255)
-		};
+		resizeSegments(i, 1);
+		setSegment(i, 0, packSegment(m_ymin[i], 255));
 	}
 
 	private void setOpacityWithSegments(int i, int blockY, int opacity) {
 		// binary search to find the insertion point
-		int[] segments = m_segments[i];
 		int minj = 0;
-		int maxj = getLastSegmentIndex(segments);
+		int maxj = m_segmentCounts[i] - 1;
 		while (minj <= maxj) {
 			int midj = (minj + maxj) >>> 1;
-			int midPos = unpackPos(segments[midj]);
+			int midPos = unpackPos(getSegment(i, midj));
 
 			if (midPos < blockY) {
 				minj = midj + 1;
@@ -271,37 +580,35 @@ public class OpacityIndex implements IOpacityIndex {
 	}
 
 	private void setOpacityWithSegmentsAt(int i, int blockY, int j, int opacity) {
-		int[] segments = m_segments[i];
-
 		// will the opacity even change?
-		int oldSegment = segments[j];
+		int oldSegment = getSegment(i, j);
 		int oldOpacity = unpackOpacity(oldSegment);
 		if (opacity == oldOpacity) {
 			return;
 		}
 
 		boolean isFirstSegment = j == 0;
-		boolean isLastSegment = j == getLastSegmentIndex(segments);
+		boolean isLastSegment = j == m_segmentCounts[i] - 1;
 
 		boolean sameOpacityAsPrev;
 		if (isFirstSegment) {
 			sameOpacityAsPrev = opacity == 0;
 		} else {
-			sameOpacityAsPrev = opacity == unpackOpacity(segments[j - 1]);
+			sameOpacityAsPrev = opacity == unpackOpacity(getSegment(i, j - 1));
 		}
 
 		boolean sameOpacityAsNext;
 		if (isLastSegment) {
 			sameOpacityAsNext = opacity == 0;
 		} else {
-			sameOpacityAsNext = opacity == unpackOpacity(segments[j + 1]);
+			sameOpacityAsNext = opacity == unpackOpacity(getSegment(i, j + 1));
 		}
 
 		boolean isRoomAfter;
 		if (isLastSegment) {
 			isRoomAfter = m_ymax[i] > blockY;
 		} else {
-			isRoomAfter = unpackPos(segments[j + 1]) > blockY + 1;
+			isRoomAfter = unpackPos(getSegment(i, j + 1)) > blockY + 1;
 		}
 
 		if (sameOpacityAsPrev && sameOpacityAsNext) {
@@ -313,11 +620,10 @@ public class OpacityIndex implements IOpacityIndex {
 				} else {
 
 					if (isLastSegment) {
-						int lastSegment = getLastSegmentIndex(segments);
-						m_ymax[i] = unpackPos(segments[lastSegment - 1]) - 1;
+						m_ymax[i] = unpackPos(getSegment(i, j - 1)) - 1;
 					} else if (isFirstSegment) {
 						assert !isLastSegment;
-						m_ymin[i] = unpackPos(segments[2]);
+						m_ymin[i] = unpackPos(getSegment(i, 2));
 					}
 					if (isLastSegment) {
 						removeTwoSegments(i, j - 1);
@@ -335,7 +641,7 @@ public class OpacityIndex implements IOpacityIndex {
 		} else if (sameOpacityAsNext) {
 			if (isRoomAfter) {
 				addSegment(i, j + 1, blockY + 1, oldOpacity);
-				m_segments[i][j] = packSegment(blockY, opacity);
+				setSegment(i, j, packSegment(blockY, opacity));
 			} else {
 				if (isLastSegment) {
 					removeSegment(i, j);
@@ -349,34 +655,32 @@ public class OpacityIndex implements IOpacityIndex {
 			if (isRoomAfter) {
 				addSegment(i, j + 1, blockY + 1, oldOpacity);
 			}
-			m_segments[i][j] = packSegment(blockY, opacity);
+			setSegment(i, j, packSegment(blockY, opacity));
 		}
 	}
 
 	private void setOpacityWithSegmentsAfter(int i, int blockY, int j, int opacity) {
-		int[] segments = m_segments[i];
-
 		// will the opacity even change?
-		int oldSegment = segments[j];
+		int oldSegment = getSegment(i, j);
 		int oldOpacity = unpackOpacity(oldSegment);
 		if (opacity == oldOpacity) {
 			return;
 		}
 
-		boolean isLastSegment = j == getLastSegmentIndex(segments);
+		boolean isLastSegment = j == m_segmentCounts[i] - 1;
 
 		boolean sameOpacityAsNext;
 		if (isLastSegment) {
 			sameOpacityAsNext = opacity == 0;
 		} else {
-			sameOpacityAsNext = opacity == unpackOpacity(segments[j + 1]);
+			sameOpacityAsNext = opacity == unpackOpacity(getSegment(i, j + 1));
 		}
 
 		boolean isRoomAfter;
 		if (isLastSegment) {
 			isRoomAfter = m_ymax[i] > blockY;
 		} else {
-			isRoomAfter = unpackPos(segments[j + 1]) > blockY + 1;
+			isRoomAfter = unpackPos(getSegment(i, j + 1)) > blockY + 1;
 		}
 
 		if (sameOpacityAsNext) {
@@ -404,12 +708,11 @@ public class OpacityIndex implements IOpacityIndex {
 			return;
 		}
 
-		int[] segments = m_segments[i];
-		int j = getLastSegmentIndex(segments);
+		int j = m_segmentCounts[i] - 1;
 
 		boolean nextToLastSegment = blockY == m_ymax[i] + 1;
 		if (nextToLastSegment) {
-			boolean extendSegment = opacity == unpackOpacity(segments[j]);
+			boolean extendSegment = opacity == unpackOpacity(getSegment(i, j));
 			if (extendSegment) {
 				// nothing to do, just increment ymax at end of func
 			} else {
@@ -429,11 +732,9 @@ public class OpacityIndex implements IOpacityIndex {
 			return;
 		}
 
-		int[] segments = m_segments[i];
-
 		boolean nextToFirstSegment = blockY == m_ymin[i] - 1;
 		if (nextToFirstSegment) {
-			boolean extendSegment = opacity == unpackOpacity(segments[0]);
+			boolean extendSegment = opacity == unpackOpacity(getSegment(i, 0));
 			if (extendSegment) {
 				moveSegmentStartDown(i, 0);
 			} else {
@@ -449,12 +750,12 @@ public class OpacityIndex implements IOpacityIndex {
 
 	private void moveSegmentStartUp(int i, int j) {
 
-		int segment = m_segments[i][j];
+		int segment = getSegment(i, j);
 		int pos = unpackPos(segment);
 		int opacity = unpackOpacity(segment);
 
 		// move the segment
-		m_segments[i][j] = packSegment(pos + 1, opacity);
+		setSegment(i, j, packSegment(pos + 1, opacity));
 
 		// move the bottom if needed
 		if (j == 0) {
@@ -464,12 +765,12 @@ public class OpacityIndex implements IOpacityIndex {
 
 	private void moveSegmentStartDown(int i, int j) {
 
-		int segment = m_segments[i][j];
+		int segment = getSegment(i, j);
 		int pos = unpackPos(segment);
 		int opacity = unpackOpacity(segment);
 
 		// move the segment
-		m_segments[i][j] = packSegment(pos - 1, opacity);
+		setSegment(i, j, packSegment(pos - 1, opacity));
 
 		// move the bottom if needed
 		if (j == 0) {
@@ -479,8 +780,7 @@ public class OpacityIndex implements IOpacityIndex {
 
 	private void removeSegment(int i, int j) {
 
-		int[] segments = m_segments[i];
-		int jmax = getLastSegmentIndex(segments);
+		int numSegments = m_segmentCounts[i];
 
 		// move the bounds if needed
 		// for reasons I can't explain it's only needed to move lower bound here and only by one.
@@ -488,67 +788,111 @@ public class OpacityIndex implements IOpacityIndex {
 			m_ymin[i]++;
 		}
 		// remove the segment
-		for (int n = j; n < jmax; n++) {
-			segments[n] = segments[n + 1];
-		}
-		segments[jmax] = NoneSegment;
-
-		if (segments[0] == NoneSegment) {
-			m_segments[i] = null;
-		}
+		int offset = m_segmentOffsets[i];
+		System.arraycopy(m_arena, offset + j + 1, m_arena, offset + j, numSegments - j - 1);
+		m_segmentCounts[i] = numSegments - 1;
 	}
 
 	private void removeTwoSegments(int i, int j) {
 
-		int[] segments = m_segments[i];
-		int jmax = getLastSegmentIndex(segments);
-
-		// remove the segment
-		for (int n = j; n < jmax - 1; n++) {
-			segments[n] = segments[n + 2];
-		}
-		segments[jmax] = NoneSegment;
-		segments[jmax - 1] = NoneSegment;
+		int numSegments = m_segmentCounts[i];
 
-		if (segments[0] == NoneSegment) {
-			m_segments[i] = null;
-		}
+		// remove the segments
+		int offset = m_segmentOffsets[i];
+		System.arraycopy(m_arena, offset + j + 2, m_arena, offset + j, numSegments - j - 2);
+		m_segmentCounts[i] = numSegments - 2;
 	}
 
 	private void addSegment(int i, int j, int pos, int opacity) {
-		int lastIndex = getLastSegmentIndex(m_segments[i]);
-		if (lastIndex + 1 == m_segments[i].length) {
-
-			// allocate more space
-			int[] newSegments = new int[lastIndex + 2];
-			for (int n = 0; n <= lastIndex; n++) {
-				newSegments[n] = m_segments[i][n];
-			}
-			m_segments[i] = newSegments;
-		}
+		int numSegments = m_segmentCounts[i];
+		resizeSegments(i, numSegments + 1);
 
 		// shift the segments by one
-		lastIndex++;
-		for (int n = lastIndex; n > j; n--) {
-			m_segments[i][n] = m_segments[i][n - 1];
-		}
+		int offset = m_segmentOffsets[i];
+		System.arraycopy(m_arena, offset + j, m_arena, offset + j + 1, numSegments - j);
 
-		m_segments[i][j] = packSegment(pos, opacity);
+		m_arena[offset + j] = packSegment(pos, opacity);
 	}
 
 	@SuppressWarnings("unused")
 	private int getSegmentLength(int i, int j) {
-		int[] segments = m_segments[i];
-		int pos = unpackPos(segments[j]);
-		if (j + 1 < segments.length) {
-			return unpackPos(segments[j + 1]) - pos;
+		int pos = unpackPos(getSegment(i, j));
+		if (j + 1 < m_segmentCounts[i]) {
+			return unpackPos(getSegment(i, j + 1)) - pos;
 		} else {
 			return m_ymax[i] - pos + 1;
 		}
 	}
 
+	private int getSegment(int i, int j) {
+		return m_arena[m_segmentOffsets[i] + j];
+	}
+
+	private void setSegment(int i, int j, int segment) {
+		m_arena[m_segmentOffsets[i] + j] = segment;
+	}
+
+	/**
+	 * Sets the number of segments of column i, keeping the ones it has. Moves the column to a bigger slot when it
+	 * doesn't fit in its own.
+	 */
+	private void resizeSegments(int i, int numSegments) {
+		if (numSegments > m_segmentCapacities[i]) {
+			int capacity = numSegments + SegmentSlack;
+			int offset = m_segmentOffsets[i];
+			if (offset + m_segmentCapacities[i] == m_arenaSize && offset + capacity <= m_arena.length) {
+				// the slot is the last one, it can just get longer
+				m_arenaSize = offset + capacity;
+			} else {
+				// allocating can compact the arena, that moves this column too
+				int newOffset = allocate(capacity);
+				System.arraycopy(m_arena, m_segmentOffsets[i], m_arena, newOffset, m_segmentCounts[i]);
+				m_segmentOffsets[i] = newOffset;
+			}
+			m_segmentCapacities[i] = capacity;
+		}
+		m_segmentCounts[i] = numSegments;
+	}
+
+	/**
+	 * Reserves size ints at the end of the arena, returns where they start.
+	 */
+	private int allocate(int size) {
+		if (m_arenaSize + size > m_arena.length) {
+			compact(size);
+		}
+		int offset = m_arenaSize;
+		m_arenaSize += size;
+		return offset;
+	}
+
+	/**
+	 * Copies all columns into a new arena without the holes, with room to spare for at least extraSize more ints.
+	 * Columns without segments give up their slots.
+	 */
+	private void compact(int extraSize) {
+		int liveSize = 0;
+		for (int i = 0; i < m_segmentCounts.length; i++) {
+			if (m_segmentCounts[i] > 0) {
+				liveSize += m_segmentCounts[i] + SegmentSlack;
+			}
+		}
+		int[] arena = new int[Math.max(MinArenaSize, (liveSize + extraSize) * 3 / 2)];
+		int size = 0;
+		for (int i = 0; i < m_segmentCounts.length; i++) {
+			int numSegments = m_segmentCounts[i];
+			int capacity = numSegments > 0 ? numSegments + SegmentSlack : 0;
+			System.arraycopy(m_arena, m_segmentOffsets[i], arena, size, numSegments);
+			m_segmentOffsets[i] = size;
+			m_segmentCapacities[i] = capacity;
+			size += capacity;
+		}
+		m_arena = arena;
+		m_arenaSize = size;
+	}
+
 	private void removeSegments(int i) {
-		m_segments[i] = null;
+		m_segmentCounts[i] = 0;
 		m_ymin[i] = None;
 		m_ymax[i] = None;
 	}
@@ -585,6 +929,101 @@ public class OpacityIndex implements IOpacityIndex {
 		return heightMapLowest;
 	}
 
+	@Override
+	public SegmentIterator getSegments(int localX, int localZ, int minBlockY, int maxBlockY) {
+		return new ColumnSegmentIterator(getIndex(localX, localZ), minBlockY, maxBlockY);
+	}
+
+	/**
+	 * Walks the segments of one column from the top down. Above ymax and below ymin everything is transparent.
+	 */
+	private class ColumnSegmentIterator implements SegmentIterator {
+
+		private final int i;
+		private final int minBlockY;
+		private int nextMaxBlockY;
+		// the segment at or below nextMaxBlockY
+		private int j;
+
+		private int opacity;
+		private int runMinBlockY;
+		private int runMaxBlockY;
+
+		ColumnSegmentIterator(int i, int minBlockY, int maxBlockY) {
+			this.i = i;
+			this.minBlockY = minBlockY;
+			this.nextMaxBlockY = maxBlockY;
+
+			int numSegments = m_segmentCounts[i];
+			if (numSegments != 0) {
+				// binary search for the last segment starting at or below maxBlockY
+				int mini = 0;
+				int maxi = numSegments - 1;
+				while (mini <= maxi) {
+					int midi = (mini + maxi) >>> 1;
+					if (unpackPos(getSegment(i, midi)) <= maxBlockY) {
+						mini = midi + 1;
+					} else {
+						maxi = midi - 1;
+					}
+				}
+				this.j = mini - 1;
+			}
+		}
+
+		@Override
+		public boolean next() {
+			if (this.nextMaxBlockY < this.minBlockY) {
+				return false;
+			}
+			int top = this.nextMaxBlockY;
+			int bottom;
+			if (m_ymin[this.i] == None || top < m_ymin[this.i]) {
+				this.opacity = 0;
+				bottom = Integer.MIN_VALUE;
+			} else if (top > m_ymax[this.i]) {
+				this.opacity = 0;
+				bottom = m_ymax[this.i] + 1;
+			} else if (m_segmentCounts[this.i] == 0) {
+				this.opacity = 255;
+				bottom = m_ymin[this.i];
+			} else {
+				int[] segments = m_arena;
+				int offset = m_segmentOffsets[this.i];
+				while (this.j >= 0 && unpackPos(segments[offset + this.j]) > top) {
+					this.j--;
+				}
+				if (this.j < 0) {
+					// same as getOpacity(), treat a broken column as transparent
+					this.opacity = 0;
+					bottom = m_ymin[this.i];
+				} else {
+					this.opacity = unpackOpacity(segments[offset + this.j]);
+					bottom = Math.max(unpackPos(segments[offset + this.j]), m_ymin[this.i]);
+				}
+			}
+			this.runMaxBlockY = top;
+			this.runMinBlockY = Math.max(bottom, this.minBlockY);
+			this.nextMaxBlockY = this.runMinBlockY - 1;
+			return true;
+		}
+
+		@Override
+		public int getOpacity() {
+			return this.opacity;
+		}
+
+		@Override
+		public int getMinBlockY() {
+			return this.runMinBlockY;
+		}
+
+		@Override
+		public int getMaxBlockY() {
+			return this.runMaxBlockY;
+		}
+	}
+
 	public byte[] getData() {
 		try {
 			ByteArrayOutputStream buf = new ByteArrayOutputStream();
@@ -597,6 +1036,10 @@ public class OpacityIndex implements IOpacityIndex {
 		}
 	}
 
+	/**
+	 * Returns the bottom and top block y of each x/z column as ints, 2048 bytes. This is the format of the raw cube
+	 * encoding, which clients from before the compact format read. See ClientOpacityIndex.setData().
+	 */
 	public byte[] getDataForClient() {
 		try {
 			ByteArrayOutputStream buf = new ByteArrayOutputStream();
@@ -616,11 +1059,51 @@ public class OpacityIndex implements IOpacityIndex {
 		}
 	}
 
+	/**
+	 * Returns the top and bottom block y of each x/z column, compressed like writeData() does.
+	 * See ClientOpacityIndex.setCompactData().
+	 */
+	public byte[] getCompactDataForClient() {
+		try {
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buf);
+
+			out.writeByte(CompactFormat);
+			int lastYmin = 0;
+			int lastYmax = 0;
+			for (int i = 0; i < m_ymin.length; i++) {
+				if (m_ymin[i] == None) {
+					out.writeByte(0);
+					continue;
+				}
+				out.writeByte(1);
+				VarInts.writeSigned(out, m_ymin[i] - lastYmin);
+				VarInts.writeSigned(out, m_ymax[i] - lastYmax);
+				lastYmin = m_ymin[i];
+				lastYmax = m_ymax[i];
+			}
+
+			out.close();
+			return buf.toByteArray();
+		} catch (IOException e) {
+			throw new Error(e);
+		}
+	}
+
+	/**
+	 * Reads data written by getData(), or by getData() before the compact format.
+	 */
 	public void readData(byte[] data) {
 		try {
 			ByteArrayInputStream buf = new ByteArrayInputStream(data);
 			DataInputStream in = new DataInputStream(buf);
-			readData(in);
+			if (data.length > 0 && data[0] == CompactFormat) {
+				readData(in);
+			} else {
+				readOldData(in);
+			}
+			heightMapLowest = None;
+			rebuildHash();
 			in.close();
 		} catch (IOException ex) {
 			throw new Error(ex);
@@ -629,34 +1112,78 @@ public class OpacityIndex implements IOpacityIndex {
 
 	public void readData(DataInputStream in)
 			throws IOException {
-		for (int i = 0; i < m_segments.length; i++) {
-			m_ymin[i] = in.readInt();
-			m_ymax[i] = in.readInt();
-			int[] segments = new int[in.readUnsignedShort()];
-			if (segments.length == 0) {
+		int format = in.readUnsignedByte();
+		if (format != CompactFormat) {
+			throw new IOException("Unknown opacity index format " + format);
+		}
+		int lastYmin = 0;
+		int lastYmax = 0;
+		for (int i = 0; i < m_ymin.length; i++) {
+			int numSegments = VarInts.readUnsigned(in) - 1;
+			if (numSegments < 0) {
+				removeSegments(i);
 				continue;
 			}
-			for (int j = 0; j < segments.length; j++) {
-				segments[j] = in.readInt();
+			m_ymin[i] = lastYmin + VarInts.readSigned(in);
+			m_ymax[i] = lastYmax + VarInts.readSigned(in);
+			lastYmin = m_ymin[i];
+			lastYmax = m_ymax[i];
+
+			resizeSegments(i, numSegments);
+			int offset = m_segmentOffsets[i];
+			int pos = m_ymin[i];
+			for (int j = 0; j < numSegments; j++) {
+				pos += VarInts.readSigned(in);
+				m_arena[offset + j] = packSegment(pos, in.readUnsignedByte());
 			}
-			m_segments[i] = segments;
 		}
 	}
 
+	/**
+	 * Writes the segments of each x/z column as varints, positions relative to the one before. The top and bottom of
+	 * each column are relative to the ones of the column before, neighbouring columns tend to be about as high.
+	 */
 	public void writeData(DataOutputStream out)
 			throws IOException {
-		for (int i = 0; i < m_segments.length; i++) {
-			out.writeInt(m_ymin[i]);
-			out.writeInt(m_ymax[i]);
-			int[] segments = m_segments[i];
-			if (segments == null || segments.length == 0) {
-				out.writeShort(0);
-			} else {
-				int lastSegmentIndex = getLastSegmentIndex(segments);
-				out.writeShort(lastSegmentIndex + 1);
-				for (int j = 0; j <= lastSegmentIndex; j++) {
-					out.writeInt(segments[j]);
-				}
+		out.writeByte(CompactFormat);
+		int lastYmin = 0;
+		int lastYmax = 0;
+		for (int i = 0; i < m_ymin.length; i++) {
+			if (m_ymin[i] == None) {
+				VarInts.writeUnsigned(out, 0);
+				continue;
+			}
+			int numSegments = m_segmentCounts[i];
+			VarInts.writeUnsigned(out, numSegments + 1);
+			VarInts.writeSigned(out, m_ymin[i] - lastYmin);
+			VarInts.writeSigned(out, m_ymax[i] - lastYmax);
+			lastYmin = m_ymin[i];
+			lastYmax = m_ymax[i];
+
+			int offset = m_segmentOffsets[i];
+			int pos = m_ymin[i];
+			for (int j = 0; j < numSegments; j++) {
+				int segment = m_arena[offset + j];
+				VarInts.writeSigned(out, unpackPos(segment) - pos);
+				out.writeByte(unpackOpacity(segment));
+				pos = unpackPos(segment);
+			}
+		}
+	}
+
+	/**
+	 * Reads the fixed size format columns were saved with before, ints for ymin, ymax and every segment.
+	 */
+	private void readOldData(DataInputStream in)
+			throws IOException {
+		for (int i = 0; i < m_ymin.length; i++) {
+			m_ymin[i] = in.readInt();
+			m_ymax[i] = in.readInt();
+			int numSegments = in.readUnsignedShort();
+			resizeSegments(i, numSegments);
+			int offset = m_segmentOffsets[i];
+			for (int j = 0; j < numSegments; j++) {
+				m_arena[offset + j] = in.readInt();
 			}
 		}
 	}
@@ -672,16 +1199,15 @@ public class OpacityIndex implements IOpacityIndex {
 		buf.append(",");
 		buf.append(m_ymax[i]);
 		buf.append("], segments(p,o)=");
-		if (m_segments[i] != null) {
-			for (int packed : m_segments[i]) {
-				int pos = unpackPos(packed);
-				int opacity = unpackOpacity(packed);
-				buf.append("(");
-				buf.append(pos);
-				buf.append(",");
-				buf.append(opacity);
-				buf.append(")");
-			}
+		for (int j = 0; j < m_segmentCounts[i]; j++) {
+			int packed = getSegment(i, j);
+			int pos = unpackPos(packed);
+			int opacity = unpackOpacity(packed);
+			buf.append("(");
+			buf.append(pos);
+			buf.append(",");
+			buf.append(opacity);
+			buf.append(")");
 		}
 		return buf.toString();
 	}
@@ -690,7 +1216,7 @@ public class OpacityIndex implements IOpacityIndex {
 		return (localZ << 4) | localX;
 	}
 
-	private static int packSegment(int pos, int opacity) {
+	static int packSegment(int pos, int opacity) {
 		return Bits.packUnsignedToInt(opacity, 8, 24) | Bits.packSignedToInt(pos, 24, 0);
 	}
 
@@ -702,41 +1228,53 @@ public class OpacityIndex implements IOpacityIndex {
 		return Bits.unpackSigned(packed, 24, 0);
 	}
 
-	private static int getLastSegmentIndex(int[] segments) {
-		for (int i = segments.length - 1; i >= 0; i--) {
-			if (segments[i] != NoneSegment) {
-				return i;
-			}
+	@Override
+	public int hashCode() {
+		// same as hashing all columns in one go starting from 1, cubes saved with the hash compare it to this
+		return m_hashTreeMultipliers[1] + m_hashTree[1];
+	}
+
+	private void rebuildHash() {
+		for (int i = 0; i < 16 * 16; i++) {
+			computeColumnHash(i);
+		}
+		for (int node = 16 * 16 - 1; node >= 1; node--) {
+			combineHashes(node);
 		}
-		throw new Error("Invalid segments state");
 	}
 
-	@Override
-	public int hashCode() {
-		if (m_needsHash) {
-			m_hash = computeHash();
-			m_needsHash = false;
+	private void updateHash(int i) {
+		computeColumnHash(i);
+		for (int node = (16 * 16 + i) >> 1; node >= 1; node >>= 1) {
+			combineHashes(node);
 		}
-		return m_hash;
 	}
 
-	private int computeHash() {
+	private void combineHashes(int node) {
+		// hashing the left columns, then going on with the right ones
+		int left = node * 2;
+		int right = node * 2 + 1;
+		m_hashTree[node] = m_hashTree[left] * m_hashTreeMultipliers[right] + m_hashTree[right];
+		m_hashTreeMultipliers[node] = m_hashTreeMultipliers[left] * m_hashTreeMultipliers[right];
+	}
+
+	private void computeColumnHash(int i) {
 		final int MyFavoritePrime = 37;
-		int hash = 1;
-		for (int i = 0; i < m_segments.length; i++) {
-			hash *= MyFavoritePrime;
-			hash += m_ymin[i];
+		int hash = 0;
+		int multiplier = 1;
+		hash = hash * MyFavoritePrime + m_ymin[i];
+		hash = hash * MyFavoritePrime + m_ymax[i];
+		multiplier *= MyFavoritePrime * MyFavoritePrime;
+		if (m_segmentCounts[i] == 0) {
 			hash *= MyFavoritePrime;
-			hash += m_ymax[i];
-			if (m_segments[i] == null) {
-				hash *= MyFavoritePrime;
-			} else {
-				for (int n : m_segments[i]) {
-					hash *= MyFavoritePrime;
-					hash += n;
-				}
+			multiplier *= MyFavoritePrime;
+		} else {
+			for (int j = 0; j < m_segmentCounts[i]; j++) {
+				hash = hash * MyFavoritePrime + getSegment(i, j);
+				multiplier *= MyFavoritePrime;
 			}
 		}
-		return hash;
+		m_hashTree[16 * 16 + i] = hash;
+		m_hashTreeMultipliers[16 * 16 + i] = multiplier;
 	}
 }
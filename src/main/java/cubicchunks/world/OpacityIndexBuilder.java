@@ -0,0 +1,126 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.world;
+
+import cubicchunks.util.Coords;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+
+import java.util.Arrays;
+
+/**
+ * Writes the opacities of a stack of cubes into an opacity index at once. Each x/z column is scanned once from the
+ * bottom cube to the top one and turned straight into segments, which are merged with the segments the column already
+ * has above and below the stack. That's a lot cheaper than calling setOpacity() for each block.
+ * <p>
+ * Add the cubes from the bottom up with addCube(), then call build(). The builder can be reused after clear().
+ */
+public class OpacityIndexBuilder {
+
+	private int minCubeY;
+	private int numCubes;
+	// storage ids of the blocks of each cube in Cube.getBlockIndex() order, null for empty cubes
+	private char[][] cubes;
+	private int[] runs;
+
+	public OpacityIndexBuilder() {
+		this.cubes = new char[4][];
+		this.runs = new int[16];
+		clear();
+	}
+
+	public void clear() {
+		Arrays.fill(this.cubes, null);
+		this.numCubes = 0;
+	}
+
+	public void addCube(Cube cube) {
+		addCube(cube.getY(), cube.isEmpty() ? null : cube.getStorage().getData());
+	}
+
+	/**
+	 * @param stateIds the blocks of the cube as storage ids (see Block.BLOCK_STATE_IDS, the encoding
+	 * ExtendedBlockStorage.getData() uses) in Cube.getBlockIndex() order, or null if the cube is empty
+	 */
+	public void addCube(int cubeY, char[] stateIds) {
+		if (this.numCubes == 0) {
+			this.minCubeY = cubeY;
+		} else if (cubeY != this.minCubeY + this.numCubes) {
+			throw new IllegalArgumentException(String.format("Cube %d is not on top of the stack %d..%d",
+				cubeY, this.minCubeY, this.minCubeY + this.numCubes - 1));
+		}
+		if (this.numCubes == this.cubes.length) {
+			this.cubes = Arrays.copyOf(this.cubes, this.numCubes * 2);
+		}
+		this.cubes[this.numCubes++] = stateIds;
+	}
+
+	public void build(OpacityIndex index) {
+		if (this.numCubes == 0) {
+			return;
+		}
+		int minBlockY = Coords.cubeToMinBlock(this.minCubeY);
+		int maxBlockY = Coords.cubeToMaxBlock(this.minCubeY + this.numCubes - 1);
+		if (this.runs.length < this.numCubes * 16) {
+			this.runs = new int[this.numCubes * 16];
+		}
+		int[] runs = this.runs;
+
+		// generated cubes only have a few different blocks, so don't look up the same one again
+		int lastStateId = -1;
+		int lastOpacity = 0;
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				int numRuns = 0;
+				int opacity = 0;
+				for (int n = 0; n < this.numCubes; n++) {
+					char[] stateIds = this.cubes[n];
+					int cubeMinBlockY = minBlockY + n * 16;
+					if (stateIds == null) {
+						if (opacity != 0) {
+							opacity = 0;
+							runs[numRuns++] = OpacityIndex.packSegment(cubeMinBlockY, opacity);
+						}
+						continue;
+					}
+					for (int localY = 0; localY < 16; localY++) {
+						int stateId = stateIds[Cube.getBlockIndex(localX, localY, localZ)];
+						if (stateId != lastStateId) {
+							lastStateId = stateId;
+							// like ExtendedBlockStorage, ids without a block are air
+							IBlockState state = (IBlockState)Block.BLOCK_STATE_IDS.getByValue(stateId);
+							lastOpacity = state == null ? 0 : state.getBlock().getLightOpacity();
+						}
+						if (lastOpacity != opacity) {
+							opacity = lastOpacity;
+							runs[numRuns++] = OpacityIndex.packSegment(cubeMinBlockY + localY, opacity);
+						}
+					}
+				}
+				index.replaceRuns(localX, localZ, minBlockY, maxBlockY, runs, numRuns);
+			}
+		}
+	}
+}
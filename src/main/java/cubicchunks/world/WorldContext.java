@@ -23,6 +23,7 @@
  */
 package cubicchunks.world;
 
+import com.google.common.collect.Maps;
 import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
@@ -37,8 +38,17 @@ import cubicchunks.world.column.Column;
 import cubicchunks.world.cube.Cube;
 import net.minecraft.client.multiplayer.WorldClient;
 
+import java.util.Map;
+
 public abstract class WorldContext {
 	
+	// worlds that are neither client nor server worlds, like the ones cubes are generated in without a server
+	private static Map<World, WorldContext> otherInstances;
+	
+	static {
+		otherInstances = Maps.newHashMap();
+	}
+	
 	public static WorldContext get(World world) {
 		
 		//CodeAnnotation.startClientOnly();
@@ -51,7 +61,15 @@ public abstract class WorldContext {
 			return WorldServerContext.get((WorldServer)world);
 		}
 		
-		return null;
+		return otherInstances.get(world);
+	}
+	
+	public static void put(World world, WorldContext worldContext) {
+		otherInstances.put(world, worldContext);
+	}
+	
+	public static void remove(World world) {
+		otherInstances.remove(world);
 	}
 
 	private World m_world;
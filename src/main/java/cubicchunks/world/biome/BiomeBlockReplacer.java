@@ -42,6 +42,8 @@ public class BiomeBlockReplacer {
 	private final Random rand;
 	private final Cube cube;
 	private final Cube cubeAbove;
+	// storage ids of the blocks in cube, see Cube.setBlocksForGeneration()
+	private final char[] blocks;
 	private final int top;
 	private final int bottom;
 	private final int alterationTop;
@@ -51,10 +53,11 @@ public class BiomeBlockReplacer {
 	private IBlockState surfaceBlock;
 	private IBlockState groundBlock;
 
-	public BiomeBlockReplacer(final Random rand, final Cube cube, final Cube cubeAbove) {
+	public BiomeBlockReplacer(final Random rand, final Cube cube, final Cube cubeAbove, final char[] blocks) {
 		this.rand = rand;
 		this.cube = cube;
 		this.cubeAbove = cubeAbove;
+		this.blocks = blocks;
 		this.top = Coords.cubeToMaxBlock(cubeAbove.getY());
 		this.bottom = Coords.cubeToMinBlock(cube.getY());
 		this.alterationTop = Coords.cubeToMaxBlock(cube.getY());
@@ -191,9 +194,9 @@ public class BiomeBlockReplacer {
 	}
 
 	protected final void setBlock(final Cube cube, final BlockPos pos, final IBlockState blockState) {
-		assert Coords.blockToCube(pos.getY()) == cube.getY() || Coords.blockToCube(pos.getY()) == cube.getY() - 1;
+		assert Coords.blockToCube(pos.getY()) == cube.getY();
 
-		cube.setBlockForGeneration(pos, blockState);
+		this.blocks[getBlockIndex(pos)] = (char) Block.BLOCK_STATE_IDS.get(blockState);
 	}
 
 	protected final Block getBlock(final Cube cube, final Cube cubeAbove, final BlockPos pos) {
@@ -202,7 +205,7 @@ public class BiomeBlockReplacer {
 
 		if (Coords.blockToCube(pos.getY()) == cube.getY()) {// check if we're in the same cube as Cube
 			// If we are in the same cube
-			return cube.getBlockAt(pos);
+			return ((IBlockState) Block.BLOCK_STATE_IDS.getByValue(this.blocks[getBlockIndex(pos)])).getBlock();
 		} else {
 			// we are in cube above
 			assert Coords.blockToCube(pos.getY()) == cube.getY() + 1;
@@ -210,4 +213,9 @@ public class BiomeBlockReplacer {
 			return cubeAbove.getBlockAt(pos);
 		}
 	}
+
+	private static int getBlockIndex(final BlockPos pos) {
+		return Cube.getBlockIndex(Coords.blockToLocal(pos.getX()), Coords.blockToLocal(pos.getY()),
+				Coords.blockToLocal(pos.getZ()));
+	}
 }
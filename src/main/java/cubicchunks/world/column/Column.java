@@ -25,6 +25,7 @@ package cubicchunks.world.column;
 
 import com.google.common.base.Predicate;
 import cubicchunks.CubicChunks;
+import cubicchunks.generator.ColumnGeneratorData;
 import cubicchunks.lighting.LightingManager;
 import cubicchunks.util.*;
 import cubicchunks.world.*;
@@ -56,6 +57,7 @@ public class Column extends Chunk {
 	private int roundRobinLightUpdatePointer;
 	private List<Cube> roundRobinCubes;
 	private EntityContainer entities;
+	private ColumnGeneratorData generatorData;
 
 	public Column(World world, int x, int z) {
 
@@ -127,6 +129,16 @@ public class Column extends Chunk {
 		return this.opacityIndex;
 	}
 
+	/**
+	 * Returns the generator data shared by all cubes of this column. It's created on first use and is not saved.
+	 */
+	public ColumnGeneratorData getGeneratorData() {
+		if (this.generatorData == null) {
+			this.generatorData = new ColumnGeneratorData();
+		}
+		return this.generatorData;
+	}
+
 	@Override
 	@SideOnly(Side.CLIENT)
 	protected void generateHeightMap() {
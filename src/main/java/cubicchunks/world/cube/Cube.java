@@ -32,6 +32,8 @@ import cubicchunks.util.Coords;
 import cubicchunks.util.CubeBlockMap;
 import cubicchunks.util.MutableBlockPos;
 import cubicchunks.world.EntityContainer;
+import cubicchunks.world.OpacityIndex;
+import cubicchunks.world.OpacityIndexBuilder;
 import cubicchunks.world.WorldContext;
 import cubicchunks.world.column.Column;
 import net.minecraft.block.Block;
@@ -66,6 +68,7 @@ public class Cube {
 	private CubeBlockMap<TileEntity> blockEntities;
 	private GeneratorStage generatorStage;
 	private boolean needsRelightAfterLoad;
+	private boolean[] blockColumnsToRelight;
 	/** "queue containing the BlockPos of tile entities queued for creation" */
 	private ConcurrentLinkedQueue tileEntityPosQueue;
 	
@@ -246,8 +249,15 @@ public class Cube {
 	}
 	
 	public IBlockState setBlockForGeneration(BlockPos pos, IBlockState newBlockState) {
+		int x = Coords.blockToLocal(pos.getX());
+		int y = Coords.blockToLocal(pos.getY());
+		int z = Coords.blockToLocal(pos.getZ());
+		return setBlockForGeneration(x, y, z, newBlockState);
+	}
+	
+	public IBlockState setBlockForGeneration(int x, int y, int z, IBlockState newBlockState) {
 		
-		IBlockState oldBlockState = getBlockState(pos);
+		IBlockState oldBlockState = getBlockState(x, y, z);
 		
 		// did anything actually change?
 		if (newBlockState == oldBlockState) {
@@ -258,10 +268,6 @@ public class Cube {
 		if (isEmpty()) {
 			setEmpty(false);
 		}
-		
-		int x = Coords.blockToLocal(pos.getX());
-		int y = Coords.blockToLocal(pos.getY());
-		int z = Coords.blockToLocal(pos.getZ());
 
 		// set the block
 		this.storage.set(x, y, z, newBlockState);
@@ -281,6 +287,39 @@ public class Cube {
 		return oldBlockState;
 	}
 	
+	/**
+	 * Returns the index of a block in the array used by setBlocksForGeneration(), same order as ExtendedBlockStorage.
+	 */
+	public static int getBlockIndex(int localX, int localY, int localZ) {
+		return localY << 8 | localZ << 4 | localX;
+	}
+	
+	/**
+	 * Replaces all blocks of this cube at once. Blocks are given as storage ids (see Block.BLOCK_STATE_IDS, the
+	 * encoding ExtendedBlockStorage uses, not Block.getStateId()) in getBlockIndex() order. Like
+	 * setBlockForGeneration(), blocks are not notified, but the column light index is built for the whole cube at once
+	 * instead of for every block.
+	 * 
+	 * @param builder used to build the light index, callers keep one and pass it in for every cube
+	 */
+	public void setBlocksForGeneration(char[] stateIds, OpacityIndexBuilder builder) {
+		
+		// make sure we're not empty
+		if (isEmpty()) {
+			setEmpty(false);
+		}
+		
+		// set the blocks, and recount them
+		System.arraycopy(stateIds, 0, this.storage.getData(), 0, 16 * 16 * 16);
+		this.storage.removeInvalidBlocks();
+		this.isModified = true;
+		
+		// update the column light index
+		builder.clear();
+		builder.addCube(this.cubeY, stateIds);
+		builder.build((OpacityIndex)this.column.getOpacityIndex());
+	}
+	
 	public boolean hasBlocks() {
 		if (isEmpty()) {
 			return false;
@@ -589,6 +628,16 @@ public class Cube {
 		this.needsRelightAfterLoad = val;
 	}
 
+	/**
+	 * Returns which x/z columns of this cube need to be relit after loading, in z*16 + x order, or null if none do.
+	 */
+	public boolean[] getBlockColumnsToRelight() {
+		return this.blockColumnsToRelight;
+	}
+	public void setBlockColumnsToRelight(boolean[] val) {
+		this.blockColumnsToRelight = val;
+	}
+
 	public void tickCube() {
 		while (!this.tileEntityPosQueue.isEmpty())
 		{
@@ -0,0 +1,161 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import cubicchunks.world.IOpacityIndex;
+import cubicchunks.world.OpacityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the sky light falloff of all 256 block columns of an opacity index, once with getOpacity for each block
+ * and once walking the segments. Also edits blocks all over the index like mining and building does, which adds and
+ * removes segments. Run with gradle jmh -PjmhArgs="OpacityIndexBenchmark".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OpacityIndexBenchmark {
+
+	// how many blocks of each column are lit, starting at the top
+	@Param({ "16", "64", "256" })
+	public int height;
+
+	private OpacityIndex index;
+	private int maxBlockY;
+	private int minBlockY;
+
+	// blocks to change and back again, in random order
+	private static final int NumEdits = 4096;
+	private int[] editXs;
+	private int[] editYs;
+	private int[] editZs;
+	private int[] editOpacities;
+	private int[] oldOpacities;
+
+	@Setup
+	public void makeIndex() {
+		// stone up to around y=64 with caves and ores, then a bit of water and leaves above
+		Random rand = new Random(1234);
+		this.index = new OpacityIndex();
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				int groundY = 60 + rand.nextInt(8);
+				int[] opacities = new int[groundY + 16];
+				for (int y = 0; y < groundY; y++) {
+					opacities[y] = rand.nextInt(20) == 0 ? 0 : 255;
+				}
+				for (int y = groundY; y < groundY + 4; y++) {
+					opacities[y] = rand.nextBoolean() ? 3 : 1;
+				}
+				this.index.setOpacities(localX, localZ, 0, opacities);
+			}
+		}
+		this.maxBlockY = 80;
+		this.minBlockY = this.maxBlockY - this.height + 1;
+
+		final int[] values = { 0, 1, 3, 255 };
+		this.editXs = new int[NumEdits];
+		this.editYs = new int[NumEdits];
+		this.editZs = new int[NumEdits];
+		this.editOpacities = new int[NumEdits];
+		this.oldOpacities = new int[NumEdits];
+		for (int i = 0; i < NumEdits; i++) {
+			this.editXs[i] = rand.nextInt(16);
+			this.editYs[i] = this.minBlockY + rand.nextInt(this.height);
+			this.editZs[i] = rand.nextInt(16);
+			this.editOpacities[i] = values[rand.nextInt(values.length)];
+		}
+	}
+
+	@Benchmark
+	public int editBlocks() {
+		for (int i = 0; i < NumEdits; i++) {
+			this.oldOpacities[i] = this.index.getOpacity(this.editXs[i], this.editYs[i], this.editZs[i]);
+			this.index.setOpacity(this.editXs[i], this.editYs[i], this.editZs[i], this.editOpacities[i]);
+		}
+		// put everything back so each run starts with the same index
+		for (int i = NumEdits - 1; i >= 0; i--) {
+			this.index.setOpacity(this.editXs[i], this.editYs[i], this.editZs[i], this.oldOpacities[i]);
+		}
+		return this.index.getVersion();
+	}
+
+	@Benchmark
+	public int getOpacity() {
+		int sum = 0;
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				int light = 15;
+				for (int y = this.maxBlockY; y >= this.minBlockY; y--) {
+					light = nextLight(light, this.index.getOpacity(localX, y, localZ));
+					sum += light;
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int getSegments() {
+		int sum = 0;
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				int light = 15;
+				IOpacityIndex.SegmentIterator segments = this.index.getSegments(localX, localZ, this.minBlockY, this.maxBlockY);
+				while (segments.next()) {
+					int opacity = segments.getOpacity();
+					for (int y = segments.getMaxBlockY(); y >= segments.getMinBlockY(); y--) {
+						light = nextLight(light, opacity);
+						sum += light;
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+	private static int nextLight(int light, int opacity) {
+		// same falloff as FirstLightProcessor
+		if (opacity == 0 && light < 15) {
+			opacity = 1;
+		}
+		return Math.max(0, light - opacity);
+	}
+}
@@ -25,22 +25,33 @@ package cubicchunks;
 
 import com.google.common.collect.Lists;
 import cubicchunks.util.Bits;
+import cubicchunks.world.ClientOpacityIndex;
+import cubicchunks.world.IOpacityIndex;
 import cubicchunks.world.OpacityIndex;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 public class TestOpacityIndex {
 	
 	private static Field YminField;
 	private static Field YmaxField;
-	private static Field SegmentsField;
+	private static Field ArenaField;
+	private static Field ArenaSizeField;
+	private static Field SegmentOffsetsField;
+	private static Field SegmentCountsField;
+	private static Field SegmentCapacitiesField;
 	
 	static {
 		try {
@@ -48,8 +59,16 @@ public class TestOpacityIndex {
 			YminField.setAccessible(true);
 			YmaxField = OpacityIndex.class.getDeclaredField("m_ymax");
 			YmaxField.setAccessible(true);
-			SegmentsField = OpacityIndex.class.getDeclaredField("m_segments");
-			SegmentsField.setAccessible(true);
+			ArenaField = OpacityIndex.class.getDeclaredField("m_arena");
+			ArenaField.setAccessible(true);
+			ArenaSizeField = OpacityIndex.class.getDeclaredField("m_arenaSize");
+			ArenaSizeField.setAccessible(true);
+			SegmentOffsetsField = OpacityIndex.class.getDeclaredField("m_segmentOffsets");
+			SegmentOffsetsField.setAccessible(true);
+			SegmentCountsField = OpacityIndex.class.getDeclaredField("m_segmentCounts");
+			SegmentCountsField.setAccessible(true);
+			SegmentCapacitiesField = OpacityIndex.class.getDeclaredField("m_segmentCapacities");
+			SegmentCapacitiesField.setAccessible(true);
 		} catch (NoSuchFieldException | SecurityException ex) {
 			throw new Error(ex);
 		}
@@ -871,6 +890,340 @@ public class TestOpacityIndex {
 			}
 		}
 	}
+	@Test
+	public void setOpacitiesOverSurface() {
+		OpacityIndex index = makeIndex(100, 102);
+		
+		// a cube of air with a floating block in it, right above the surface
+		int[] opacities = new int[16];
+		opacities[2] = 255;
+		index.setOpacities(0, 0, 103, opacities);
+		
+		assertEquals(255, index.getOpacity(0, 102, 0));
+		assertEquals(0, index.getOpacity(0, 103, 0));
+		assertEquals(0, index.getOpacity(0, 104, 0));
+		assertEquals(255, index.getOpacity(0, 105, 0));
+		assertEquals(0, index.getOpacity(0, 106, 0));
+		assertEquals(105, (int)index.getTopBlockY(0, 0));
+		assertEquals(100, (int)index.getBottomBlockY(0, 0));
+		
+		// and all air again
+		index.setOpacities(0, 0, 103, new int[16]);
+		
+		assertEquals(0, index.getOpacity(0, 105, 0));
+		assertEquals(102, (int)index.getTopBlockY(0, 0));
+		assertEquals(100, (int)index.getBottomBlockY(0, 0));
+		assertEquals(null, getSegments(index));
+	}
+	
+	@Test
+	public void setOpacitiesMatchesSetOpacity() {
+		final int[] values = { 0, 0, 128, 255, 255 };
+		Random rand = new Random(42);
+		
+		for (int n = 0; n < 2000; n++) {
+			OpacityIndex index = new OpacityIndex();
+			ArrayOpacityIndexImpl test = new ArrayOpacityIndexImpl();
+			
+			// some random blocks first
+			int numBlocks = rand.nextInt(20);
+			for (int i = 0; i < numBlocks; i++) {
+				int y = rand.nextInt(100);
+				int opacity = values[rand.nextInt(values.length)];
+				index.setOpacity(0, y, 0, opacity);
+				test.set(y, opacity);
+			}
+			
+			// then overwrite a range
+			int[] opacities = new int[1 + rand.nextInt(16)];
+			int minY = rand.nextInt(100 - opacities.length);
+			boolean uniform = rand.nextBoolean();
+			for (int i = 0; i < opacities.length; i++) {
+				opacities[i] = uniform && i > 0 ? opacities[0] : values[rand.nextInt(values.length)];
+				test.set(minY + i, opacities[i]);
+			}
+			index.setOpacities(0, 0, minY, opacities);
+			
+			String message = "test " + n + ", " + index.dump(0, 0);
+			for (int y = 0; y < 100; y++) {
+				assertEquals(message + " y=" + y, test.get(y), index.getOpacity(0, y, 0));
+			}
+			assertEquals(message + " minY", test.getMinY(), index.getBottomBlockY(0, 0));
+			assertEquals(message + " maxY", test.getMaxY(), index.getTopBlockY(0, 0));
+			
+			// it should still work with single block updates
+			int y = rand.nextInt(100);
+			int opacity = values[rand.nextInt(values.length)];
+			index.setOpacity(0, y, 0, opacity);
+			test.set(y, opacity);
+			for (y = 0; y < 100; y++) {
+				assertEquals(message + " after set, y=" + y, test.get(y), index.getOpacity(0, y, 0));
+			}
+		}
+	}
+
+	@Test
+	public void segmentsMatchGetOpacity() {
+		final int[] values = { 0, 0, 128, 255, 255 };
+		Random rand = new Random(42);
+		
+		for (int n = 0; n < 2000; n++) {
+			OpacityIndex index = new OpacityIndex();
+			int numBlocks = rand.nextInt(30);
+			for (int i = 0; i < numBlocks; i++) {
+				index.setOpacity(0, rand.nextInt(100), 0, values[rand.nextInt(values.length)]);
+			}
+			
+			// the runs should cover the range from the top down without gaps
+			int minY = rand.nextInt(120) - 10;
+			int maxY = minY + rand.nextInt(40);
+			String message = "test " + n + ", " + index.dump(0, 0) + ", range " + minY + ".." + maxY;
+			IOpacityIndex.SegmentIterator segments = index.getSegments(0, 0, minY, maxY);
+			int nextY = maxY;
+			while (segments.next()) {
+				assertEquals(message, nextY, segments.getMaxBlockY());
+				assertTrue(message, segments.getMinBlockY() <= segments.getMaxBlockY());
+				for (int y = segments.getMaxBlockY(); y >= segments.getMinBlockY(); y--) {
+					assertEquals(message + " y=" + y, index.getOpacity(0, y, 0), segments.getOpacity());
+				}
+				nextY = segments.getMinBlockY() - 1;
+			}
+			assertEquals(message, minY - 1, nextY);
+		}
+	}
+
+	@Test
+	public void changesSinceVersion() {
+		OpacityIndex index = new OpacityIndex();
+		index.setOpacity(0, 10, 0, 255);
+		int version = index.getVersion();
+		
+		// nothing changed yet
+		boolean[] changed = new boolean[16 * 16];
+		assertTrue(index.getChangesSince(version, 0, changed));
+		assertTrue(Arrays.equals(new boolean[16 * 16], changed));
+		
+		// setting the same opacity again isn't a change
+		index.setOpacity(0, 10, 0, 255);
+		assertEquals(version, index.getVersion());
+		
+		index.setOpacity(1, 40, 0, 255);
+		index.setOpacity(2, 100, 0, 255);
+		index.setOpacity(2, 20, 0, 255);
+		index.setOpacity(2, 30, 0, 255);
+		
+		// only changes at most 15 blocks below the cube count, older ones are folded together
+		changed = new boolean[16 * 16];
+		assertTrue(index.getChangesSince(version, 64, changed));
+		assertEquals(false, changed[0]);
+		assertEquals(false, changed[1]);
+		assertEquals(true, changed[2]);
+		
+		changed = new boolean[16 * 16];
+		assertTrue(index.getChangesSince(version, 48, changed));
+		assertEquals(true, changed[1]);
+		
+		// a cube saved after the column can't be checked
+		assertEquals(false, index.getChangesSince(index.getVersion() + 1, 0, changed));
+		
+		// the log survives saving and loading
+		OpacityIndex loaded = new OpacityIndex();
+		loaded.readData(index.getData());
+		loaded.setChangeLog(index.getChangeLog());
+		changed = new boolean[16 * 16];
+		assertTrue(loaded.getChangesSince(version, 48, changed));
+		assertEquals(true, changed[1]);
+		assertEquals(index.getVersion(), loaded.getVersion());
+	}
+
+	@Test
+	public void changeLogOnlySavesChanges() {
+		OpacityIndex index = new OpacityIndex();
+		assertTrue(index.getChangeLog().length <= 2);
+		
+		Random rand = new Random(4321);
+		for (int n = 0; n < 40; n++) {
+			index.setOpacity(rand.nextInt(16), rand.nextInt(256) - 128, rand.nextInt(16), 255);
+		}
+		byte[] log = index.getChangeLog();
+		assertTrue(log.length < 40 * 6);
+		
+		OpacityIndex loaded = new OpacityIndex();
+		loaded.setChangeLog(log);
+		assertEquals(index.getVersion(), loaded.getVersion());
+		for (int version = 0; version <= index.getVersion(); version++) {
+			for (int minBlockY = -128; minBlockY < 128; minBlockY += 16) {
+				boolean[] expected = new boolean[16 * 16];
+				boolean[] actual = new boolean[16 * 16];
+				index.getChangesSince(version, minBlockY, expected);
+				loaded.getChangesSince(version, minBlockY, actual);
+				assertTrue(Arrays.equals(expected, actual));
+			}
+		}
+	}
+
+	@Test
+	public void readsOldChangeLog() {
+		// the version, then the change versions and highest block ys of all the slots, two per x/z column
+		int[] oldLog = new int[1 + 16 * 16 * 2 * 2];
+		oldLog[0] = 5;
+		oldLog[1 + 3] = 5;
+		oldLog[1 + 16 * 16 * 2 + 3] = 70;
+		
+		OpacityIndex index = new OpacityIndex();
+		index.setOldChangeLog(oldLog);
+		assertEquals(5, index.getVersion());
+		boolean[] changed = new boolean[16 * 16];
+		assertTrue(index.getChangesSince(4, 64, changed));
+		boolean[] expected = new boolean[16 * 16];
+		expected[1] = true;
+		assertTrue(Arrays.equals(expected, changed));
+	}
+
+	@Test
+	public void editsInAllColumnsMatchArray() {
+		// all columns share one arena, so edits in one column mustn't break the others when it moves or gets compacted
+		final int[] values = { 0, 0, 1, 3, 128, 255, 255 };
+		Random rand = new Random(1234);
+		OpacityIndex index = new OpacityIndex();
+		int[][] test = new int[16 * 16][100];
+		
+		for (int n = 0; n < 50000; n++) {
+			int localX = rand.nextInt(16);
+			int localZ = rand.nextInt(16);
+			int y = rand.nextInt(100);
+			int opacity = values[rand.nextInt(values.length)];
+			index.setOpacity(localX, y, localZ, opacity);
+			test[localZ << 4 | localX][y] = opacity;
+			
+			if (n % 5000 == 0) {
+				// sometimes clear a whole column too
+				int[] opacities = new int[100];
+				index.setOpacities(localX, localZ, 0, opacities);
+				test[localZ << 4 | localX] = opacities;
+			}
+		}
+		
+		OpacityIndex loaded = new OpacityIndex();
+		loaded.readData(index.getData());
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				String message = "column " + localX + "," + localZ + ", " + index.dump(localX, localZ);
+				for (int y = 0; y < 100; y++) {
+					assertEquals(message + " y=" + y, test[localZ << 4 | localX][y], index.getOpacity(localX, y, localZ));
+					assertEquals(message + " loaded y=" + y, test[localZ << 4 | localX][y], loaded.getOpacity(localX, y, localZ));
+				}
+			}
+		}
+		assertEquals(index.hashCode(), loaded.hashCode());
+	}
+
+	@Test
+	public void hashFollowsEdits() {
+		// the hash is put together from the hashes of the columns, it has to match one computed from scratch
+		final int[] values = { 0, 0, 1, 255 };
+		Random rand = new Random(42);
+		OpacityIndex index = new OpacityIndex();
+		for (int n = 0; n < 200; n++) {
+			for (int i = 0; i < 20; i++) {
+				index.setOpacity(rand.nextInt(16), rand.nextInt(64), rand.nextInt(16), values[rand.nextInt(values.length)]);
+			}
+			OpacityIndex loaded = new OpacityIndex();
+			loaded.readData(index.getData());
+			assertEquals("test " + n, loaded.hashCode(), index.hashCode());
+		}
+	}
+
+	@Test
+	public void hashMatchesHashingInOneGo() {
+		// saved cubes compare their hash to this, so it has to stay the one of hashing every column in order
+		Random rand = new Random(7);
+		int[] blockYs = new int[16 * 16];
+		OpacityIndex index = new OpacityIndex();
+		for (int i = 0; i < 16 * 16; i++) {
+			blockYs[i] = rand.nextBoolean() ? rand.nextInt(200) - 100 : Integer.MIN_VALUE;
+			if (blockYs[i] != Integer.MIN_VALUE) {
+				index.setOpacity(i & 15, blockYs[i], i >> 4, 255);
+			}
+		}
+		
+		// columns with one opaque block have no segments, they hash as bottom, top and one empty value
+		int hash = 1;
+		for (int blockY : blockYs) {
+			hash = hash * 37 + blockY;
+			hash = hash * 37 + blockY;
+			hash *= 37;
+		}
+		assertEquals(hash, index.hashCode());
+	}
+
+	@Test
+	public void readOldFormat() throws IOException {
+		// column 0,0 is opaque from 10 to 20 with a gap at 15, all other columns are empty
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buf);
+		for (int i = 0; i < 16 * 16; i++) {
+			if (i == 0) {
+				out.writeInt(10);
+				out.writeInt(20);
+				out.writeShort(3);
+				out.writeInt(Bits.packSignedToInt(10, 24, 0) | Bits.packUnsignedToInt(255, 8, 24));
+				out.writeInt(Bits.packSignedToInt(15, 24, 0) | Bits.packUnsignedToInt(0, 8, 24));
+				out.writeInt(Bits.packSignedToInt(16, 24, 0) | Bits.packUnsignedToInt(255, 8, 24));
+			} else {
+				out.writeInt(Integer.MIN_VALUE);
+				out.writeInt(Integer.MIN_VALUE);
+				out.writeShort(0);
+			}
+		}
+		out.close();
+		
+		OpacityIndex index = new OpacityIndex();
+		index.readData(buf.toByteArray());
+		for (int y = 0; y < 30; y++) {
+			assertEquals("y=" + y, y >= 10 && y <= 20 && y != 15 ? 255 : 0, index.getOpacity(0, y, 0));
+			assertEquals("y=" + y, 0, index.getOpacity(1, y, 0));
+		}
+		assertEquals(Integer.valueOf(20), index.getTopBlockY(0, 0));
+		assertEquals(Integer.valueOf(10), index.getBottomBlockY(0, 0));
+		assertEquals(null, index.getTopBlockY(1, 0));
+		
+		// and the compact format reads back the same
+		OpacityIndex loaded = new OpacityIndex();
+		loaded.readData(index.getData());
+		assertEquals(index.hashCode(), loaded.hashCode());
+		assertTrue(index.getData().length < buf.size());
+	}
+
+	@Test
+	public void clientDataMatchesTopAndBottom() {
+		Random rand = new Random(42);
+		OpacityIndex index = new OpacityIndex();
+		for (int i = 0; i < 1000; i++) {
+			index.setOpacity(rand.nextInt(16), rand.nextInt(200) - 100, rand.nextInt(16), rand.nextBoolean() ? 255 : 0);
+		}
+		
+		// raw cubes still carry the fixed size heightmap older clients read
+		byte[] data = index.getDataForClient();
+		assertEquals(256*2*4, data.length);
+		ClientOpacityIndex clientIndex = new ClientOpacityIndex(null);
+		clientIndex.setData(data);
+		assertSameHeights(index, clientIndex);
+		
+		ClientOpacityIndex compactClientIndex = new ClientOpacityIndex(null);
+		compactClientIndex.setCompactData(index.getCompactDataForClient());
+		assertSameHeights(index, compactClientIndex);
+	}
+	
+	private static void assertSameHeights(OpacityIndex index, ClientOpacityIndex clientIndex) {
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				assertEquals(index.getTopBlockY(localX, localZ), clientIndex.getTopBlockY(localX, localZ));
+				assertEquals(index.getBottomBlockY(localX, localZ), clientIndex.getBottomBlockY(localX, localZ));
+			}
+		}
+	}
+
 	private OpacityIndex makeIndex(int ymin, int ymax, int ... segments) {
 		OpacityIndex index = new OpacityIndex();
 		
@@ -891,7 +1244,12 @@ public class TestOpacityIndex {
 		try {
 			YminField.set(index, new int[] { ymin });
 			YmaxField.set(index, new int[] { ymax });
-			SegmentsField.set(index, new int[][] { segments });
+			int numSegments = segments == null ? 0 : segments.length;
+			ArenaField.set(index, segments == null ? new int[0] : segments);
+			ArenaSizeField.set(index, numSegments);
+			SegmentOffsetsField.set(index, new int[] { 0 });
+			SegmentCountsField.set(index, new int[] { numSegments });
+			SegmentCapacitiesField.set(index, new int[] { numSegments });
 		} catch (IllegalArgumentException | IllegalAccessException ex) {
 			throw new Error(ex);
 		}
@@ -899,18 +1257,18 @@ public class TestOpacityIndex {
 	
 	private List<Integer> getSegments(OpacityIndex index) {
 		try {
-			int[] packedSegments = ((int[][])SegmentsField.get(index))[0];
-			if (packedSegments == null) {
+			int[] arena = (int[])ArenaField.get(index);
+			int offset = ((int[])SegmentOffsetsField.get(index))[0];
+			int numSegments = ((int[])SegmentCountsField.get(index))[0];
+			if (numSegments == 0) {
 				return null;
 			}
 			
-			final int NoneSegment = 0x7fffff;
-			
 			// unpack the segments
 			List<Integer> segments = Lists.newArrayList();
-			for (int i=0; i<packedSegments.length && packedSegments[i] != NoneSegment; i++) {
-				segments.add(Bits.unpackSigned(packedSegments[i], 24, 0));
-				segments.add(Bits.unpackUnsigned(packedSegments[i], 8, 24));
+			for (int i=offset; i<offset + numSegments; i++) {
+				segments.add(Bits.unpackSigned(arena[i], 24, 0));
+				segments.add(Bits.unpackUnsigned(arena[i], 8, 24));
 			}
 			return segments;
 			
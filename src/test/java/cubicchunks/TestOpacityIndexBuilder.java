@@ -0,0 +1,148 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import cubicchunks.world.OpacityIndex;
+import cubicchunks.world.OpacityIndexBuilder;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestOpacityIndexBuilder {
+	
+	@BeforeClass
+	public static void bootstrap() {
+		Bootstrap.register();
+	}
+	
+	@Test
+	public void buildMatchesSetOpacity() {
+		final Block[] blocks = { Blocks.air, Blocks.air, Blocks.stone, Blocks.water, Blocks.leaves };
+		Random rand = new Random(42);
+		
+		for (int n = 0; n < 50; n++) {
+			// some blocks above, below and in the stack that the stack has to be merged with
+			OpacityIndex built = new OpacityIndex();
+			OpacityIndex expected = new OpacityIndex();
+			for (int i = 0; i < 2000; i++) {
+				int localX = rand.nextInt(16);
+				int localZ = rand.nextInt(16);
+				int blockY = rand.nextInt(96) - 16;
+				int opacity = blocks[rand.nextInt(blocks.length)].getLightOpacity();
+				built.setOpacity(localX, blockY, localZ, opacity);
+				expected.setOpacity(localX, blockY, localZ, opacity);
+			}
+			
+			// cubes 1 to 3, sometimes with an empty one
+			OpacityIndexBuilder builder = new OpacityIndexBuilder();
+			for (int cubeY = 1; cubeY <= 3; cubeY++) {
+				if (rand.nextInt(4) == 0) {
+					builder.addCube(cubeY, null);
+					for (int localX = 0; localX < 16; localX++) {
+						for (int localZ = 0; localZ < 16; localZ++) {
+							for (int localY = 0; localY < 16; localY++) {
+								expected.setOpacity(localX, cubeY * 16 + localY, localZ, 0);
+							}
+						}
+					}
+					continue;
+				}
+				ExtendedBlockStorage storage = new ExtendedBlockStorage(cubeY * 16, true);
+				for (int localX = 0; localX < 16; localX++) {
+					for (int localZ = 0; localZ < 16; localZ++) {
+						for (int localY = 0; localY < 16; localY++) {
+							Block block = blocks[rand.nextInt(blocks.length)];
+							storage.set(localX, localY, localZ, block.getDefaultState());
+							expected.setOpacity(localX, cubeY * 16 + localY, localZ, block.getLightOpacity());
+						}
+					}
+				}
+				builder.addCube(cubeY, storage.getData());
+			}
+			builder.build(built);
+			
+			for (int localX = 0; localX < 16; localX++) {
+				for (int localZ = 0; localZ < 16; localZ++) {
+					String message = "test " + n + ", column " + localX + "," + localZ + ", " + built.dump(localX, localZ);
+					for (int blockY = -20; blockY < 100; blockY++) {
+						assertEquals(message + " y=" + blockY, expected.getOpacity(localX, blockY, localZ), built.getOpacity(localX, blockY, localZ));
+					}
+					assertEquals(message + " minY", expected.getBottomBlockY(localX, localZ), built.getBottomBlockY(localX, localZ));
+					assertEquals(message + " maxY", expected.getTopBlockY(localX, localZ), built.getTopBlockY(localX, localZ));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void rebuildOnlyLogsChangedColumns() {
+		OpacityIndex index = new OpacityIndex();
+		OpacityIndexBuilder builder = new OpacityIndexBuilder();
+		
+		// an all air cube doesn't change an empty index
+		ExtendedBlockStorage storage = new ExtendedBlockStorage(16, true);
+		builder.addCube(1, storage.getData());
+		builder.build(index);
+		assertEquals(0, index.getVersion());
+		
+		for (int localX = 0; localX < 16; localX++) {
+			for (int localZ = 0; localZ < 16; localZ++) {
+				storage.set(localX, localX, localZ, Blocks.stone.getDefaultState());
+			}
+		}
+		builder.clear();
+		builder.addCube(1, storage.getData());
+		builder.build(index);
+		int version = index.getVersion();
+		
+		// building the same blocks again changes nothing
+		builder.clear();
+		builder.addCube(1, storage.getData());
+		builder.build(index);
+		assertEquals(version, index.getVersion());
+		boolean[] changed = new boolean[16 * 16];
+		assertTrue(index.getChangesSince(version, 0, changed));
+		assertTrue(Arrays.equals(new boolean[16 * 16], changed));
+		
+		// only the column with a different block changed
+		storage.set(3, 10, 5, Blocks.stone.getDefaultState());
+		builder.clear();
+		builder.addCube(1, storage.getData());
+		builder.build(index);
+		assertEquals(version + 1, index.getVersion());
+		assertTrue(index.getChangesSince(version, 0, changed));
+		for (int i = 0; i < 16 * 16; i++) {
+			assertEquals("column " + i, i == 5 * 16 + 3, changed[i]);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import cubicchunks.generator.features.BigTreeFixture;
+import cubicchunks.generator.terrain.GlobalGeneratorConfig;
+import cubicchunks.util.TerrainGeneratorUtils;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.WorldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each generator stage on the same cubes as TestGeneratorDeterminism. Every invocation runs one stage over the
+ * whole region, after the stages before it were run during setup. Run with gradle jmh -PjmhArgs="GeneratorBenchmark",
+ * and add -prof gc to the arguments for allocation rates. The nested benchmarks time parts of single stages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GeneratorBenchmark {
+
+	@Param({ "TERRAIN", "SURFACE", "STRUCTURES", "LIGHTING", "FEATURES" })
+	public GeneratorStage stage;
+
+	@Param({ "1234" })
+	public long seed;
+
+	private GeneratorHarness harness;
+
+	@Setup(Level.Trial)
+	public void bootstrap() {
+		Bootstrap.register();
+	}
+
+	@Setup(Level.Invocation)
+	public void generateEarlierStages() {
+		this.harness = new GeneratorHarness(this.seed, WorldType.DEFAULT, 3, 1, 8);
+		this.harness.generateUntil(this.stage);
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		this.harness.close();
+	}
+
+	@Benchmark
+	public GeneratorHarness.StageResult generateStage() {
+		return this.harness.generateStage(this.stage);
+	}
+
+	/**
+	 * Turns the noise lattice of a cube into block densities, the part of the terrain stage that runs for every cube
+	 * below the surface. Run with -prof gc to check that it doesn't allocate anything per cube.
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 10)
+	@Fork(1)
+	public static class DensityPipeline {
+
+		private double[][][] noise;
+		private double[] density;
+		private int cubeY;
+
+		@Setup
+		public void makeNoise() {
+			Random rand = new Random(42);
+			this.noise = new double[GlobalGeneratorConfig.X_SECTIONS][GlobalGeneratorConfig.Y_SECTIONS][GlobalGeneratorConfig.Z_SECTIONS];
+			for (int x = 0; x < this.noise.length; x++) {
+				for (int y = 0; y < this.noise[x].length; y++) {
+					for (int z = 0; z < this.noise[x][y].length; z++) {
+						this.noise[x][y][z] = rand.nextDouble() * 400 - 200;
+					}
+				}
+			}
+			this.density = TerrainGeneratorUtils.newDensityBuffer();
+		}
+
+		@Benchmark
+		public double[] expandNoise() {
+			TerrainGeneratorUtils.expandNoiseArray(this.noise, this.density);
+			TerrainGeneratorUtils.applyHeightGradient(this.cubeY++, this.density);
+			return this.density;
+		}
+	}
+
+	/**
+	 * Generates big trees on flat ground, once through CubeNeighborhood and once with a cube lookup for every block
+	 * like feature generators used to do.
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 10)
+	@Fork(1)
+	public static class BigTrees {
+
+		@Param({ "true", "false" })
+		public boolean useNeighborhood;
+
+		private HarnessCubeCache cubes;
+		private long seed;
+
+		@Setup(Level.Trial)
+		public void bootstrap() {
+			Bootstrap.register();
+		}
+
+		@Setup(Level.Invocation)
+		public void makeGround() {
+			this.cubes = BigTreeFixture.newCubeCache();
+		}
+
+		@Benchmark
+		public HarnessCubeCache generateTrees() {
+			BigTreeFixture.generateTrees(this.cubes, this.useNeighborhood, this.seed++);
+			return this.cubes;
+		}
+	}
+}
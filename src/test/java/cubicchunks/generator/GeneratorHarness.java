@@ -0,0 +1,230 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import cubicchunks.api.generators.ITerrainGenerator;
+import cubicchunks.generator.terrain.FlatTerrainGenerator;
+import cubicchunks.generator.terrain.VanillaTerrainGenerator;
+import cubicchunks.lighting.FirstLightProcessor;
+import cubicchunks.util.AddressTools;
+import cubicchunks.util.processor.CubeProcessor;
+import cubicchunks.world.WorldContext;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.world.WorldType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a fixed region of cubes for a fixed seed through all generator stages without a server, and hashes the
+ * blocks and light of the result. The stages run one after another, each one until it can't process any more cubes,
+ * so the result only depends on the seed, the world type and the generator code.
+ * <p>
+ * The world the cubes live in reads blocks and light straight from the cubes. It doesn't do block updates or vanilla
+ * light propagation, so those are not part of the result.
+ */
+public class GeneratorHarness {
+
+	public static class StageResult {
+
+		public final GeneratorStage stage;
+		public final int numCubes;
+		public final long nanos;
+		// -1 if the JVM can't tell
+		public final long allocatedBytes;
+
+		public StageResult(GeneratorStage stage, int numCubes, long nanos, long allocatedBytes) {
+			this.stage = stage;
+			this.numCubes = numCubes;
+			this.nanos = nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public double getCubesPerSecond() {
+			return this.nanos == 0 ? 0 : this.numCubes * 1000000000.0 / this.nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%10s: %4d cubes in %6.1f ms, %8.1f cubes/s, %s allocated per cube",
+				this.stage.name(), this.numCubes, this.nanos / 1000000.0, getCubesPerSecond(),
+				this.allocatedBytes < 0 || this.numCubes == 0 ? "?" : (this.allocatedBytes / this.numCubes / 1024) + " KiB");
+		}
+	}
+
+	private final HarnessWorld world;
+	private final HarnessCubeCache cubes;
+	private final List<CubeProcessor> processors;
+	private final Map<GeneratorStage, StageResult> results;
+	private GeneratorStage nextStage;
+
+	/**
+	 * Sets up cubes from -radius to radius around the origin on x and z, and from minCubeY to maxCubeY. Only the
+	 * cubes that are far enough from the edges get through all stages.
+	 */
+	public GeneratorHarness(long seed, WorldType worldType, int radius, int minCubeY, int maxCubeY) {
+		this.world = new HarnessWorld(seed, worldType);
+		this.cubes = new HarnessCubeCache(this.world, -radius, radius, minCubeY, maxCubeY, GeneratorStage.TERRAIN);
+		this.world.setCubeCache(this.cubes);
+		WorldContext.put(this.world, new WorldContext(this.world, this.cubes) {});
+
+		// the same stages as WorldServerContext
+		ITerrainGenerator terrainGenerator = worldType == WorldType.FLAT ? new FlatTerrainGenerator(seed) : new VanillaTerrainGenerator(seed);
+		this.processors = Lists.newArrayList();
+		this.processors.add(new TerrainProcessor(this.cubes, 5, terrainGenerator));
+		this.processors.add(new SurfaceProcessor(this.cubes, 10, seed));
+		this.processors.add(new StructureProcessor("Features", this.cubes, 10));
+		this.processors.add(new FirstLightProcessor("Lighting", this.cubes, 5));
+		this.processors.add(new FeatureProcessor("Population", this.world, this.cubes, 100));
+
+		this.results = Maps.newEnumMap(GeneratorStage.class);
+		this.nextStage = GeneratorStage.TERRAIN;
+	}
+
+	/**
+	 * Stops the population threads and unregisters the world. Call when done with the harness.
+	 */
+	public void close() {
+		for (CubeProcessor processor : this.processors) {
+			processor.shutdown();
+		}
+		WorldContext.remove(this.world);
+	}
+
+	public void generateAll() {
+		generateUntil(GeneratorStage.LIVE);
+	}
+
+	/**
+	 * Runs all stages before the given one.
+	 */
+	public void generateUntil(GeneratorStage stage) {
+		while (this.nextStage.isLessThan(stage)) {
+			generateStage(this.nextStage);
+		}
+	}
+
+	/**
+	 * Runs the given stage, which has to be the next one, on all cubes it can process.
+	 */
+	public StageResult generateStage(GeneratorStage stage) {
+		if (stage != this.nextStage || stage.isLastStage()) {
+			throw new IllegalStateException("Can't run " + stage + ", the next stage is " + this.nextStage);
+		}
+		CubeProcessor processor = this.processors.get(stage.ordinal());
+		for (Cube cube : this.cubes.getCubes()) {
+			if (cube.getGeneratorStage() == stage) {
+				processor.add(cube.getAddress());
+			}
+		}
+
+		GeneratorStage advanceTo = GeneratorStage.values()[stage.ordinal() + 1];
+		int numCubes = 0;
+		long allocatedStart = getAllocatedBytes();
+		long timeStart = System.nanoTime();
+		int numProcessed;
+		do {
+			numProcessed = processor.processQueue(null);
+			for (long address : processor.getProcessedAddresses()) {
+				this.cubes.getCube(AddressTools.getX(address), AddressTools.getY(address), AddressTools.getZ(address)).setGeneratorStage(advanceTo);
+			}
+			numCubes += numProcessed;
+		} while (numProcessed > 0 && processor.getNumInQueue() > 0);
+		long nanos = System.nanoTime() - timeStart;
+		long allocatedEnd = getAllocatedBytes();
+
+		StageResult result = new StageResult(stage, numCubes, nanos, allocatedStart < 0 ? -1 : allocatedEnd - allocatedStart);
+		this.results.put(stage, result);
+		this.nextStage = advanceTo;
+		return result;
+	}
+
+	public Map<GeneratorStage, StageResult> getResults() {
+		return this.results;
+	}
+
+	public Cube getCube(int cubeX, int cubeY, int cubeZ) {
+		return this.cubes.getCube(cubeX, cubeY, cubeZ);
+	}
+
+	public int getNumCubes(GeneratorStage stage) {
+		int num = 0;
+		for (Cube cube : this.cubes.getCubes()) {
+			if (cube.getGeneratorStage() == stage) {
+				num++;
+			}
+		}
+		return num;
+	}
+
+	/**
+	 * Hashes the generator stage, blocks, sky light and block light of all cubes in address order.
+	 */
+	public String hashCubes() {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Cube cube : this.cubes.getCubes()) {
+			hasher.putLong(cube.getAddress());
+			hasher.putInt(cube.getGeneratorStage().ordinal());
+			if (cube.isEmpty()) {
+				continue;
+			}
+			for (int x = 0; x < 16; x++) {
+				for (int y = 0; y < 16; y++) {
+					for (int z = 0; z < 16; z++) {
+						hasher.putInt(Block.BLOCK_STATE_IDS.get(cube.getBlockState(x, y, z)));
+						hasher.putByte((byte)cube.getStorage().getExtSkylightValue(x, y, z));
+						hasher.putByte((byte)cube.getStorage().getExtBlocklightValue(x, y, z));
+					}
+				}
+			}
+		}
+		return hasher.hash().toString();
+	}
+
+	private static long getAllocatedBytes() {
+		// population runs on other threads, so count the allocations of all threads
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)bean;
+		if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long bytes = 0;
+		for (long threadBytes : allocationBean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+			if (threadBytes > 0) {
+				bytes += threadBytes;
+			}
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import com.google.common.collect.Maps;
+import cubicchunks.util.AddressTools;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.world.World;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A fixed box of empty cubes, all loaded up front, for running generator code without a server.
+ */
+public class HarnessCubeCache implements ICubeCache {
+
+	private final World world;
+	private final Map<Long, Column> columns;
+	// sorted by address, so cubes are always visited in the same order
+	private final TreeMap<Long, Cube> cubes;
+
+	/**
+	 * Creates the cubes from minCubeXZ to maxCubeXZ on x and z, and from minCubeY to maxCubeY, all at the given
+	 * generator stage.
+	 */
+	public HarnessCubeCache(World world, int minCubeXZ, int maxCubeXZ, int minCubeY, int maxCubeY, GeneratorStage stage) {
+		this.world = world;
+		this.columns = Maps.newHashMap();
+		this.cubes = Maps.newTreeMap();
+		for (int cubeX = minCubeXZ; cubeX <= maxCubeXZ; cubeX++) {
+			for (int cubeZ = minCubeXZ; cubeZ <= maxCubeXZ; cubeZ++) {
+				Column column = new Column(world, cubeX, cubeZ);
+				this.columns.put(AddressTools.getAddress(cubeX, cubeZ), column);
+				for (int cubeY = minCubeY; cubeY <= maxCubeY; cubeY++) {
+					Cube cube = column.getOrCreateCube(cubeY, true);
+					cube.setGeneratorStage(stage);
+					this.cubes.put(cube.getAddress(), cube);
+				}
+			}
+		}
+	}
+
+	public World getWorld() {
+		return this.world;
+	}
+
+	public Iterable<Cube> getCubes() {
+		return this.cubes.values();
+	}
+
+	@Override
+	public boolean cubeExists(int cubeX, int cubeY, int cubeZ) {
+		return getCube(cubeX, cubeY, cubeZ) != null;
+	}
+
+	@Override
+	public Cube getCube(int cubeX, int cubeY, int cubeZ) {
+		Column column = getColumn(cubeX, cubeZ);
+		return column == null ? null : column.getCube(cubeY);
+	}
+
+	@Override
+	public Column getColumn(int cubeX, int cubeZ) {
+		return this.columns.get(AddressTools.getAddress(cubeX, cubeZ));
+	}
+
+	@Override
+	public void unloadCube(int cubeX, int cubeY, int cubeZ) {
+		throw new UnsupportedOperationException();
+	}
+}
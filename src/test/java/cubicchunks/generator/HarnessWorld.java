@@ -0,0 +1,112 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import cubicchunks.util.Coords;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+/**
+ * A world without a server that reads blocks and light straight from the cubes of an ICubeCache. It doesn't do block
+ * updates or vanilla light propagation.
+ */
+public class HarnessWorld extends World {
+
+	private ICubeCache cubes;
+
+	public HarnessWorld(long seed, WorldType worldType) {
+		super(null, new WorldInfo(new WorldSettings(seed, WorldSettings.GameType.SURVIVAL, true, false, worldType), "harness"),
+			new WorldProviderSurface(), new Profiler(), false);
+		this.provider.registerWorld(this);
+	}
+
+	public void setCubeCache(ICubeCache cubes) {
+		this.cubes = cubes;
+	}
+
+	@Override
+	protected IChunkProvider createChunkProvider() {
+		return null;
+	}
+
+	@Override
+	protected int getRenderDistanceChunks() {
+		return 0;
+	}
+
+	@Override
+	public IBlockState getBlockState(BlockPos pos) {
+		Cube cube = getCube(pos);
+		return cube == null ? Blocks.air.getDefaultState() : cube.getBlockState(pos);
+	}
+
+	@Override
+	public int getLightFor(EnumSkyBlock type, BlockPos pos) {
+		Cube cube = getCube(pos);
+		return cube == null ? type.defaultLightValue : cube.getLightValue(type, pos);
+	}
+
+	@Override
+	public BiomeGenBase getBiomeGenForCoords(BlockPos pos) {
+		return this.provider.getWorldChunkManager().getBiomeGenerator(pos, BiomeGenBase.plains);
+	}
+
+	@Override
+	public boolean checkLight(BlockPos pos) {
+		return true;
+	}
+
+	@Override
+	public boolean checkLightFor(EnumSkyBlock type, BlockPos pos) {
+		return true;
+	}
+
+	@Override
+	public void markBlockForUpdate(BlockPos pos) {
+	}
+
+	@Override
+	public void notifyNeighborsOfStateChange(BlockPos pos, Block block) {
+	}
+
+	private Cube getCube(BlockPos pos) {
+		if (this.cubes == null) {
+			return null;
+		}
+		return this.cubes.getCube(Coords.blockToCube(pos.getX()), Coords.blockToCube(pos.getY()), Coords.blockToCube(pos.getZ()));
+	}
+}
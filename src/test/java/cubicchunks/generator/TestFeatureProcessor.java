@@ -0,0 +1,83 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import cubicchunks.generator.features.CubeNeighborhood;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.WorldType;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestFeatureProcessor {
+
+	private static final int Radius = 3;
+	private static final int MinCubeY = 1;
+	private static final int MaxCubeY = 8;
+
+	@BeforeClass
+	public static void bootstrap() {
+		Bootstrap.register();
+	}
+
+	@Test
+	public void populatesOnlyWithWholeNeighborhood() {
+		GeneratorHarness harness = new GeneratorHarness(1234L, WorldType.DEFAULT, Radius, MinCubeY, MaxCubeY);
+		try {
+			harness.generateAll();
+			assertTrue("no cubes were populated", harness.getNumCubes(GeneratorStage.LIVE) > 0);
+
+			for (int cubeX = -Radius; cubeX <= Radius; cubeX++) {
+				for (int cubeY = MinCubeY; cubeY <= MaxCubeY; cubeY++) {
+					for (int cubeZ = -Radius; cubeZ <= Radius; cubeZ++) {
+						if (harness.getCube(cubeX, cubeY, cubeZ).getGeneratorStage() == GeneratorStage.LIVE) {
+							checkNeighborhood(harness, cubeX, cubeY, cubeZ);
+						}
+					}
+				}
+			}
+		} finally {
+			harness.close();
+		}
+	}
+
+	private static void checkNeighborhood(GeneratorHarness harness, int cubeX, int cubeY, int cubeZ) {
+		// features of a populated cube can't have been cut off by a missing or unfinished neighbor
+		for (int x = cubeX + CubeNeighborhood.MinCubeOffsetXZ; x <= cubeX + CubeNeighborhood.MaxCubeOffsetXZ; x++) {
+			for (int y = cubeY + CubeNeighborhood.MinCubeOffsetY; y <= cubeY + CubeNeighborhood.MaxCubeOffsetY; y++) {
+				for (int z = cubeZ + CubeNeighborhood.MinCubeOffsetXZ; z <= cubeZ + CubeNeighborhood.MaxCubeOffsetXZ; z++) {
+					String message = String.format("neighbor %d,%d,%d of populated cube %d,%d,%d", x, y, z, cubeX, cubeY, cubeZ);
+					Cube neighbor = harness.getCube(x, y, z);
+					assertNotNull(message + " is missing", neighbor);
+					assertFalse(message + " is at " + neighbor.getGeneratorStage(),
+						neighbor.getGeneratorStage().isLessThan(GeneratorStage.FEATURES));
+				}
+			}
+		}
+	}
+}
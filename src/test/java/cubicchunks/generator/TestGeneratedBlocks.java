@@ -0,0 +1,126 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import cubicchunks.world.OpacityIndexBuilder;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.WorldType;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that blocks written in bulk by the generator read back as the same block states from the cube.
+ */
+public class TestGeneratedBlocks {
+
+	@BeforeClass
+	public static void bootstrap() {
+		Bootstrap.register();
+	}
+
+	@Test
+	public void testSetBlocksForGeneration() {
+		IBlockState[] states = {
+			Blocks.air.getDefaultState(),
+			Blocks.stone.getDefaultState(),
+			Blocks.water.getDefaultState(),
+			Blocks.grass.getDefaultState()
+		};
+		GeneratorHarness harness = new GeneratorHarness(1234L, WorldType.DEFAULT, 0, 0, 0);
+		try {
+			Cube cube = harness.getCube(0, 0, 0);
+			char[] blocks = new char[16 * 16 * 16];
+			for (int i = 0; i < blocks.length; i++) {
+				blocks[i] = (char)Block.BLOCK_STATE_IDS.get(states[i % states.length]);
+			}
+			cube.setBlocksForGeneration(blocks, new OpacityIndexBuilder());
+
+			for (int x = 0; x < 16; x++) {
+				for (int y = 0; y < 16; y++) {
+					for (int z = 0; z < 16; z++) {
+						assertSame(states[Cube.getBlockIndex(x, y, z) % states.length], cube.getBlockState(x, y, z));
+					}
+				}
+			}
+		} finally {
+			harness.close();
+		}
+	}
+
+	@Test
+	public void testTerrainAndSurfaceBlocks() {
+		// from below sea level to above the ground
+		GeneratorHarness harness = new GeneratorHarness(1234L, WorldType.DEFAULT, 1, 2, 7);
+		try {
+			harness.generateUntil(GeneratorStage.SURFACE);
+			int numStone = 0;
+			int numOther = 0;
+			for (int cubeY = 2; cubeY <= 7; cubeY++) {
+				Cube cube = harness.getCube(0, cubeY, 0);
+				for (int x = 0; x < 16; x++) {
+					for (int y = 0; y < 16; y++) {
+						for (int z = 0; z < 16; z++) {
+							Block block = cube.getBlockState(x, y, z).getBlock();
+							assertTrue("terrain placed " + block, block == Blocks.stone || block == Blocks.water || block == Blocks.air);
+							if (block == Blocks.stone) {
+								numStone++;
+							} else {
+								numOther++;
+							}
+						}
+					}
+				}
+			}
+			assertTrue("no ground was generated", numStone > 0);
+			assertTrue("no air or water was generated", numOther > 0);
+
+			// the surface replaces the top of the stone with the biome's blocks
+			harness.generateUntil(GeneratorStage.STRUCTURES);
+			int numSurface = 0;
+			for (int cubeY = 2; cubeY < 7; cubeY++) {
+				Cube cube = harness.getCube(0, cubeY, 0);
+				for (int x = 0; x < 16; x++) {
+					for (int y = 0; y < 16; y++) {
+						for (int z = 0; z < 16; z++) {
+							Block block = cube.getBlockState(x, y, z).getBlock();
+							if (block != Blocks.stone && block != Blocks.water && block != Blocks.air) {
+								numSurface++;
+							}
+						}
+					}
+				}
+			}
+			assertTrue("the surface wasn't replaced", numSurface > 0);
+		} finally {
+			harness.close();
+		}
+	}
+}
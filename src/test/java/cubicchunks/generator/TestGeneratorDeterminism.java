@@ -0,0 +1,77 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.WorldType;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure world generation only depends on the seed. Population runs on several threads, so the same cubes are
+ * generated twice and the hashes of the results have to be the same.
+ */
+public class TestGeneratorDeterminism {
+
+	private static final long[] Seeds = { 1234L, -5678901234L };
+	private static final int Radius = 3;
+
+	@BeforeClass
+	public static void setUp() {
+		Bootstrap.register();
+	}
+
+	@Test
+	public void defaultWorld() {
+		for (long seed : Seeds) {
+			// from below sea level to the mountain tops
+			check(seed, WorldType.DEFAULT, 1, 8);
+		}
+	}
+
+	@Test
+	public void flatWorld() {
+		check(Seeds[0], WorldType.FLAT, -3, 4);
+	}
+
+	private static void check(long seed, WorldType worldType, int minCubeY, int maxCubeY) {
+		String hash = generate(seed, worldType, minCubeY, maxCubeY);
+		assertEquals("generation is not deterministic for " + worldType.getWorldTypeName() + "." + seed,
+			hash, generate(seed, worldType, minCubeY, maxCubeY));
+	}
+
+	private static String generate(long seed, WorldType worldType, int minCubeY, int maxCubeY) {
+		GeneratorHarness harness = new GeneratorHarness(seed, worldType, Radius, minCubeY, maxCubeY);
+		try {
+			harness.generateAll();
+			assertTrue("no cubes were populated", harness.getNumCubes(GeneratorStage.LIVE) > 0);
+			return harness.hashCubes();
+		} finally {
+			harness.close();
+		}
+	}
+}
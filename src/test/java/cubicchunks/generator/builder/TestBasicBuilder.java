@@ -0,0 +1,69 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestBasicBuilder {
+	
+	private static BasicBuilder makeBuilder(int seed, int octaves, double maxElev, double seaLevel, double clampMin, double clampMax, double freq) {
+		BasicBuilder builder = new BasicBuilder();
+		builder.setSeed(seed);
+		builder.setOctaves(octaves);
+		builder.setPersistance(0.5);
+		builder.setMaxElev(maxElev);
+		builder.setSeaLevel(seaLevel);
+		builder.setClamp(clampMin, clampMax);
+		builder.setFreq(freq, freq * 2, freq);
+		builder.build();
+		return builder;
+	}
+	
+	private static void checkGrid(IBuilder builder, int xStart, int yStart, int zStart) {
+		double[][][] grid = new double[5][3][5];
+		builder.getValues(grid, xStart, yStart, zStart);
+		for (int x = 0; x < grid.length; x++) {
+			for (int y = 0; y < grid[x].length; y++) {
+				for (int z = 0; z < grid[x][y].length; z++) {
+					double expected = builder.getValue(xStart + x, yStart + y, zStart + z);
+					// the grid must be bit-identical, otherwise existing seeds would generate different terrain
+					assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(grid[x][y][z]));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testGridMatchesPointValues() {
+		IBuilder high = makeBuilder(123, 16, 2, 0, -1, 1, 684.412D / Math.pow(2, 16) / (200 / 64.0));
+		IBuilder alpha = makeBuilder(-77, 8, 25.6, 0.5, 0, 1, 8.55515 / Math.pow(2, 8) / (200 / 64.0));
+		for (int i = -3; i <= 3; i++) {
+			checkGrid(high, i * 4, i * 2, -i * 4);
+			checkGrid(alpha, i * 4, -i * 2, i * 4);
+		}
+		checkGrid(high, 4000000, -2000000, 123456);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.features;
+
+import cubicchunks.generator.GeneratorStage;
+import cubicchunks.generator.HarnessCubeCache;
+import cubicchunks.generator.HarnessWorld;
+import cubicchunks.generator.features.trees.BigTreeGenerator;
+import cubicchunks.util.Coords;
+import cubicchunks.world.ICubeCache;
+import cubicchunks.world.column.Column;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldType;
+
+import java.util.Random;
+
+/**
+ * Big trees on flat ground in the cubes around cube 0, 0, 0, generated either through CubeNeighborhood or through a
+ * cube lookup for every block. Used by TestBigTreeGenerator and GeneratorBenchmark.BigTrees.
+ */
+public class BigTreeFixture {
+
+	public static final int TreesPerRound = 8;
+	public static final int GroundY = 7;
+
+	/**
+	 * Flat ground in the cubes around cube 0, 0, 0, all of them ready for population.
+	 */
+	public static HarnessCubeCache newCubeCache() {
+		HarnessWorld world = new HarnessWorld(1234, WorldType.DEFAULT);
+		HarnessCubeCache cache = new HarnessCubeCache(world, CubeNeighborhood.MinCubeOffsetXZ, CubeNeighborhood.MaxCubeOffsetXZ,
+			CubeNeighborhood.MinCubeOffsetY, CubeNeighborhood.MaxCubeOffsetY, GeneratorStage.FEATURES);
+		world.setCubeCache(cache);
+		for (Cube cube : cache.getCubes()) {
+			fillGround(cube);
+		}
+		return cache;
+	}
+
+	/**
+	 * Generates TreesPerRound trees around the center of cube 0, 0, 0.
+	 */
+	public static void generateTrees(HarnessCubeCache cache, boolean useNeighborhood, long seed) {
+		CubeNeighborhood blocks = useNeighborhood ? new CubeNeighborhood(cache.getWorld(), cache) : new LookupNeighborhood(cache.getWorld(), cache);
+		BigTreeGenerator generator = new BigTreeGenerator(blocks, Blocks.log.getDefaultState(), Blocks.leaves.getDefaultState());
+		generator.setHeightRange(28, 32);
+
+		Random rand = new Random(seed);
+		blocks.setCenter(cache.getCube(0, 0, 0), new CubeNeighborhood.Changes(0, 0));
+		for (int i = 0; i < TreesPerRound; i++) {
+			BlockPos pos = new BlockPos(8 + rand.nextInt(16), GroundY + 1, 8 + rand.nextInt(16));
+			generator.generateAt(rand, pos, null);
+		}
+	}
+
+	private static void fillGround(Cube cube) {
+		for (int y = 0; y < 16; y++) {
+			int blockY = Coords.localToBlock(cube.getY(), y);
+			IBlockState state = blockY < GroundY - 3 ? Blocks.stone.getDefaultState()
+				: blockY < GroundY ? Blocks.dirt.getDefaultState()
+				: blockY == GroundY ? Blocks.grass.getDefaultState()
+				: null;
+			if (state == null) {
+				continue;
+			}
+			for (int x = 0; x < 16; x++) {
+				for (int z = 0; z < 16; z++) {
+					cube.setBlockForGeneration(x, y, z, state);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads and writes blocks the way feature generators used to go through the World: a column and cube lookup, and
+	 * a new BlockPos, for every block. This leaves out the World's own checks, so the old path was slower than this.
+	 */
+	private static class LookupNeighborhood extends CubeNeighborhood {
+
+		private final ICubeCache cache;
+
+		public LookupNeighborhood(World world, ICubeCache cache) {
+			super(world, cache);
+			this.cache = cache;
+		}
+
+		@Override
+		public IBlockState getBlockState(int blockX, int blockY, int blockZ) {
+			BlockPos pos = new BlockPos(blockX, blockY, blockZ);
+			Cube cube = getCube(pos);
+			if (cube == null) {
+				return Blocks.air.getDefaultState();
+			}
+			return cube.getBlockState(pos);
+		}
+
+		@Override
+		public boolean setBlockState(int blockX, int blockY, int blockZ, IBlockState state, int flags) {
+			BlockPos pos = new BlockPos(blockX, blockY, blockZ);
+			Cube cube = getCube(pos);
+			return cube != null && cube.setBlockForGeneration(pos, state) != null;
+		}
+
+		private Cube getCube(BlockPos pos) {
+			Column column = this.cache.getColumn(Coords.blockToCube(pos.getX()), Coords.blockToCube(pos.getZ()));
+			if (column == null) {
+				return null;
+			}
+			return column.getCube(Coords.blockToCube(pos.getY()));
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.features;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cubicchunks.generator.HarnessCubeCache;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+public class TestBigTreeGenerator {
+	
+	private static final int Rounds = 20;
+	
+	@BeforeClass
+	public static void bootstrap() {
+		Bootstrap.register();
+	}
+	
+	@Test
+	public void testNeighborhoodMatchesLookup() {
+		for (int i = 0; i < Rounds; i++) {
+			HarnessCubeCache lookupWorld = BigTreeFixture.newCubeCache();
+			HarnessCubeCache neighborhoodWorld = BigTreeFixture.newCubeCache();
+			BigTreeFixture.generateTrees(lookupWorld, false, i);
+			BigTreeFixture.generateTrees(neighborhoodWorld, true, i);
+			
+			// both paths have to build the same trees
+			int logs = assertSameBlocks(lookupWorld, neighborhoodWorld);
+			assertTrue("no trees were generated", logs > 0);
+		}
+	}
+	
+	private static int assertSameBlocks(HarnessCubeCache expected, HarnessCubeCache actual) {
+		int logs = 0;
+		for (int cubeX = CubeNeighborhood.MinCubeOffsetXZ; cubeX <= CubeNeighborhood.MaxCubeOffsetXZ; cubeX++) {
+			for (int cubeY = CubeNeighborhood.MinCubeOffsetY; cubeY <= CubeNeighborhood.MaxCubeOffsetY; cubeY++) {
+				for (int cubeZ = CubeNeighborhood.MinCubeOffsetXZ; cubeZ <= CubeNeighborhood.MaxCubeOffsetXZ; cubeZ++) {
+					Cube expectedCube = expected.getCube(cubeX, cubeY, cubeZ);
+					Cube actualCube = actual.getCube(cubeX, cubeY, cubeZ);
+					for (int x = 0; x < 16; x++) {
+						for (int y = 0; y < 16; y++) {
+							for (int z = 0; z < 16; z++) {
+								IBlockState state = actualCube.getBlockState(x, y, z);
+								assertSame(expectedCube.getBlockState(x, y, z), state);
+								if (state.getBlock() == Blocks.log) {
+									logs++;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return logs;
+	}
+}
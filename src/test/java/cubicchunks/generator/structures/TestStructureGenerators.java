@@ -0,0 +1,122 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.structures;
+
+import cubicchunks.generator.GeneratorHarness;
+import cubicchunks.generator.GeneratorStage;
+import cubicchunks.world.cube.Cube;
+import net.minecraft.block.Block;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.WorldType;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The cave and ravine generators cache structure starts and replay precomputed tunnels. They have to carve exactly
+ * the blocks the generators did before, which are kept as the Reference generators.
+ */
+public class TestStructureGenerators {
+
+	private static final long Seed = 1234L;
+	private static final int Radius = 2;
+	private static final int MinCubeY = 0;
+	private static final int MaxCubeY = 5;
+
+	@BeforeClass
+	public static void setUp() {
+		Bootstrap.register();
+	}
+
+	@Test
+	public void carveLikeReferenceGenerators() {
+		GeneratorHarness expected = new GeneratorHarness(Seed, WorldType.DEFAULT, Radius, MinCubeY, MaxCubeY);
+		GeneratorHarness actual = new GeneratorHarness(Seed, WorldType.DEFAULT, Radius, MinCubeY, MaxCubeY);
+		try {
+			expected.generateUntil(GeneratorStage.STRUCTURES);
+			actual.generateUntil(GeneratorStage.STRUCTURES);
+
+			// one generator of each for all cubes, so the cached starts and paths get reused
+			ReferenceCaveGenerator referenceCaves = new ReferenceCaveGenerator();
+			ReferenceRavineGenerator referenceRavines = new ReferenceRavineGenerator();
+			CubicCaveGenerator caves = new CubicCaveGenerator();
+			CubicRavineGenerator ravines = new CubicRavineGenerator();
+
+			int numCubes = 0;
+			int numCarvedCubes = 0;
+			for (int cubeX = -Radius; cubeX <= Radius; cubeX++) {
+				for (int cubeY = MinCubeY; cubeY <= MaxCubeY; cubeY++) {
+					for (int cubeZ = -Radius; cubeZ <= Radius; cubeZ++) {
+						Cube expectedCube = expected.getCube(cubeX, cubeY, cubeZ);
+						Cube actualCube = actual.getCube(cubeX, cubeY, cubeZ);
+						if (expectedCube.getGeneratorStage() != GeneratorStage.STRUCTURES || expectedCube.isEmpty()) {
+							continue;
+						}
+						int[] blocksBefore = getBlocks(actualCube);
+
+						// the same order as StructureProcessor
+						referenceCaves.generate(expectedCube.getWorld(), expectedCube);
+						referenceRavines.generate(expectedCube.getWorld(), expectedCube);
+						caves.generate(actualCube.getWorld(), actualCube);
+						ravines.generate(actualCube.getWorld(), actualCube);
+
+						String message = "cube " + cubeX + "," + cubeY + "," + cubeZ;
+						int[] expectedBlocks = getBlocks(expectedCube);
+						int[] actualBlocks = getBlocks(actualCube);
+						for (int i = 0; i < expectedBlocks.length; i++) {
+							assertEquals(message + " block " + i, expectedBlocks[i], actualBlocks[i]);
+						}
+						numCubes++;
+						if (!Arrays.equals(blocksBefore, actualBlocks)) {
+							numCarvedCubes++;
+						}
+					}
+				}
+			}
+			assertTrue("no cubes were checked", numCubes > 0);
+			// otherwise the test would pass for generators that don't do anything
+			assertTrue("no caves or ravines were carved", numCarvedCubes > 0);
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+	private static int[] getBlocks(Cube cube) {
+		int[] blocks = new int[16 * 16 * 16];
+		int i = 0;
+		for (int x = 0; x < 16; x++) {
+			for (int y = 0; y < 16; y++) {
+				for (int z = 0; z < 16; z++) {
+					blocks[i++] = Block.BLOCK_STATE_IDS.get(cube.getBlockState(x, y, z));
+				}
+			}
+		}
+		return blocks;
+	}
+}
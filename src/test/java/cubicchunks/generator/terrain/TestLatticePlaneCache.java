@@ -0,0 +1,137 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.generator.terrain;
+
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.X_SECTIONS;
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.Y_SECTIONS;
+import static cubicchunks.generator.terrain.GlobalGeneratorConfig.Z_SECTIONS;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import cubicchunks.generator.builder.IBuilder;
+
+public class TestLatticePlaneCache {
+	
+	/**
+	 * Deterministic fake noise that counts how many samples were evaluated
+	 */
+	private static class CountingBuilder implements IBuilder {
+		
+		private final int seed;
+		long samples = 0;
+		
+		CountingBuilder(int seed) {
+			this.seed = seed;
+		}
+		
+		@Override
+		public void setSeed(int seed) {
+		}
+		
+		@Override
+		public void setSeaLevel(double seaLevel) {
+		}
+		
+		@Override
+		public void build() {
+		}
+		
+		@Override
+		public double getValue(double x, double y, double z) {
+			samples++;
+			return Math.sin(x * 0.37 + seed) * Math.cos(y * 0.11 - z * 0.53);
+		}
+		
+		@Override
+		public void getValues(double[][][] out, int xStart, int yStart, int zStart) {
+			for (int x = 0; x < out.length; x++) {
+				for (int y = 0; y < out[x].length; y++) {
+					for (int z = 0; z < out[x][y].length; z++) {
+						out[x][y][z] = getValue(xStart + x, yStart + y, zStart + z);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testColumnStack() {
+		CountingBuilder high = new CountingBuilder(1);
+		CountingBuilder low = new CountingBuilder(2);
+		CountingBuilder alpha = new CountingBuilder(3);
+		LatticePlaneCache cache = new LatticePlaneCache(high, low, alpha);
+		
+		double[][][] cachedHigh = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		double[][][] cachedLow = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		double[][][] cachedAlpha = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		double[][][] expected = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		CountingBuilder reference = new CountingBuilder(1);
+		
+		final int numCubes = 32;
+		for (int cubeY = -numCubes / 2; cubeY < numCubes / 2; cubeY++) {
+			cache.fill(3, cubeY, -7, cachedHigh, cachedLow, cachedAlpha);
+			
+			reference.getValues(expected, 3 * (X_SECTIONS - 1), cubeY * (Y_SECTIONS - 1), -7 * (Z_SECTIONS - 1));
+			for (int x = 0; x < X_SECTIONS; x++) {
+				for (int y = 0; y < Y_SECTIONS; y++) {
+					for (int z = 0; z < Z_SECTIONS; z++) {
+						assertEquals(expected[x][y][z], cachedHigh[x][y][z], 0);
+					}
+				}
+			}
+		}
+		
+		// without the cache every cube evaluates Y_SECTIONS planes, with it every plane is evaluated once
+		long uncached = numCubes * Y_SECTIONS;
+		long planes = numCubes * (Y_SECTIONS - 1) + 1;
+		assertEquals(planes, cache.getPlanesComputed());
+		assertEquals(uncached - planes, cache.getPlanesReused());
+		assertEquals(planes * X_SECTIONS * Z_SECTIONS, high.samples);
+		assertEquals(uncached * X_SECTIONS * Z_SECTIONS, reference.samples);
+	}
+	
+	@Test
+	public void testEviction() {
+		CountingBuilder high = new CountingBuilder(1);
+		LatticePlaneCache cache = new LatticePlaneCache(high, new CountingBuilder(2), new CountingBuilder(3), 4);
+		double[][][] a = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		double[][][] b = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		double[][][] c = new double[X_SECTIONS][Y_SECTIONS][Z_SECTIONS];
+		
+		// 8 cubes far apart, none of them share faces, and only 4 planes fit
+		for (int i = 0; i < 8; i++) {
+			cache.fill(i * 10, 0, 0, a, b, c);
+		}
+		long computed = cache.getPlanesComputed();
+		
+		// the first cube was evicted, so it's computed again
+		cache.fill(0, 0, 0, a, b, c);
+		assertEquals(computed + Y_SECTIONS, cache.getPlanesComputed());
+		
+		// the last cube is still cached, only its middle plane is computed
+		cache.fill(70, 0, 0, a, b, c);
+		assertEquals(computed + Y_SECTIONS + Y_SECTIONS - 2, cache.getPlanesComputed());
+	}
+}
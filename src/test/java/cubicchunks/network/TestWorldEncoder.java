@@ -0,0 +1,90 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestWorldEncoder {
+	
+	@Test
+	public void blocksRoundTrip() throws IOException {
+		Random rand = new Random(42);
+		
+		// uniform, every palette size that changes the bits per index, and too many states for a palette
+		int[] numStates = { 1, 2, 3, 4, 5, 16, 17, 255, 256, 257, 4096 };
+		for (int n : numStates) {
+			char[] blocks = new char[16*16*16];
+			for (int i = 0; i < blocks.length; i++) {
+				blocks[i] = (char)((i < n ? i : rand.nextInt(n)) * 16 + 1);
+			}
+			
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buf);
+			WorldEncoder.writeBlocks(out, blocks);
+			out.close();
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+			char[] decoded = new char[blocks.length];
+			WorldEncoder.readBlocks(in, decoded);
+			assertArrayEquals("states: " + n, blocks, decoded);
+			assertEquals(-1, in.read());
+		}
+	}
+	
+	@Test
+	public void lightRoundTrip() throws IOException {
+		Random rand = new Random(42);
+		
+		byte[][] arrays = { new byte[2048], new byte[2048], new byte[2048], new byte[2048] };
+		// all 15, nibbles that differ within a byte, and random
+		Arrays.fill(arrays[1], (byte)0xFF);
+		Arrays.fill(arrays[2], (byte)0xF0);
+		rand.nextBytes(arrays[3]);
+		int[] expectedSizes = { 2, 2, 2049, 2049 };
+		
+		for (int n = 0; n < arrays.length; n++) {
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buf);
+			WorldEncoder.writeLight(out, arrays[n]);
+			out.close();
+			assertEquals(expectedSizes[n], buf.size());
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+			byte[] decoded = new byte[2048];
+			WorldEncoder.readLight(in, decoded);
+			assertArrayEquals(arrays[n], decoded);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestLatencyHistogram {
+
+	@Test
+	public void buckets() {
+		assertEquals(0, LatencyHistogram.getBucket(0));
+		assertEquals(1, LatencyHistogram.getBucket(1));
+		assertEquals(2, LatencyHistogram.getBucket(2));
+		assertEquals(2, LatencyHistogram.getBucket(3));
+		assertEquals(3, LatencyHistogram.getBucket(4));
+		assertEquals(63, LatencyHistogram.getBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void empty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMeanNanos());
+		assertEquals(0, histogram.getPercentileNanos(50));
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(100);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(5000);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(90 * 100 + 10 * 5000, histogram.getTotalNanos());
+		assertEquals(5000, histogram.getMaxNanos());
+
+		// percentiles are the upper bounds of their buckets
+		assertEquals(127, histogram.getPercentileNanos(50));
+		assertEquals(127, histogram.getPercentileNanos(90));
+		assertEquals(5000, histogram.getPercentileNanos(99));
+	}
+
+	@Test
+	public void copyDoesNotChange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10);
+		LatencyHistogram copy = histogram.copy();
+		histogram.record(20);
+		assertEquals(1, copy.getCount());
+		assertEquals(10, copy.getMaxNanos());
+		assertEquals(2, histogram.getCount());
+	}
+}
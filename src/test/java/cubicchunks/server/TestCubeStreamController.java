@@ -0,0 +1,136 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCubeStreamController {
+	
+	@Test
+	public void backsOffWhenNotWritable() {
+		CubeEgressBudget egressBudget = new CubeEgressBudget(0);
+		CubeStreamController controller = new CubeStreamController(egressBudget);
+		int budget = controller.getCubeBudget(true);
+		assertEquals(8, budget);
+		
+		egressBudget.tick();
+		assertEquals(0, controller.getCubeBudget(false));
+		egressBudget.tick();
+		assertEquals(4, controller.getCubeBudget(true));
+		
+		// never below one cube per tick
+		for (int tick = 3; tick < 10; tick++) {
+			egressBudget.tick();
+			controller.getCubeBudget(false);
+		}
+		egressBudget.tick();
+		assertEquals(1, controller.getCubeBudget(true));
+	}
+	
+	@Test
+	public void budgetIsPerTick() {
+		CubeEgressBudget egressBudget = new CubeEgressBudget(0);
+		CubeStreamController controller = new CubeStreamController(egressBudget);
+		assertEquals(8, controller.getCubeBudget(true));
+		controller.onSent(8, 8 * 1000);
+		assertEquals(0, controller.getCubeBudget(true));
+		egressBudget.tick();
+		assertTrue(controller.getCubeBudget(true) >= 8);
+	}
+	
+	@Test
+	public void growsWithAcks() {
+		CubeEgressBudget egressBudget = new CubeEgressBudget(0);
+		CubeStreamController controller = new CubeStreamController(egressBudget);
+		long nowMs = 0;
+		for (int tick = 0; tick < 200; tick++) {
+			egressBudget.tick();
+			int budget = controller.getCubeBudget(true);
+			if (budget > 0) {
+				controller.onSent(budget, budget * 1000);
+				nowMs += 50;
+				controller.onAcked(budget * 1000, nowMs);
+			}
+		}
+		assertEquals(64, (int)controller.getCubesPerTick());
+		assertEquals(0, controller.getBytesInFlight());
+	}
+	
+	@Test
+	public void limitsDataInFlight() {
+		CubeEgressBudget egressBudget = new CubeEgressBudget(0);
+		CubeStreamController controller = new CubeStreamController(egressBudget);
+		
+		// the client acks once, then stops
+		controller.onSent(1, 1000);
+		controller.onAcked(1000, 0);
+		
+		int numSent = 0;
+		for (int tick = 0; tick < 1000; tick++) {
+			egressBudget.tick();
+			int budget = controller.getCubeBudget(true);
+			controller.onSent(budget, budget * 1000);
+			numSent += budget;
+		}
+		
+		// only the minimum window goes out, rounded up to whole cubes
+		assertTrue(controller.getBytesInFlight() >= 64 * 1024);
+		assertTrue(controller.getBytesInFlight() < 64 * 1024 + 64 * 1000);
+		assertTrue(numSent < 64 + 64);
+	}
+	
+	@Test
+	public void egressCapIsSharedByAllPlayers() {
+		// the players of two worlds share one budget
+		CubeEgressBudget egressBudget = new CubeEgressBudget(8000);
+		CubeStreamController[] controllers = {
+			new CubeStreamController(egressBudget),
+			new CubeStreamController(egressBudget)
+		};
+		for (int tick = 0; tick < 100; tick++) {
+			egressBudget.tick();
+			for (CubeStreamController controller : controllers) {
+				int budget = controller.getCubeBudget(true);
+				if (budget > 0) {
+					controller.onSent(budget, budget * 1000);
+				}
+			}
+		}
+		// each one gets half of the cap and can overdraw it by one cube. In the first tick nobody was counted yet,
+		// so both get all of it once.
+		for (CubeStreamController controller : controllers) {
+			long bytesSent = controller.getBytesInFlight();
+			assertTrue(bytesSent + " bytes sent", bytesSent >= 99 * 4000 && bytesSent <= 101 * 4000 + 1000);
+		}
+		
+		// after the server stops, the next one starts from scratch
+		egressBudget.reset();
+		assertEquals(0, egressBudget.getTick());
+		egressBudget.tick();
+		assertEquals(8000, egressBudget.takeShare());
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.util;
+
+import static cubicchunks.util.Coords.CUBE_SIZE;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cubicchunks.generator.terrain.GlobalGeneratorConfig;
+
+public class TestTerrainGeneratorUtils {
+	
+	private static double[][][] makeNoise(long seed) {
+		Random rand = new Random(seed);
+		double[][][] noise = new double[GlobalGeneratorConfig.X_SECTIONS][GlobalGeneratorConfig.Y_SECTIONS][GlobalGeneratorConfig.Z_SECTIONS];
+		for (int x = 0; x < noise.length; x++) {
+			for (int y = 0; y < noise[x].length; y++) {
+				for (int z = 0; z < noise[x][y].length; z++) {
+					noise[x][y][z] = rand.nextDouble() * 400 - 200;
+				}
+			}
+		}
+		return noise;
+	}
+	
+	@Test
+	public void testExpandCorners() {
+		double[][][] noise = makeNoise(1234);
+		double[] density = TerrainGeneratorUtils.newDensityBuffer();
+		TerrainGeneratorUtils.expandNoiseArray(noise, density);
+		
+		// every lattice point inside the cube is copied exactly
+		for (int x = 0; x < GlobalGeneratorConfig.X_SECTIONS - 1; x++) {
+			for (int y = 0; y < GlobalGeneratorConfig.Y_SECTIONS - 1; y++) {
+				for (int z = 0; z < GlobalGeneratorConfig.Z_SECTIONS - 1; z++) {
+					int xRel = x * (GlobalGeneratorConfig.X_SECTION_SIZE - 1);
+					int yRel = y * (GlobalGeneratorConfig.Y_SECTION_SIZE - 1);
+					int zRel = z * (GlobalGeneratorConfig.Z_SECTION_SIZE - 1);
+					assertEquals(noise[x][y][z], density[TerrainGeneratorUtils.getDensityIndex(xRel, yRel, zRel)], 0);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testHeightGradient() {
+		double[] density = TerrainGeneratorUtils.newDensityBuffer();
+		TerrainGeneratorUtils.applyHeightGradient(-3, density);
+		for (int x = 0; x < CUBE_SIZE; x++) {
+			for (int y = 0; y < CUBE_SIZE; y++) {
+				for (int z = 0; z < CUBE_SIZE; z++) {
+					assertEquals(48 - y, density[TerrainGeneratorUtils.getDensityIndex(x, y, z)], 0);
+				}
+			}
+		}
+		
+		double[][][] array = TerrainGeneratorUtils.toCubeSizedArray(density);
+		assertEquals(48 - 5, array[2][5][7], 0);
+	}
+}